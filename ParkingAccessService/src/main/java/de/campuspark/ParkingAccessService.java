@@ -1,12 +1,33 @@
 package de.campuspark;
 
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
-import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
+import de.campuspark.service.BinaryStateFeed;
+import de.campuspark.service.CalendarIndex;
+import de.campuspark.service.GarageApi;
+import de.campuspark.service.MqttLogger;
+import de.campuspark.service.MqttPublisher;
+import de.campuspark.service.NotificationDispatcher;
+import de.campuspark.service.OccupancyAggregator;
+import de.campuspark.service.OccupancyHistory;
+import de.campuspark.service.OccupancyForecaster;
+import de.campuspark.service.OverstayMonitor;
 import de.campuspark.service.ParkingAccessCallback;
+import de.campuspark.service.RegistrationWriter;
+import de.campuspark.service.SensorMonitor;
+import de.campuspark.service.SpotAllocator;
+import de.campuspark.service.TrafficRecorder;
+import de.campuspark.service.UserDirectory;
 import de.campuspark.util.Config;
+import de.campuspark.util.DBConnection;
+import de.campuspark.util.StartupPhases;
 
 public class ParkingAccessService
 {
@@ -17,31 +38,106 @@ public class ParkingAccessService
         String clientId  = Config.MQTT_CLIENT_ID;
 
         try {
-            // MQTT Client erstellen
-            MqttClient client = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
+            // Asynchroner MQTT Client: Publishes blockieren die Handler nicht
+            MqttAsyncClient client = new MqttAsyncClient(brokerUrl, clientId, new MemoryPersistence());
         
             // Verbindungsoptionen konfigurieren
             MqttConnectOptions options = new MqttConnectOptions();
             options.setAutomaticReconnect(true); // Automatische Wiederverbindung aktivieren
             options.setCleanSession(true); // Saubere Session starten
-            options.setMaxInflight(100); // Maximale Anzahl gleichzeitiger Nachrichten
+            options.setMaxInflight(Config.MQTT_MAX_INFLIGHT); // Maximale Anzahl gleichzeitiger Nachrichten
             options.setConnectionTimeout(30); // Timeout auf 30 Sekunden setzen
             options.setKeepAliveInterval(60); // Keep-Alive alle 60 Sekunden
 
+            // Nachrichten erst nach der Verarbeitung bzw. nach dem Verwerfen durch die Zulassungskontrolle bestätigen
+            client.setManualAcks(true);
+
             // Callback für eingehende Nachrichten setzen
             client.setCallback(new ParkingAccessCallback(client));
 
-            // Mit Broker verbinden
-            client.connect(options);
+            // Priorisierter Versand; offene Schrankenbefehle aus dem Journal gehen nach dem Verbinden raus
+            MqttPublisher.start(client, Config.MQTT_JOURNAL_FILE.isBlank() ? null : Path.of(Config.MQTT_JOURNAL_FILE));
+
+            // Unabhängige Startphasen parallel: Broker, DB, Nutzer, Kalender, Zustand aus der Historie
+            StartupPhases startup = new StartupPhases();
+            startup.parallel("mqtt", () -> client.connect(options).waitForCompletion());
+            startup.parallel("db", () -> new DBConnection().warmUp());
+            // Optional: komplette Nutzertabelle im Speicher halten (auch Basis der unscharfen Kennzeichensuche)
+            if (Config.USER_SNAPSHOT || Config.FUZZY_PLATE_MATCH) {
+                startup.parallel("users", UserDirectory::start);
+            }
+            // Kalender einmalig indexieren, danach periodisch aktualisieren
+            startup.parallel("calendar", CalendarIndex::start);
+            CompletableFuture<List<OccupancyHistory.SpotRecord>> recovered = startup.supply("state",
+                    () -> Config.STARTUP_RECOVER_STATE ? OccupancyHistory.recover() : List.of());
+
+            boolean ready = startup.awaitParallel(Config.STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!client.isConnected()) {
+                System.err.println(startup.report());
+                System.err.println("Could not connect to broker " + brokerUrl);
+                return;
+            }
             System.out.println("Connected to Broker!");
 
-            // Alle relevanten Topics abonnieren
-            client.subscribe(Config.TOPIC_REGISTRATION);
-            client.subscribe(Config.TOPIC_LICENSE_PLATE);
-            client.subscribe(Config.TOPIC_MOVE_REQUEST);
-            client.subscribe(Config.TOPIC_SPOT); 
+            startup.run("services", () -> {
+                // Registrierungen gebündelt in die DB schreiben
+                RegistrationWriter.start();
+
+                // Benachrichtigungen asynchron, gebündelt und dedupliziert versenden
+                NotificationDispatcher.start();
+
+                // Belegungsprognose und Lane-Statistiken aus den Spot-Wechseln
+                OccupancyForecaster.start();
+                OccupancyAggregator.start();
+
+                // Optional: kompakter Binär-Feed für ESP32-Knoten und Dashboards (BINARY_FEED)
+                BinaryStateFeed.start();
+
+                // Verstummte Spot-Sensoren erkennen und deren Spots sperren
+                SensorMonitor.start();
+
+                // Überzogene Parkzeiten melden und Blockierer vor anstehenden Abfahrten warnen
+                OverstayMonitor.start();
+            });
+
+            // Spots und Belegung vor der ersten Sensor-Meldung wiederherstellen (die Listener oben
+            // sehen die Wechsel); die Historie selbst erst danach anmelden, sonst stünde alles doppelt drin
+            startup.run("recovery", () -> {
+                List<OccupancyHistory.SpotRecord> records = recovered.isDone() && !recovered.isCompletedExceptionally()
+                        ? recovered.join() : List.of();
+                int restored = SpotAllocator.recover(records);
+                if (!records.isEmpty()) {
+                    MqttLogger.info("Startup", "Recovered " + records.size() + " spots (" + restored
+                            + " reserved/occupied) from history", null);
+                }
+                OccupancyHistory.start();
+                SpotAllocator.refreshSnapshot();
+            });
+
+            startup.run("api", () -> {
+                // Lesende HTTP-API auf dem Schnappschuss des Allocators
+                GarageApi.start();
+
+                // Optional: eingehenden Verkehr für Replay/Lasttests aufzeichnen (TRAFFIC_RECORD_FILE)
+                TrafficRecorder.start();
+            });
+
+            // Alle relevanten Topics erst abonnieren, wenn alles bereit ist
+            startup.run("subscribe", () -> {
+                client.subscribe(Config.TOPIC_REGISTRATION, 1).waitForCompletion();
+                client.subscribe(Config.TOPIC_LICENSE_PLATE, 1).waitForCompletion();
+                client.subscribe(Config.TOPIC_MOVE_REQUEST, 1).waitForCompletion();
+                client.subscribe(Config.TOPIC_SPOT, 1).waitForCompletion();
+            });
+
+            System.out.println(startup.report());
+            if (ready && !startup.hasFailures()) {
+                MqttLogger.info("Startup", "Ready after " + startup.elapsedMillis() + " ms", null);
+            } else {
+                MqttLogger.warn("Startup", startup.report(), null);
+            }
 
-        } catch (MqttException e) {
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
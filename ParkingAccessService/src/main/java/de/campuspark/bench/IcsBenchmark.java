@@ -0,0 +1,113 @@
+package de.campuspark.bench;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import biweekly.Biweekly;
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import de.campuspark.service.CalendarService;
+import de.campuspark.service.IcsReader;
+
+/**
+ * Vergleicht das Einlesen eines Kurskalenders über Biweekly (vollständiges Objektmodell, danach
+ * Filter) mit dem streamenden {@link IcsReader}, einmal über den ganzen Kalender und einmal nur
+ * für einen Tag. Gemessen werden Zeit und allokierte Bytes pro Durchlauf; vorab wird geprüft,
+ * dass beide Wege dieselben Termine liefern.
+ *
+ * Aufruf: java -cp ... de.campuspark.bench.IcsBenchmark [datei.ics] [tag yyyy-MM-dd]
+ * Ohne Tag wird der Tag des ersten relevanten Termins verwendet.
+ */
+public class IcsBenchmark {
+
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 100;
+
+    /** Relevanter Termin als [Beginn, Ende] in Epoch-Sekunden. */
+    private record Interval(long start, long end) {}
+
+    private interface Parse {
+        List<Interval> run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Path.of(args.length > 0 ? args[0] : "WWI23A.ics");
+        ZoneId zone = ZoneId.systemDefault();
+
+        List<Interval> biweekly = biweekly(file);
+        List<Interval> streamed = streamed(file, Long.MIN_VALUE, Long.MAX_VALUE);
+        if (!biweekly.equals(streamed)) {
+            throw new IllegalStateException("IcsReader differs from Biweekly: " + streamed.size() + " vs. " + biweekly.size() + " events");
+        }
+        if (biweekly.isEmpty()) {
+            System.out.println("No relevant events in " + file);
+            return;
+        }
+
+        LocalDate day = args.length > 1
+                ? LocalDate.parse(args[1])
+                : Instant.ofEpochSecond(biweekly.get(0).start()).atZone(zone).toLocalDate();
+        long from = day.atStartOfDay(zone).toEpochSecond();
+        long to = day.plusDays(1).atStartOfDay(zone).toEpochSecond();
+        List<Interval> expectedDay = biweekly.stream().filter(i -> i.end() >= from && i.start() < to).toList();
+        if (!expectedDay.equals(streamed(file, from, to))) {
+            throw new IllegalStateException("IcsReader day filter differs from Biweekly");
+        }
+
+        System.out.printf("%s: %,d bytes, %d relevant events, %d on %s%n",
+                file, Files.size(file), biweekly.size(), expectedDay.size(), day);
+        measure("Biweekly (alles)", () -> biweekly(file));
+        measure("IcsReader (alles)", () -> streamed(file, Long.MIN_VALUE, Long.MAX_VALUE));
+        measure("IcsReader (" + day + ")", () -> streamed(file, from, to));
+    }
+
+    /**
+     * Bisheriger Weg aus dem CalendarIndex: vollständig parsen, dann filtern.
+     */
+    private static List<Interval> biweekly(Path file) throws Exception {
+        List<Interval> result = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file)) {
+            ICalendar ical = Biweekly.parse(in).first();
+            if (ical == null) return result;
+            for (VEvent event : ical.getEvents()) {
+                if (event.getDateStart() == null || event.getDateEnd() == null) continue;
+                if (CalendarService.shouldIgnore(event)) continue;
+                result.add(new Interval(
+                        event.getDateStart().getValue().toInstant().getEpochSecond(),
+                        event.getDateEnd().getValue().toInstant().getEpochSecond()));
+            }
+        }
+        return result;
+    }
+
+    private static List<Interval> streamed(Path file, long from, long to) throws Exception {
+        List<Interval> result = new ArrayList<>();
+        for (IcsReader.Event event : IcsReader.readFile(file, from, to)) {
+            result.add(new Interval(event.start(), event.end()));
+        }
+        return result;
+    }
+
+    private static void measure(String label, Parse parse) throws Exception {
+        for (int i = 0; i < WARMUP; i++) parse.run();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long t0 = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < ROUNDS; i++) sink += parse.run().size();
+        long nanos = System.nanoTime() - t0;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        System.out.printf("%-24s %8.3f ms/Durchlauf  %,12d Bytes/Durchlauf  (%d Termine)%n",
+                label, nanos / 1e6 / ROUNDS, allocated / ROUNDS, sink / ROUNDS);
+    }
+}
@@ -0,0 +1,510 @@
+package de.campuspark.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.campuspark.logic.ParkingTopology;
+import de.campuspark.logic.PlateIndex;
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.model.AllocationEvent;
+import de.campuspark.model.LicensePlateEvent;
+import de.campuspark.model.UserProfile;
+import de.campuspark.service.MqttPublisher;
+import de.campuspark.service.ParkingAccessCallback;
+import de.campuspark.service.SpotAllocator;
+import de.campuspark.service.UserDirectory;
+import de.campuspark.util.Config;
+import de.campuspark.util.TrafficLog;
+
+/**
+ * Deterministischer Replay- und Lastgenerator für die Zugangslogik.
+ * Nachrichten werden wie von Paho nacheinander auf einem Thread in den echten
+ * {@link ParkingAccessCallback} eingespeist; ausgehende Nachrichten laufen über den
+ * {@link MqttPublisher} in einen Loopback-Client statt zu einem Broker. Eine Nachricht gilt als
+ * fertig, wenn alle dabei erzeugten Publishes abgesetzt sind. Gemessen werden Durchsatz,
+ * Bearbeitungszeit und Verweilzeit (geplanter Zeitpunkt bis fertig) je Nachrichtentyp,
+ * anschließend wird der Endzustand des Allocators auf Konsistenz geprüft.
+ *
+ * Aufruf:
+ * <pre>
+ * java -cp ... de.campuspark.bench.LoadHarness replay &lt;datei&gt; [tempo]
+ * java -cp ... de.campuspark.bench.LoadHarness synthetic [schranken] [spots] [autos] [tempo] [seed]
+ * </pre>
+ * Tempo 1 = Echtzeit, 60 = eine Minute pro Sekunde, 0 = so schnell wie möglich (Standard).
+ * Aufzeichnungen entstehen mit TRAFFIC_RECORD_FILE im laufenden Dienst. Ohne DB_URL werden
+ * beim Replay alle aufgezeichneten Kennzeichen als registriert angenommen.
+ * Aus dem Verzeichnis ParkingAccessService starten, damit die lokalen Kalender gefunden werden.
+ */
+public class LoadHarness {
+
+    private static final String[] COURSES = { "WWI23A", "WHD24C-A" };
+
+    /** Anteil der Autos, deren erste Erkennung ein unsicherer Lesefehler ist. */
+    private static final double MISREAD_RATE = 0.05;
+    /** Anteil nicht registrierter Besucher. */
+    private static final double VISITOR_RATE = 0.03;
+    /** Anteil der Autos, die während des Laufs wieder wegfahren. */
+    private static final double DEPARTURE_RATE = 0.2;
+    private static final long RUSH_MINUTES = 30;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Geplante eingehende Nachricht, Zeit in virtuellen Millisekunden ab Start.
+     * Kennzeichen erhalten beim Einspielen einen neuen Zeitstempel, der um plateAgeMillis
+     * (Alter bei der ursprünglichen Ankunft) vor der aktuellen Zeit liegt.
+     */
+    private record Scheduled(long at, long seq, String topic, byte[] payload, long plateAgeMillis) {}
+
+    /** Ein simuliertes Fahrzeug (nur im synthetischen Modus). */
+    private static class Car {
+        final String plate;
+        final String gate;
+        final long stayMillis; // 0 = bleibt bis zum Ende
+        String spot;
+        long parkAt = -1;  // virtuelle Zeit der Sensor-Meldung "occupied", -1 = noch nicht
+        long leaveAt = -1; // virtuelle Zeit der Sensor-Meldung "free", -1 = bleibt
+
+        Car(String plate, String gate, long stayMillis) {
+            this.plate = plate;
+            this.gate = gate;
+            this.stayMillis = stayMillis;
+        }
+    }
+
+    /** Vom Dienst gesendete Nachricht. */
+    private record Published(String topic, byte[] payload) {}
+
+    /**
+     * MQTT-Client ohne Verbindung: Publishes werden sofort bestätigt und im Postausgang
+     * gesammelt, Acks eingehender Nachrichten entfallen.
+     */
+    private static class LoopbackClient extends MqttAsyncClient {
+        private final ConcurrentLinkedQueue<Published> outbox;
+
+        LoopbackClient(ConcurrentLinkedQueue<Published> outbox) throws MqttException {
+            super("tcp://localhost:1883", "load-harness", new MemoryPersistence());
+            this.outbox = outbox;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public IMqttDeliveryToken publish(String topic, MqttMessage message, Object userContext, IMqttActionListener callback) {
+            outbox.add(new Published(topic, message.getPayload()));
+            MqttDeliveryToken token = new MqttDeliveryToken(getClientId());
+            token.setUserContext(userContext);
+            if (callback != null) callback.onSuccess(token);
+            return token;
+        }
+
+        @Override
+        public void messageArrivedComplete(int messageId, int qos) {
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Published> outbox = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Scheduled> queue = new PriorityQueue<>((a, b) ->
+            a.at != b.at ? Long.compare(a.at, b.at) : Long.compare(a.seq, b.seq));
+    private long seq;
+    private long now;
+
+    private final Random random;
+    private final String spotTopic = Config.TOPIC_SPOT.replace("#", "");
+    private final Map<String, Car> carsByReadPlate = new HashMap<>();
+    private final Map<String, Car> holders = new HashMap<>(); // Spot -> Auto laut Modell
+
+    // Messwerte
+    private long[] accessNanos = new long[1024];
+    private long[] sensorNanos = new long[1024];
+    private long[] sojournNanos = new long[1024];
+    private int accessCount, sensorCount, otherCount;
+    private long published, logs, allowed, deniedUnknown, deniedFull;
+
+    // Korrektheit
+    private long unheldAllows, reallocations, conflicts;
+
+    private LoadHarness(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "synthetic";
+        if (mode.equals("replay")) {
+            if (args.length < 2) {
+                System.err.println("Usage: LoadHarness replay <file> [speed]");
+                return;
+            }
+            double speed = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+            new LoadHarness(0).replay(Path.of(args[1]), speed);
+        } else {
+            int gates = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+            int spots = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+            int cars = args.length > 3 ? Integer.parseInt(args[3]) : 800;
+            double speed = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+            long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+            new LoadHarness(seed).synthetic(gates, spots, cars, speed);
+        }
+    }
+
+    // -----------------------------
+    // SZENARIEN
+    // -----------------------------
+
+    /**
+     * Spielt eine Aufzeichnung mit den ursprünglichen Abständen (skaliert) wieder ein.
+     */
+    private void replay(Path file, double speed) throws Exception {
+        List<TrafficLog.Entry> entries = TrafficLog.readAll(file);
+        if (entries.isEmpty()) {
+            System.out.println("Empty recording: " + file);
+            return;
+        }
+
+        if (Config.DB_URL == null) {
+            Set<String> plates = new LinkedHashSet<>();
+            for (TrafficLog.Entry entry : entries) {
+                if (!entry.topic().equals(Config.TOPIC_LICENSE_PLATE)) continue;
+                // Fehlerhafte Payloads bleiben Teil des Replays, liefern aber keinen Nutzer
+                LicensePlateEvent lp = readPlate(entry.payload());
+                if (lp != null) plates.add(lp.getPlate());
+            }
+            List<UserProfile> users = new ArrayList<>();
+            for (String plate : plates) {
+                users.add(new UserProfile(plate, "replay-" + users.size(), "student", "", ""));
+            }
+            UserDirectory.install(users);
+        }
+
+        long start = entries.get(0).timeMillis();
+        for (TrafficLog.Entry entry : entries) {
+            long plateAge = 0;
+            if (entry.topic().equals(Config.TOPIC_LICENSE_PLATE)) {
+                LicensePlateEvent lp = readPlate(entry.payload());
+                Instant recognized = lp != null ? lp.recognizedAt() : null;
+                if (recognized != null) plateAge = entry.timeMillis() - recognized.toEpochMilli();
+            }
+            schedule(entry.timeMillis() - start, entry.topic(), entry.payload(), plateAge);
+        }
+        System.out.printf("Replaying %d messages (%.1f s recorded) from %s%n", entries.size(),
+                (entries.get(entries.size() - 1).timeMillis() - start) / 1000.0, file);
+        run(speed);
+    }
+
+    /**
+     * Erzeugt einen Morgen-Ansturm: alle Sensoren melden sich frei, danach treffen die Autos
+     * exponentialverteilt an den Schranken ein (teils mehrfach erkannt, teils falsch gelesen).
+     * Geschlossene Schleife: auf jede Zuweisung folgt nach der Fahrzeit die Sensor-Meldung
+     * des zugewiesenen Platzes, ein Teil der Autos fährt später wieder weg.
+     */
+    private void synthetic(int gates, int spots, int cars, double speed) throws Exception {
+        List<UserProfile> users = new ArrayList<>();
+        List<Car> fleet = new ArrayList<>();
+        for (int i = 0; i < cars; i++) {
+            String plate = String.format("KA-SM-%04d", i);
+            String gate = "Gate-" + (i % gates);
+            long stay = random.nextDouble() < DEPARTURE_RATE ? TimeUnit.MINUTES.toMillis(10 + random.nextInt(30)) : 0;
+            fleet.add(new Car(plate, gate, stay));
+            if (random.nextDouble() >= VISITOR_RATE) {
+                users.add(new UserProfile(plate, "sim-" + i, "student", "+49" + i, COURSES[i % COURSES.length]));
+            }
+        }
+        UserDirectory.install(users);
+
+        for (String spotId : spotIds(spots)) {
+            schedule(0, spotTopic + spotId, "free".getBytes(StandardCharsets.UTF_8));
+        }
+
+        long meanGap = TimeUnit.MINUTES.toMillis(RUSH_MINUTES) / Math.max(1, cars);
+        long t = 1000;
+        for (Car car : fleet) {
+            t += (long) (-Math.log(1 - random.nextDouble()) * meanGap);
+            carsByReadPlate.put(car.plate, car);
+
+            // Erste Erkennung, ggf. als unsicherer Lesefehler
+            if (random.nextDouble() < MISREAD_RATE) {
+                String misread = misread(car.plate);
+                carsByReadPlate.put(misread, car);
+                schedule(t, Config.TOPIC_LICENSE_PLATE, plateEvent(misread, car.gate, 0.6));
+            } else {
+                schedule(t, Config.TOPIC_LICENSE_PLATE, plateEvent(car.plate, car.gate, 0.97));
+            }
+            // Wiederholte Erkennungen, solange das Auto vor der Schranke steht
+            int repeats = random.nextInt(3);
+            for (int r = 1; r <= repeats; r++) {
+                schedule(t + r * (500 + random.nextInt(1500)), Config.TOPIC_LICENSE_PLATE, plateEvent(car.plate, car.gate, 0.95));
+            }
+        }
+
+        System.out.printf("Synthetic run: %d gates, %d spots, %d cars (%d registered), seed-driven%n",
+                gates, spots, cars, users.size());
+        run(speed);
+    }
+
+    // -----------------------------
+    // AUSFÜHRUNG
+    // -----------------------------
+
+    private void run(double speed) throws Exception {
+        LoopbackClient client = new LoopbackClient(outbox);
+        MqttPublisher.start(client, null);
+        ParkingAccessCallback callback = new ParkingAccessCallback(client);
+
+        long startNanos = System.nanoTime();
+        long processed = 0;
+        while (!queue.isEmpty()) {
+            Scheduled next = queue.poll();
+            long dueNanos = startNanos + (speed > 0 ? (long) (TimeUnit.MILLISECONDS.toNanos(next.at) / speed) : 0);
+            long wait = dueNanos - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+
+            now = next.at;
+            byte[] payload = next.topic.equals(Config.TOPIC_LICENSE_PLATE) ? restamp(next.payload, next.plateAgeMillis) : next.payload;
+            long begin = System.nanoTime();
+            callback.messageArrived(next.topic, new MqttMessage(payload));
+            while (callback.pending() > 0 || MqttPublisher.pending() > 0) {
+                LockSupport.parkNanos(10_000);
+            }
+            long end = System.nanoTime();
+
+            Published out;
+            while ((out = outbox.poll()) != null) {
+                onPublish(out.topic(), out.payload());
+            }
+
+            if (next.topic.equals(Config.TOPIC_LICENSE_PLATE)) {
+                accessNanos = record(accessNanos, accessCount++, end - begin);
+            } else if (next.topic.startsWith(spotTopic)) {
+                sensorNanos = record(sensorNanos, sensorCount++, end - begin);
+            } else {
+                otherCount++;
+            }
+            if (speed > 0) sojournNanos = record(sojournNanos, (int) processed, end - dueNanos);
+            processed++;
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+
+        report(processed, wallNanos, speed);
+    }
+
+    /**
+     * Ausgehende Nachrichten des Dienstes; Zuweisungen treiben die geschlossene Schleife.
+     */
+    private void onPublish(String topic, byte[] payload) {
+        if (topic.equals("parking/logs")) {
+            logs++;
+            return;
+        }
+        published++;
+        if (!topic.equals(Config.TOPIC_ALLOCATION)) return;
+
+        AllocationEvent alloc;
+        try {
+            alloc = mapper.readValue(payload, AllocationEvent.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable allocation: " + e.getMessage(), e);
+        }
+        if (!alloc.getAction().equals("ALLOW")) {
+            if ("-1".equals(alloc.getSpotId())) deniedFull++;
+            else deniedUnknown++;
+            return;
+        }
+        allowed++;
+
+        String holder = resolvePlate(alloc.getPlate());
+        if (!SpotAllocator.isHeldBy(alloc.getSpotId(), holder)) unheldAllows++;
+
+        Car car = carsByReadPlate.get(alloc.getPlate());
+        if (car == null) return; // Replay: kein Fahrzeugmodell
+
+        if (car.spot != null) {
+            // Wiederholte Erkennung muss denselben Platz liefern
+            if (!car.spot.equals(alloc.getSpotId())) reallocations++;
+            return;
+        }
+        Car other = holders.get(alloc.getSpotId());
+        if (other != null && (other.leaveAt < 0 || other.leaveAt > now)) conflicts++;
+        holders.put(alloc.getSpotId(), car);
+        car.spot = alloc.getSpotId();
+
+        // Fahrzeit zum Platz, danach meldet der Sensor das Auto
+        car.parkAt = now + 20_000 + random.nextInt(70_000);
+        schedule(car.parkAt, spotTopic + car.spot, "occupied".getBytes(StandardCharsets.UTF_8));
+        if (car.stayMillis > 0) {
+            car.leaveAt = car.parkAt + car.stayMillis;
+            schedule(car.leaveAt, spotTopic + car.spot, "free".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String resolvePlate(String readPlate) {
+        if (UserDirectory.get(readPlate) != null) return readPlate;
+        PlateIndex.Match match = UserDirectory.findSimilarPlate(readPlate, Config.FUZZY_PLATE_MAX_DISTANCE);
+        return match != null ? match.plate() : readPlate;
+    }
+
+    // -----------------------------
+    // AUSWERTUNG
+    // -----------------------------
+
+    private void report(long processed, long wallNanos, double speed) {
+        System.out.printf("Processed %d messages in %.0f ms (%.0f msg/s), %d published, %d log events%n",
+                processed, wallNanos / 1e6, processed / (wallNanos / 1e9), published, logs);
+        printLatency("access", accessNanos, accessCount);
+        printLatency("sensor", sensorNanos, sensorCount);
+        if (speed > 0) printLatency("sojourn", sojournNanos, (int) processed);
+        if (otherCount > 0) System.out.printf("other messages: %d%n", otherCount);
+        System.out.printf("Allocations: %d allow, %d deny (unknown plate), %d deny (full)%n", allowed, deniedUnknown, deniedFull);
+
+        // Endzustand des Allocators prüfen
+        Map<String, Integer> spotsPerPlate = new HashMap<>();
+        int[] free = new int[1];
+        int[] modelMismatches = new int[1];
+        SpotAllocator.forEachSpot(spot -> {
+            if (spot.getState() == SpotInfo.State.free) {
+                free[0]++;
+            } else if (!spot.getAssignedPlate().equals("UNKNOWN")) {
+                spotsPerPlate.merge(spot.getAssignedPlate(), 1, Integer::sum);
+            }
+            if (!holders.isEmpty()) {
+                Car car = holders.get(spot.getSpotId());
+                boolean expectOccupied = car != null && car.parkAt >= 0 && car.leaveAt < 0;
+                if (expectOccupied != (spot.getState() == SpotInfo.State.occupied)) modelMismatches[0]++;
+            }
+        });
+        long multiSpotPlates = spotsPerPlate.values().stream().filter(n -> n > 1).count();
+        int reportedFree = Integer.parseInt(SpotAllocator.getFreeSpotCount());
+
+        System.out.println("Correctness:");
+        check("allow for spot not held by plate", unheldAllows);
+        check("plates holding more than one spot", multiSpotPlates);
+        check("free counter vs. scan (" + reportedFree + " / " + free[0] + ")", Math.abs(reportedFree - free[0]));
+        if (!holders.isEmpty()) {
+            check("repeated read got a different spot", reallocations);
+            check("spot allocated while still held", conflicts);
+            check("spot state differs from model", modelMismatches[0]);
+        }
+    }
+
+    private static void check(String name, long violations) {
+        System.out.printf("  %-45s %s%n", name, violations == 0 ? "ok" : "FAILED (" + violations + ")");
+    }
+
+    private static void printLatency(String name, long[] samples, int count) {
+        if (count == 0) return;
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        System.out.printf("%-8s n=%-7d p50=%8.1f us  p95=%8.1f us  p99=%8.1f us  max=%8.1f us%n", name, count,
+                percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.95) / 1e3,
+                percentile(sorted, 0.99) / 1e3, sorted[count - 1] / 1e3);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // -----------------------------
+    // HILFSMETHODEN
+    // -----------------------------
+
+    private void schedule(long at, String topic, byte[] payload) {
+        schedule(at, topic, payload, 0);
+    }
+
+    private void schedule(long at, String topic, byte[] payload, long plateAgeMillis) {
+        queue.add(new Scheduled(at, seq++, topic, payload, plateAgeMillis));
+    }
+
+    private static long[] record(long[] samples, int index, long value) {
+        if (index == samples.length) samples = Arrays.copyOf(samples, samples.length * 2);
+        samples[index] = value;
+        return samples;
+    }
+
+    /**
+     * Spot-IDs entsprechend der Topologie: je 6 Plätze 2 in Lane 1 und 4, 1 in den Fahrgassen 2 und 3.
+     */
+    private static List<String> spotIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        int[] next = new int[5];
+        int[] pattern = { 1, 1, 4, 4, 2, 3 };
+        for (int i = 0; i < count; i++) {
+            int lane = pattern[i % pattern.length];
+            ids.add(ParkingTopology.createSpotId(lane, next[lane]++));
+        }
+        return ids;
+    }
+
+    /**
+     * Typischer OCR-Fehler: ein Zeichen durch ein optisch ähnliches ersetzen.
+     */
+    private String misread(String plate) {
+        String from = "0O8B1I5S2Z";
+        String to = "O0B8I1S5Z2";
+        char[] chars = plate.toCharArray();
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < chars.length; i++) {
+            if (from.indexOf(chars[i]) >= 0) candidates.add(i);
+        }
+        if (candidates.isEmpty()) return plate;
+        int i = candidates.get(random.nextInt(candidates.size()));
+        chars[i] = to.charAt(from.indexOf(chars[i]));
+        return new String(chars);
+    }
+
+    private static LicensePlateEvent readPlate(byte[] payload) {
+        try {
+            return mapper.readValue(payload, LicensePlateEvent.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Setzt den Zeitstempel relativ zur aktuellen Zeit neu, damit die Frische-Prüfung
+     * auch bei beschleunigtem oder verzögertem Einspielen dasselbe Alter sieht.
+     */
+    private static byte[] restamp(byte[] payload, long ageMillis) {
+        LicensePlateEvent lp = readPlate(payload);
+        if (lp == null || lp.recognizedAt() == null) return payload;
+        String timestamp = Instant.now().minusMillis(ageMillis).toString();
+        try {
+            return mapper.writeValueAsBytes(new LicensePlateEvent(lp.getPlate(), lp.getGateId(), timestamp, lp.getConfidence()));
+        } catch (Exception e) {
+            return payload;
+        }
+    }
+
+    private static byte[] plateEvent(String plate, String gate, double confidence) {
+        try {
+            return mapper.writeValueAsBytes(new LicensePlateEvent(plate, gate, Instant.now().toString(), confidence));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
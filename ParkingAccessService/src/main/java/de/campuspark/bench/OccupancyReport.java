@@ -0,0 +1,31 @@
+package de.campuspark.bench;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import de.campuspark.service.OccupancyHistory;
+
+/**
+ * Gibt die Belegung pro Lane in 5-Minuten-Fenstern für einen Tag aus der
+ * {@link OccupancyHistory} aus (Segmente aus HISTORY_DIR).
+ *
+ * Aufruf: java -cp ... de.campuspark.bench.OccupancyReport [tag yyyy-MM-dd]
+ * Ohne Tag wird heute ausgewertet.
+ */
+public class OccupancyReport {
+
+    public static void main(String[] args) throws IOException {
+        LocalDate day = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.now();
+        Instant from = day.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Duration bucket = Duration.ofMinutes(5);
+        int[][] occupancy = OccupancyHistory.occupancyPerLane(from, from.plus(Duration.ofDays(1)), bucket);
+        for (int b = 0; b < occupancy.length; b++) {
+            System.out.println(from.plus(bucket.multipliedBy(b + 1)).atZone(ZoneId.systemDefault()).toLocalTime()
+                    + " " + Arrays.toString(occupancy[b]));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package de.campuspark.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import de.campuspark.model.RegistrationEvent;
+import de.campuspark.service.RegistrationWriter;
+import de.campuspark.util.Config;
+import de.campuspark.util.DBConnection;
+
+/**
+ * Vergleicht den Durchsatz von Einzel-Upserts (eine Verbindung und Transaktion pro
+ * Registrierung) mit dem gebündelten {@link RegistrationWriter}.
+ * Läuft ausschließlich gegen die in BENCH_DB_URL (BENCH_DB_USER, BENCH_DB_PASSWORD) konfigurierte
+ * Wegwerf-Datenbank mit users-Tabelle, nie gegen DB_URL des Dienstes: Kennzeichen mit Präfix
+ * "BENCH-" werden dort vor und nach jeder Messung gelöscht.
+ *
+ * Aufruf: java -cp ... de.campuspark.bench.RegistrationBenchmark [anzahlRegistrierungen]
+ */
+public class RegistrationBenchmark {
+
+    private static final String PREFIX = "BENCH-";
+
+    public static void main(String[] args) throws Exception {
+        if (Config.BENCH_DB_URL == null || Config.BENCH_DB_URL.isBlank()) {
+            System.err.println("BENCH_DB_URL is not set; refusing to run against the service database");
+            System.exit(1);
+        }
+        if (Config.BENCH_DB_URL.equals(Config.DB_URL)) {
+            System.err.println("BENCH_DB_URL must differ from DB_URL");
+            System.exit(1);
+        }
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        RegistrationEvent[] regs = new RegistrationEvent[count];
+        for (int i = 0; i < count; i++) {
+            regs[i] = new RegistrationEvent(PREFIX + i, "student", "+49" + i, null, "WWI23A");
+        }
+
+        cleanup();
+
+        // --- Einzel-Upserts ---
+        DBConnection db = new DBConnection(Config.BENCH_DB_URL, Config.BENCH_DB_USER, Config.BENCH_DB_PASSWORD);
+        long t0 = System.nanoTime();
+        for (RegistrationEvent reg : regs) {
+            db.upsertUsers(List.of(reg));
+        }
+        long singleNanos = System.nanoTime() - t0;
+
+        cleanup();
+
+        // --- Write-Behind mit Multi-Row-Upserts, Ende = alle Futures committet ---
+        RegistrationWriter.start(db);
+        CompletableFuture<?>[] done = new CompletableFuture<?>[count];
+        long t1 = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            done[i] = RegistrationWriter.submit(regs[i]);
+        }
+        CompletableFuture.allOf(done).join();
+        long batchNanos = System.nanoTime() - t1;
+
+        cleanup();
+
+        System.out.printf("Registrierungen: %d%n", count);
+        System.out.printf("Einzel-Upserts:  %8.0f ms  (%8.0f/s)%n", singleNanos / 1e6, count / (singleNanos / 1e9));
+        System.out.printf("Write-Behind:    %8.0f ms  (%8.0f/s)%n", batchNanos / 1e6, count / (batchNanos / 1e9));
+    }
+
+    private static void cleanup() throws Exception {
+        try (Connection conn = DriverManager.getConnection(Config.BENCH_DB_URL, Config.BENCH_DB_USER,
+                Config.BENCH_DB_PASSWORD);
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM users WHERE plate LIKE ?")) {
+            pstmt.setString(1, PREFIX + "%");
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package de.campuspark.bench;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotStore;
+import de.campuspark.model.UserProfile;
+
+/**
+ * Vergleicht Speicherbedarf und Scan-Durchsatz des spaltenorientierten {@link SpotStore}
+ * mit dem früheren Objektmodell (ein Objekt pro Spot in einer ConcurrentHashMap).
+ *
+ * Aufruf: java -cp ... de.campuspark.bench.SpotStoreBenchmark [anzahlSpots]
+ * Für belastbare Speicherwerte mit Serial-GC und fester Heap-Größe starten
+ * (z.B. -XX:+UseSerialGC -Xms2g -Xmx2g).
+ */
+public class SpotStoreBenchmark {
+
+    /** Nachbau des alten SpotInfo-Layouts als Vergleichsbasis. */
+    private static class LegacySpot {
+        final String spotId;
+        SpotInfo.State state = SpotInfo.State.free;
+        UserProfile user;
+        int pos;
+        int lane;
+        Instant arrivalTime;
+        Instant estimatedDepartureTime;
+
+        LegacySpot(String spotId, int lane, int pos) {
+            this.spotId = spotId;
+            this.lane = lane;
+            this.pos = pos;
+        }
+    }
+
+    private static final int LANES = 100;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) {
+        int spotCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int perLane = spotCount / LANES;
+
+        UserProfile[] users = new UserProfile[spotCount / 2];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new UserProfile("KA-" + i, Integer.toString(i), "student", "+49" + i, "WWI23A");
+        }
+
+        // --- Objektmodell ---
+        long before = usedHeap();
+        Map<String, LegacySpot> legacy = new ConcurrentHashMap<>();
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int pos = 0; pos < perLane; pos++) {
+                String id = "L" + lane + "-P" + pos;
+                legacy.put(id, new LegacySpot(id, lane, pos));
+            }
+        }
+        int u = 0;
+        for (LegacySpot s : legacy.values()) {
+            if (u == users.length) break;
+            s.state = SpotInfo.State.occupied;
+            s.user = users[u++];
+            s.arrivalTime = Instant.now();
+            s.estimatedDepartureTime = Instant.now().plusSeconds(3600);
+        }
+        long legacyBytes = usedHeap() - before;
+
+        // --- Struct-of-Arrays ---
+        before = usedHeap();
+        SpotStore store = new SpotStore(spotCount);
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int pos = 0; pos < perLane; pos++) {
+                store.add("L" + lane + "-P" + pos);
+            }
+        }
+        for (int i = 0; i < users.length; i++) {
+            store.setState(i, SpotInfo.State.occupied);
+            store.setUser(i, users[i]);
+            store.setArrival(i, Instant.now());
+            store.setDeparture(i, Instant.now().plusSeconds(3600));
+        }
+        long storeBytes = usedHeap() - before;
+
+        // --- Scan-Durchsatz: bester freier Platz (wie reserveSpotForUser) ---
+        long legacyNanos = 0;
+        long storeNanos = 0;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            sink += scanLegacy(legacy);
+            long t1 = System.nanoTime();
+            sink += scanStore(store);
+            long t2 = System.nanoTime();
+            if (round >= ROUNDS / 5) { // Warm-up ignorieren
+                legacyNanos += t1 - t0;
+                storeNanos += t2 - t1;
+            }
+        }
+        int measured = ROUNDS - ROUNDS / 5;
+
+        System.out.printf("Spots: %d (%d belegt)%n", spotCount, users.length);
+        System.out.printf("Heap Objektmodell:  %8.1f MB%n", legacyBytes / 1e6);
+        System.out.printf("Heap SpotStore:     %8.1f MB%n", storeBytes / 1e6);
+        System.out.printf("Scan Objektmodell:  %8.3f ms/Allokation%n", legacyNanos / 1e6 / measured);
+        System.out.printf("Scan SpotStore:     %8.3f ms/Allokation%n", storeNanos / 1e6 / measured);
+        System.out.println("(sink " + sink + ", legacy " + legacy.size() + ", store " + store.size() + ")");
+    }
+
+    private static long scanLegacy(Map<String, LegacySpot> spots) {
+        LegacySpot best = null;
+        for (LegacySpot s : spots.values()) {
+            if (s.state != SpotInfo.State.free) continue;
+            if (best == null || s.pos * 10 + s.lane < best.pos * 10 + best.lane) best = s;
+        }
+        return best != null ? best.pos : -1;
+    }
+
+    private static long scanStore(SpotStore store) {
+        int best = -1;
+        for (int i = 0; i < store.size(); i++) {
+            if (!store.isState(i, SpotInfo.State.free)) continue;
+            if (best < 0 || store.getPos(i) * 10 + store.getLane(i) < store.getPos(best) * 10 + store.getLane(best)) best = i;
+        }
+        return best >= 0 ? store.getPos(best) : -1;
+    }
+
+    /**
+     * GC so lange anstoßen, bis sich der belegte Heap nicht mehr verringert.
+     */
+    private static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,126 @@
+package de.campuspark.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Berechnet, welche Autos in welcher Reihenfolge umparken müssen, damit ein Spot ausfahren kann.
+ * Die direkten Blockaden kommen aus {@link ParkingTopology#getDirectBlockers}; daraus wird die
+ * transitive Hülle gebildet (Blockierer von Blockierern) und in Post-Order ausgegeben, sodass
+ * jedes Auto erst nach allen Autos kommt, die es selbst blockieren (das vorderste zuerst).
+ * Nur belegte Spots landen im Plan; unbekannte Plätze dazwischen werden mit durchlaufen.
+ *
+ * Pläne werden pro Spot zwischengespeichert. Jede Lane hat einen Versionszähler, der bei jedem
+ * Spot-Wechsel in dieser Lane erhöht wird; ein Plan ist gültig, solange sich keine der Lanes,
+ * die er berührt, geändert hat. Nicht thread-safe (Zugriff nur über den SpotAllocator).
+ */
+public class BlockerGraph {
+
+    private static final int MAX_CACHED = 4096;
+
+    private record Plan(int[] spots, int[] lanes, long[] versions) {}
+
+    private final SpotStore store;
+    private final Map<Integer, Plan> cache = new HashMap<>();
+    private long[] laneVersions = new long[0];
+
+    public BlockerGraph(SpotStore store) {
+        this.store = store;
+        store.addListener(this::onTransition);
+    }
+
+    /**
+     * @return Indizes der belegten Spots, die in dieser Reihenfolge umparken müssen
+     */
+    public int[] movePlan(int index) {
+        Plan plan = cache.get(index);
+        if (plan != null && isValid(plan)) {
+            return plan.spots();
+        }
+
+        plan = compute(index);
+        if (cache.size() >= MAX_CACHED) cache.clear();
+        cache.put(index, plan);
+        return plan.spots();
+    }
+
+    private void onTransition(SpotTransition t) {
+        int lane = t.lane();
+        if (lane < 0) return;
+        if (lane >= laneVersions.length) {
+            laneVersions = Arrays.copyOf(laneVersions, lane + 1);
+        }
+        laneVersions[lane]++;
+    }
+
+    private boolean isValid(Plan plan) {
+        for (int i = 0; i < plan.lanes().length; i++) {
+            if (version(plan.lanes()[i]) != plan.versions()[i]) return false;
+        }
+        return true;
+    }
+
+    private long version(int lane) {
+        return lane < laneVersions.length ? laneVersions[lane] : 0;
+    }
+
+    /**
+     * Iterative Tiefensuche über die direkten Blockaden, Ausgabe in Post-Order.
+     * Gelaufen wird über (Lane, Position), nicht über Store-Indizes: Auch Plätze, die der Store
+     * noch nicht kennt (Sensor noch nie gemeldet), werden durchquert, damit dahinter liegende
+     * belegte Blockierer im Plan landen und deren Lanes in die Gültigkeitsprüfung eingehen.
+     */
+    private Plan compute(int target) {
+        List<Integer> order = new ArrayList<>();
+        List<Integer> lanes = new ArrayList<>();
+        BitSet[] visited = new BitSet[0];
+
+        // Stack-Einträge: lane << 32 | pos; invertiert (~entry) = Kinder bereits besucht, jetzt ausgeben
+        long[] stack = new long[16];
+        int size = 0;
+        stack[size++] = node(store.getLane(target), store.getPos(target));
+        while (size > 0) {
+            long entry = stack[--size];
+            if (entry < 0) {
+                int index = store.indexOf(laneOf(~entry), posOf(~entry));
+                if (index >= 0 && index != target && store.isState(index, SpotInfo.State.occupied)) order.add(index);
+                continue;
+            }
+            int lane = laneOf(entry);
+            int pos = posOf(entry);
+            if (lane >= visited.length) visited = Arrays.copyOf(visited, lane + 1);
+            if (visited[lane] == null) visited[lane] = new BitSet();
+            if (visited[lane].get(pos)) continue;
+            visited[lane].set(pos);
+            if (!lanes.contains(lane)) lanes.add(lane);
+
+            List<int[]> blockers = ParkingTopology.getDirectBlockers(lane, pos);
+            if (size + 1 + blockers.size() > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[size++] = ~entry;
+            for (int[] blocker : blockers) {
+                stack[size++] = node(blocker[0], blocker[1]);
+            }
+        }
+
+        int[] laneArray = lanes.stream().mapToInt(Integer::intValue).toArray();
+        long[] versions = new long[laneArray.length];
+        for (int i = 0; i < laneArray.length; i++) versions[i] = version(laneArray[i]);
+        return new Plan(order.stream().mapToInt(Integer::intValue).toArray(), laneArray, versions);
+    }
+
+    private static long node(int lane, int pos) {
+        return ((long) lane << 32) | pos;
+    }
+
+    private static int laneOf(long node) {
+        return (int) (node >>> 32);
+    }
+
+    private static int posOf(long node) {
+        return (int) node;
+    }
+}
@@ -0,0 +1,177 @@
+package de.campuspark.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Zeitlich sortierter Index der belegten Spots nach geschätzter Abfahrtszeit, getrennt pro Lane.
+ * Schlüssel sind gepackte longs (Abfahrt in Epoch-Sekunden << 24 | Spot-Index) in einem
+ * sortierten primitiven Array pro Lane, daneben ein Min-Segmentbaum über die Positionen der Lane.
+ * Alle Abfragen laufen in O(log n): früheste Abfahrt, Anzahl Abfahrten in einem Zeitraum per
+ * Binärsuche und früheste Abfahrt hinter einer Position über den Segmentbaum.
+ * Einfügen und Entfernen verschieben das Lane-Array (O(n) per arraycopy, eine Lane hat nur
+ * einige hundert Spots) und aktualisieren den Baum in O(log n).
+ * Wird vom {@link SpotStore} bei jeder Zustands- bzw. Abfahrtsänderung mitgeführt.
+ */
+public class DepartureIndex {
+
+    private static final int INDEX_BITS = 24;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final long NONE = Long.MAX_VALUE;
+
+    /** Belegte Spots einer Lane mit bekannter Abfahrt. */
+    private static final class Lane {
+        /** Schlüssel aufsteigend nach Abfahrt, daneben die Position des jeweiligen Spots. */
+        long[] keys = new long[8];
+        int[] positions = new int[8];
+        int size;
+        /** Früheste Abfahrt pro Position als Segmentbaum, Blätter ab tree[leaves]. */
+        long[] tree = new long[0];
+        int leaves;
+    }
+
+    private final List<Lane> lanes = new ArrayList<>();
+
+    public void add(int lane, int pos, int spotIndex, long departure) {
+        Lane l = lane(lane);
+        long key = key(departure, spotIndex);
+        int at = lowerBound(l, key);
+        if (at < l.size && l.keys[at] == key) return;
+        if (l.size == l.keys.length) {
+            l.keys = Arrays.copyOf(l.keys, l.size * 2);
+            l.positions = Arrays.copyOf(l.positions, l.size * 2);
+        }
+        System.arraycopy(l.keys, at, l.keys, at + 1, l.size - at);
+        System.arraycopy(l.positions, at, l.positions, at + 1, l.size - at);
+        l.keys[at] = key;
+        l.positions[at] = pos;
+        l.size++;
+
+        if (pos >= l.leaves) {
+            rebuild(l, Integer.highestOneBit(Math.max(1, pos)) << 1);
+        } else if (departure < l.tree[l.leaves + pos]) {
+            update(l, pos, departure);
+        }
+    }
+
+    public void remove(int lane, int pos, int spotIndex, long departure) {
+        if (lane >= lanes.size() || lanes.get(lane) == null) return;
+        Lane l = lanes.get(lane);
+        long key = key(departure, spotIndex);
+        int at = lowerBound(l, key);
+        if (at == l.size || l.keys[at] != key) return;
+        System.arraycopy(l.keys, at + 1, l.keys, at, l.size - at - 1);
+        System.arraycopy(l.positions, at + 1, l.positions, at, l.size - at - 1);
+        l.size--;
+
+        // Mehrere Spots teilen sich nur bei freien IDs (alle auf Position 0) eine Position
+        if (l.tree[l.leaves + pos] == departure) {
+            long min = NONE;
+            for (int i = 0; i < l.size; i++) {
+                if (l.positions[i] == pos) {
+                    min = departureOf(l.keys[i]);
+                    break;
+                }
+            }
+            update(l, pos, min);
+        }
+    }
+
+    /**
+     * @return früheste geschätzte Abfahrt (Epoch-Sekunden) in der Lane oder {@link SpotStore#NO_TIME}.
+     */
+    public long earliest(int lane) {
+        if (count(lane) == 0) return SpotStore.NO_TIME;
+        return departureOf(lanes.get(lane).keys[0]);
+    }
+
+    /**
+     * Früheste Abfahrt unter den Spots der Lane hinter der Position (größere Position).
+     * @return Abfahrt (Epoch-Sekunden) oder {@link SpotStore#NO_TIME}.
+     */
+    public long earliestBehind(int lane, int pos) {
+        if (count(lane) == 0) return SpotStore.NO_TIME;
+        Lane l = lanes.get(lane);
+        long min = NONE;
+        // Halboffenes Intervall [pos + 1, leaves) bottom-up
+        for (int lo = Math.max(0, pos + 1) + l.leaves, hi = 2 * l.leaves; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) min = Math.min(min, l.tree[lo++]);
+            if ((hi & 1) == 1) min = Math.min(min, l.tree[--hi]);
+        }
+        return min == NONE ? SpotStore.NO_TIME : min;
+    }
+
+    /**
+     * Anzahl der Spots der Lane mit geschätzter Abfahrt in [from, to) (Epoch-Sekunden).
+     */
+    public int countBetween(int lane, long from, long to) {
+        if (count(lane) == 0 || to <= from) return 0;
+        Lane l = lanes.get(lane);
+        return lowerBound(l, key(to, 0)) - lowerBound(l, key(from, 0));
+    }
+
+    public int count(int lane) {
+        return lane < lanes.size() && lanes.get(lane) != null ? lanes.get(lane).size : 0;
+    }
+
+    public static long departureOf(long key) {
+        return key >> INDEX_BITS;
+    }
+
+    public static int indexOf(long key) {
+        return (int) (key & INDEX_MASK);
+    }
+
+    private static long key(long departure, int spotIndex) {
+        return (departure << INDEX_BITS) | spotIndex;
+    }
+
+    /**
+     * Erste Stelle im Lane-Array mit Schlüssel &gt;= key.
+     */
+    private static int lowerBound(Lane l, long key) {
+        int lo = 0;
+        int hi = l.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (l.keys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static void update(Lane l, int pos, long departure) {
+        int node = l.leaves + pos;
+        l.tree[node] = departure;
+        for (node >>= 1; node > 0; node >>= 1) {
+            l.tree[node] = Math.min(l.tree[2 * node], l.tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Vergrößert den Segmentbaum und baut ihn aus dem Lane-Array neu auf.
+     */
+    private static void rebuild(Lane l, int leaves) {
+        l.leaves = leaves;
+        l.tree = new long[2 * leaves];
+        Arrays.fill(l.tree, NONE);
+        for (int i = 0; i < l.size; i++) {
+            int node = leaves + l.positions[i];
+            l.tree[node] = Math.min(l.tree[node], departureOf(l.keys[i]));
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            l.tree[node] = Math.min(l.tree[2 * node], l.tree[2 * node + 1]);
+        }
+    }
+
+    private Lane lane(int lane) {
+        while (lane >= lanes.size()) {
+            lanes.add(null);
+        }
+        if (lanes.get(lane) == null) {
+            lanes.set(lane, new Lane());
+        }
+        return lanes.get(lane);
+    }
+}
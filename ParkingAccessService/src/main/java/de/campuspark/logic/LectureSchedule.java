@@ -0,0 +1,118 @@
+package de.campuspark.logic;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Kompakter, unveränderlicher Vorlesungsplan eines Kurses.
+ * Alle relevanten Termine des Semesters liegen als sortierte, zusammengeführte
+ * Intervalle (Epoch-Sekunden) in zwei primitiven Arrays. Dadurch sind Abfragen wie
+ * "Ende des letzten Termins heute" oder "ist der Kurs gerade in der Vorlesung"
+ * reine Binärsuchen (O(log n)) ohne erneutes Parsen des Kalenders.
+ */
+public class LectureSchedule {
+
+    public static final LectureSchedule EMPTY = new LectureSchedule(new long[0], new long[0]);
+
+    private final long[] starts;
+    private final long[] ends;
+
+    private LectureSchedule(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Baut einen Plan aus beliebig sortierten, ggf. überlappenden Intervallen.
+     * Überlappende oder direkt aneinandergrenzende Termine werden zusammengeführt.
+     * @param rawStarts Startzeitpunkte (Epoch-Sekunden)
+     * @param rawEnds Endzeitpunkte (Epoch-Sekunden), gleiche Länge wie rawStarts
+     * @param count Anzahl gültiger Einträge in den Arrays
+     */
+    public static LectureSchedule of(long[] rawStarts, long[] rawEnds, int count) {
+        if (count == 0) return EMPTY;
+
+        // Nach Startzeit sortieren (nur einmal pro Kalender-Load)
+        long[][] pairs = new long[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new long[] { rawStarts[i], Math.max(rawStarts[i], rawEnds[i]) };
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        int n = 0;
+        for (long[] p : pairs) {
+            if (n > 0 && p[0] <= ends[n - 1]) {
+                ends[n - 1] = Math.max(ends[n - 1], p[1]);
+            } else {
+                starts[n] = p[0];
+                ends[n] = p[1];
+                n++;
+            }
+        }
+        return new LectureSchedule(Arrays.copyOf(starts, n), Arrays.copyOf(ends, n));
+    }
+
+    /**
+     * Liefert das Ende des letzten Termins, der am angegebenen Tag beginnt.
+     * @return Endzeitpunkt oder null, wenn an diesem Tag keine Vorlesung stattfindet.
+     */
+    public Instant getEndOfDay(LocalDate day, ZoneId zone) {
+        long dayStart = day.atStartOfDay(zone).toEpochSecond();
+        long dayEnd = day.plusDays(1).atStartOfDay(zone).toEpochSecond();
+
+        // Letztes Intervall mit Start < Tagesende
+        int idx = lastStartBefore(dayEnd);
+        if (idx < 0 || starts[idx] < dayStart) return null;
+        return Instant.ofEpochSecond(ends[idx]);
+    }
+
+    /**
+     * Prüft, ob zum Zeitpunkt eine Vorlesung läuft.
+     */
+    public boolean isBusy(Instant time) {
+        long t = time.getEpochSecond();
+        int idx = lastStartBefore(t + 1);
+        return idx >= 0 && t < ends[idx];
+    }
+
+    /**
+     * Liefert den Beginn des nächsten vorlesungsfreien Zeitfensters ab dem Zeitpunkt.
+     * Ist der Kurs gerade frei, wird der Zeitpunkt selbst zurückgegeben.
+     */
+    public Instant getNextFreeWindow(Instant time) {
+        long t = time.getEpochSecond();
+        int idx = lastStartBefore(t + 1);
+        if (idx >= 0 && t < ends[idx]) {
+            // Intervalle sind zusammengeführt -> direkt nach dem Ende ist frei
+            return Instant.ofEpochSecond(ends[idx]);
+        }
+        return time;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Binärsuche: Index des letzten Intervalls mit start < bound, sonst -1.
+     */
+    private int lastStartBefore(long bound) {
+        int lo = 0;
+        int hi = starts.length - 1;
+        int result = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < bound) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+}
@@ -25,7 +25,7 @@ public class ParkingTopology {
     /**
      * Gibt zurück, welche Lane die aktuelle Lane blockiert.
      */
-    private static int getBlockerLaneFor(int victimLane) {
+    public static int getBlockerLaneFor(int victimLane) {
         if (victimLane == 1) return 2;
         if (victimLane == 4) return 3;
         return -1;
@@ -47,6 +47,14 @@ public class ParkingTopology {
         return blockedIds;
     }
 
+    /**
+     * Positionen in der blockierten Lane, die von Position pos blockiert werden
+     * (gleiche Regel wie {@link #getBlockedSpotIds}).
+     */
+    public static int[] getBlockedPositions(int pos) {
+        return new int[] { pos * 2, (pos * 2) + 1 };
+    }
+
     /**
      * Ermittelt alle Spot-IDs, die den übergebenen Platz (lane, pos) blockieren.
      * Das heißt: Wenn auf einem dieser zurückgegebenen Plätze ein Auto steht,
@@ -76,6 +84,23 @@ public class ParkingTopology {
         return blockers;
     }
 
+    /**
+     * Unmittelbare Blockierer von (lane, pos) als {lane, pos}-Paare, ohne transitive Hülle:
+     * in Stack-Lanes der Platz direkt davor, bei seitlicher Blockade der Platz pos / 2 der
+     * Blocker-Lane. Die weiteren Plätze aus {@link #getBlockingSpots} ergeben sich transitiv.
+     */
+    public static List<int[]> getDirectBlockers(int lane, int pos) {
+        List<int[]> blockers = new ArrayList<>();
+        if (pos > 0 && isStackLane(lane)) {
+            blockers.add(new int[] { lane, pos - 1 });
+        }
+        int blockerLane = getBlockerLaneFor(lane);
+        if (blockerLane != -1) {
+            blockers.add(new int[] { blockerLane, pos / 2 });
+        }
+        return blockers;
+    }
+
     // Hilfsmethode zum Bauen der ID 
     public static String createSpotId(int lane, int pos) {
         return "L" + lane + "-P" + pos;
@@ -0,0 +1,251 @@
+package de.campuspark.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unscharfer Index über alle registrierten Kennzeichen zur Korrektur von ALPR-Lesefehlern.
+ * Kennzeichen werden normalisiert (Großbuchstaben, nur A-Z/0-9, d.h. "MOS-QW-123" == "MOSQW123").
+ * Als Metrik dient eine gewichtete Editierdistanz, bei der optisch leicht verwechselbare Zeichen
+ * (0/O, 8/B, 1/I, ...) nur halb so viel kosten wie andere Ersetzungen, Einfügungen oder Löschungen.
+ * Die Distanzen sind ganzzahlig verdoppelt: 1 = Verwechslung, 2 = sonstige Änderung.
+ *
+ * Kandidaten werden über eine Lösch-Nachbarschaft gefunden: Jedes Kennzeichen wird auf seine
+ * kanonische Form abgebildet (jedes Zeichen durch den Vertreter seiner Verwechslungsgruppe ersetzt)
+ * und zusammen mit allen Varianten mit einem gelöschten Zeichen als Hash in einem sortierten
+ * long-Array abgelegt. Eine Suche kostet damit nur ca. Länge + 1 Binärsuchen plus die exakte
+ * Distanz für wenige Kandidaten. Vollständig für Distanzen bis 3 (beliebig viele Verwechslungen
+ * plus höchstens eine sonstige Änderung).
+ *
+ * Unveränderlich: neue Kennzeichen landen über {@link #withAdded} in einer kleinen, linear
+ * durchsuchten Ergänzungsliste, bis der Index beim nächsten Neuaufbau sie aufnimmt.
+ */
+public final class PlateIndex {
+
+    public static final PlateIndex EMPTY = of(List.of());
+
+    /** Ab dieser Größe der Ergänzungsliste wird der Index neu aufgebaut. */
+    private static final int MAX_EXTRA = 256;
+    private static final int MAX_LEN = 16;
+
+    // Eintrag = (Hash der Variante, 44 Bit) << 20 | Kennzeichen-Nummer
+    private static final int ID_BITS = 20;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final int MAX_PLATES = 1 << ID_BITS;
+
+    /** Treffer mit Original-Kennzeichen und Distanz (1 = eine Verwechslung, 2 = eine Änderung). */
+    public record Match(String plate, int distance) {}
+
+    // Gegenseitig verwechselbare Zeichen (typische OCR-Fehler), erstes Zeichen ist der Vertreter
+    private static final String[] CONFUSIONS = { "0ODQ", "8B", "1I", "5S", "2Z", "6G" };
+    private static final char[] CANONICAL = new char[128];
+    static {
+        for (char c = 0; c < 128; c++) CANONICAL[c] = c;
+        for (String group : CONFUSIONS) {
+            for (char c : group.toCharArray()) CANONICAL[c] = group.charAt(0);
+        }
+    }
+
+    private final String[] keys;
+    private final String[] plates;
+    private final long[] entries;
+
+    // Noch nicht im Index enthaltene Kennzeichen: normalisiert -> Original
+    private final Map<String, String> extra;
+
+    private PlateIndex(String[] keys, String[] plates, long[] entries, Map<String, String> extra) {
+        this.keys = keys;
+        this.plates = plates;
+        this.entries = entries;
+        this.extra = extra;
+    }
+
+    /**
+     * Baut den Index über alle Kennzeichen.
+     */
+    public static PlateIndex of(Collection<String> allPlates) {
+        List<String> keys = new ArrayList<>(allPlates.size());
+        List<String> plates = new ArrayList<>(allPlates.size());
+        for (String plate : allPlates) {
+            String key = normalize(plate);
+            if (key.isEmpty() || key.length() > MAX_LEN || keys.size() == MAX_PLATES) continue;
+            keys.add(key);
+            plates.add(plate);
+        }
+
+        long[] entries = new long[keys.size() * (MAX_LEN + 1)];
+        int count = 0;
+        long[] variants = new long[MAX_LEN + 1];
+        for (int id = 0; id < keys.size(); id++) {
+            int n = variants(canonical(keys.get(id)), variants);
+            for (int v = 0; v < n; v++) {
+                entries[count++] = (variants[v] << ID_BITS) | id;
+            }
+        }
+        entries = Arrays.copyOf(entries, count);
+        Arrays.sort(entries);
+
+        return new PlateIndex(keys.toArray(new String[0]), plates.toArray(new String[0]), entries, Map.of());
+    }
+
+    /**
+     * Neuer Index mit zusätzlichen Kennzeichen (bereits enthaltene werden ignoriert).
+     */
+    public PlateIndex withAdded(Collection<String> added) {
+        Map<String, String> newExtra = new HashMap<>(extra);
+        for (String plate : added) {
+            String key = normalize(plate);
+            if (!key.isEmpty() && !contains(key)) newExtra.putIfAbsent(key, plate);
+        }
+        if (newExtra.size() > MAX_EXTRA) {
+            List<String> all = new ArrayList<>(Arrays.asList(plates));
+            all.addAll(newExtra.values());
+            return of(all);
+        }
+        return new PlateIndex(keys, plates, entries, newExtra);
+    }
+
+    /**
+     * Sucht das eindeutig nächste registrierte Kennzeichen innerhalb der Distanz.
+     * @return Treffer oder null, wenn keiner existiert oder mehrere gleich nah sind
+     */
+    public Match find(String plate, int maxDistance) {
+        String query = normalize(plate);
+        if (query.isEmpty() || query.length() > MAX_LEN) return null;
+
+        int bestDistance = Integer.MAX_VALUE;
+        int bestId = -1;
+        String bestPlate = null;
+        boolean tie = false;
+
+        long[] variants = new long[MAX_LEN + 1];
+        int n = variants(canonical(query), variants);
+        for (int v = 0; v < n; v++) {
+            long prefix = variants[v] << ID_BITS;
+            for (int i = lowerBound(prefix); i < entries.length && (entries[i] & ~ID_MASK) == prefix; i++) {
+                int id = (int) (entries[i] & ID_MASK);
+                if (id == bestId) continue; // über mehrere Varianten erneut gefunden
+
+                int d = distance(query, keys[id]);
+                if (d > maxDistance || d > bestDistance) continue;
+                tie = d == bestDistance;
+                bestDistance = d;
+                bestId = id;
+                bestPlate = plates[id];
+            }
+        }
+
+        for (Map.Entry<String, String> entry : extra.entrySet()) {
+            int d = distance(query, entry.getKey());
+            if (d > maxDistance || d > bestDistance) continue;
+            tie = d == bestDistance;
+            bestDistance = d;
+            bestPlate = entry.getValue();
+        }
+
+        if (bestPlate == null || tie) return null;
+        return new Match(bestPlate, bestDistance);
+    }
+
+    public int size() {
+        return keys.length + extra.size();
+    }
+
+    /**
+     * Großbuchstaben, nur Buchstaben und Ziffern.
+     */
+    public static String normalize(String plate) {
+        if (plate == null) return "";
+        StringBuilder sb = new StringBuilder(plate.length());
+        for (int i = 0; i < plate.length(); i++) {
+            char c = Character.toUpperCase(plate.charAt(i));
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gewichtete Editierdistanz (verdoppelt): Verwechslung 1, sonstige Ersetzung/Einfügung/Löschung 2.
+     */
+    static int distance(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = 2 * j;
+        for (int i = 1; i <= n; i++) {
+            curr[0] = 2 * i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int sub = prev[j - 1] + substitutionCost(ca, b.charAt(j - 1));
+                curr[j] = Math.min(sub, Math.min(prev[j], curr[j - 1]) + 2);
+            }
+            int[] t = prev; prev = curr; curr = t;
+        }
+        return prev[m];
+    }
+
+    private static int substitutionCost(char a, char b) {
+        if (a == b) return 0;
+        return CANONICAL[a] == CANONICAL[b] ? 1 : 2;
+    }
+
+    private static String canonical(String key) {
+        char[] chars = key.toCharArray();
+        for (int i = 0; i < chars.length; i++) chars[i] = CANONICAL[chars[i]];
+        return new String(chars);
+    }
+
+    /**
+     * Hashes der Form selbst und aller Varianten mit einem gelöschten Zeichen.
+     * @return Anzahl geschriebener Hashes
+     */
+    private static int variants(String form, long[] out) {
+        int n = 0;
+        out[n++] = hash(form, -1);
+        for (int skip = 0; skip < form.length(); skip++) {
+            // Gleiche Nachbarzeichen ergeben dieselbe Variante
+            if (skip > 0 && form.charAt(skip) == form.charAt(skip - 1)) continue;
+            out[n++] = hash(form, skip);
+        }
+        return n;
+    }
+
+    /**
+     * FNV-1a über die Zeichen ohne Position skip, auf 44 Bit gekürzt. Die Länge fließt mit ein,
+     * damit Varianten unterschiedlicher Länge nicht kollidieren.
+     */
+    private static long hash(String form, int skip) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < form.length(); i++) {
+            if (i == skip) continue;
+            h = (h ^ form.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (skip < 0 ? form.length() : form.length() - 1)) * 0x100000001b3L;
+        return h >>> ID_BITS;
+    }
+
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = entries.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private boolean contains(String key) {
+        if (extra.containsKey(key)) return true;
+        long prefix = hash(canonical(key), -1) << ID_BITS;
+        for (int i = lowerBound(prefix); i < entries.length && (entries[i] & ~ID_MASK) == prefix; i++) {
+            if (keys[(int) (entries[i] & ID_MASK)].equals(key)) return true;
+        }
+        return false;
+    }
+}
@@ -3,72 +3,123 @@ package de.campuspark.logic;
 import java.time.Instant;
 
 import de.campuspark.model.UserProfile;
-import de.campuspark.service.CalendarService;
 
+/**
+ * Sicht auf einen einzelnen Parkplatz im {@link SpotStore}.
+ * Die Instanz hält selbst keinen Zustand außer dem Spot-Index; alle Werte
+ * werden direkt aus dem spaltenorientierten Speicher gelesen bzw. dorthin geschrieben.
+ */
 public class SpotInfo {
-    public enum State { free, reserved, occupied }
+    /** unavailable: Sensor meldet sich nicht mehr, Zuordnung und Zeiten bleiben erhalten. */
+    public enum State { free, reserved, occupied, unavailable }
 
-    private final String spotId;
-    private State state;
-    private UserProfile user;
-    private int pos;
-    private int lane;
-    
-    private Instant arrivalTime;
-    private Instant estimatedDepartureTime;
+    private final SpotStore store;
+    private final int index;
 
-    public SpotInfo(String spotId) {
-        this.spotId = spotId;
-        parseId();
-        setFree(); 
+    SpotInfo(SpotStore store, int index) {
+        this.store = store;
+        this.index = index;
     }
 
     public void reserveFor(String plate) {
-        this.user = UserRegistry.findByPlate(plate);
-        this.state = State.reserved;
-        this.arrivalTime = null; 
-        this.estimatedDepartureTime = null;
-    }
-
-    public void occupyBy(String plate) {
-        this.state = State.occupied;
-        if(plate == "UNKNOWN") this.user = UserRegistry.DummyUser();
-        else this.user = UserRegistry.findByPlate(plate);
-        this.arrivalTime = Instant.now();
-        if(user != null && ( !user.getCourse().isBlank() || user.getCourse() != null || user.getRole() == "student")){
-            this.estimatedDepartureTime = CalendarService.getEstimatedEndTime(user);
+        State from = getState();
+        store.setUser(index, UserRegistry.findByPlate(plate));
+        store.setState(index, State.reserved);
+        store.setArrival(index, null);
+        store.setDeparture(index, null);
+        store.fireTransition(index, from, null, SpotStore.NO_TIME);
+    }
+
+    /**
+     * @param departure voraussichtliche Abfahrt oder null; wird vom Aufrufer vorab ermittelt,
+     *                  da die Kalenderabfrage nicht unter dem Allocator-Lock laufen darf
+     */
+    public void occupyBy(String plate, Instant departure) {
+        State from = getState();
+        store.setState(index, State.occupied);
+        UserProfile user;
+        if(plate == "UNKNOWN") user = UserRegistry.DummyUser();
+        else user = UserRegistry.findByPlate(plate);
+        store.setUser(index, user);
+        store.setArrival(index, Instant.now());
+        if(user != null){
+            store.setDeparture(index, departure);
         }
+        store.fireTransition(index, from, null, SpotStore.NO_TIME);
     }
 
     public void setFree() {
-        this.state = State.free;
-        this.user = null;
-        this.arrivalTime = null;
-        this.estimatedDepartureTime = null;
-    }
-
-    private void parseId() {
-        // Erwartet Format "L{x}-P{y}" z.B. "L2-P0"
-        try {
-            String[] parts = spotId.split("-");
-            this.lane = Integer.parseInt(parts[0].replace("L", ""));
-            this.pos = Integer.parseInt(parts[1].replace("P", ""));
-        } catch (Exception e) {
-            this.lane = 0; 
-            this.pos = 0;
+        State from = getState();
+        String previousPlate = (from != State.free) ? getAssignedPlate() : null;
+        long previousArrival = store.getArrival(index);
+        store.setState(index, State.free);
+        store.setUser(index, null);
+        store.setArrival(index, null);
+        store.setDeparture(index, null);
+        if (from != State.free) {
+            store.fireTransition(index, from, previousPlate, previousArrival);
         }
     }
 
+    /**
+     * Sensor ist verstummt: Der Spot wird nicht mehr vergeben, bis er sich wieder meldet.
+     * Kennzeichen und Zeiten bleiben für die Wiederherstellung stehen.
+     */
+    public void markUnavailable() {
+        State from = getState();
+        if (from == State.unavailable) return;
+        store.setState(index, State.unavailable);
+        store.fireTransition(index, from, null, SpotStore.NO_TIME);
+    }
+
+    /**
+     * Sensor meldet sich wieder: Übernimmt dessen Zustand. Ein belegter Spot behält die
+     * bisherige Zuordnung (war er nur reserviert, gilt die Ankunft als jetzt), ein freier wird
+     * wie bei einer Abfahrt freigegeben.
+     */
+    public void restore(boolean sensorOccupied) {
+        if (getState() != State.unavailable) return;
+        if (!sensorOccupied) {
+            setFree();
+            return;
+        }
+        if (store.getUser(index) == null) {
+            occupyBy("UNKNOWN", null);
+            return;
+        }
+        store.setState(index, State.occupied);
+        if (store.getArrival(index) == SpotStore.NO_TIME) store.setArrival(index, Instant.now());
+        store.fireTransition(index, State.unavailable, null, SpotStore.NO_TIME);
+    }
+
+    /**
+     * Übernimmt einen nach einem Neustart wiederhergestellten Zustand samt Zuordnung und
+     * Zeiten (Epoch-Sekunden oder {@link SpotStore#NO_TIME}).
+     */
+    public void recover(State state, UserProfile user, long arrival, long departure) {
+        State from = getState();
+        store.setState(index, state);
+        store.setUser(index, user);
+        store.setArrival(index, SpotStore.toInstant(arrival));
+        store.setDeparture(index, SpotStore.toInstant(departure));
+        store.fireTransition(index, from, null, SpotStore.NO_TIME);
+    }
+
     // --- Getter für den Export ---
-    public String getSpotId() { 
-        return spotId; 
+    public int getIndex() {
+        return index;
     }
 
-    public State getState() { 
-        return state; 
+    public String getSpotId() {
+        return store.getId(index);
+    }
+
+    public State getState() {
+        return store.getState(index);
     }
 
     public String getAssignedPlate() {
+        UserProfile user = store.getUser(index);
         if (user == null || user.getPlate() == null) {
             return "UNKNOWN";
         }
@@ -76,27 +127,27 @@ public class SpotInfo {
     }
 
     public UserProfile getUser(){
-        return user;
+        return store.getUser(index);
     }
 
-    public Instant getArrivalTime() { 
-        return arrivalTime; 
+    public Instant getArrivalTime() {
+        return SpotStore.toInstant(store.getArrival(index));
     }
 
-    public Instant getEstimatedDepartureTime() { 
-        return estimatedDepartureTime; 
+    public Instant getEstimatedDepartureTime() {
+        return SpotStore.toInstant(store.getDeparture(index));
     }
 
     public int getPos(){
-        return pos;
+        return store.getPos(index);
     }
 
     public int getLane(){
-        return lane;
+        return store.getLane(index);
     }
 
     public String toString(){
-        return "Spot " + spotId + " Status: " + state + " User: " + user.getPlate();
+        return "Spot " + getSpotId() + " Status: " + getState() + " User: " + getAssignedPlate();
     }
-    
-}
\ No newline at end of file
+
+}
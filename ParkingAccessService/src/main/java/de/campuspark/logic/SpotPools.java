@@ -0,0 +1,142 @@
+package de.campuspark.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aufteilung der Spots in Pools nach Nutzerrolle (z.B. Behindertenparkplätze, Mitarbeiter)
+ * mit eigenem Frei-Index und eigenen Zählern pro Pool.
+ * Jeder Pool hält die freien Spots als {@link BitSet} über den Spot-Index; die Vergabe
+ * durchläuft so nur die freien Spots der in Frage kommenden Pools statt aller Spots.
+ * Reservierte Pools garantieren eine Quote freier Plätze: andere Rollen dürfen nur
+ * überlaufen, solange danach noch mindestens die Quote frei bleibt (Prüfung in O(1)).
+ *
+ * Wird vom {@link SpotStore} bei jedem Wechsel von/zu FREE mitgeführt. Nicht thread-safe.
+ */
+public class SpotPools {
+
+    public enum Pool {
+        GENERAL, STAFF, DISABLED;
+
+        /**
+         * Eigener Pool einer Rolle; Rollen ohne eigenen Pool (student) parken im allgemeinen Bereich.
+         * Akzeptiert die Rollen aus der Registrierung ("student", "teacher", "staff") sowie die
+         * deutschen Bezeichnungen, Groß-/Kleinschreibung egal.
+         */
+        public static Pool forRole(String role) {
+            if (role == null) return GENERAL;
+            return switch (role.trim().toLowerCase()) {
+                case "disabled", "behindert" -> DISABLED;
+                case "staff", "teacher", "professor", "mitarbeiter" -> STAFF;
+                default -> GENERAL;
+            };
+        }
+    }
+
+    /** Quote: der ganze Pool ist reserviert. */
+    public static final int WHOLE_POOL = -1;
+
+    private static final Pool[] POOLS = Pool.values();
+
+    /** Spot-ID ("L0-P3") oder ganze Lane ("L5") -> Pool. */
+    private final Map<String, Pool> assignments;
+    private final int[] quotas = new int[POOLS.length];
+
+    private byte[] poolOf = new byte[64];
+    private final BitSet[] free = new BitSet[POOLS.length];
+    private final int[] sizes = new int[POOLS.length];
+    private final int[] freeCounts = new int[POOLS.length];
+
+    /**
+     * Alle Spots im allgemeinen Pool.
+     */
+    public SpotPools() {
+        this(Map.of(), Map.of());
+    }
+
+    /**
+     * @param assignments Spot-ID oder Lane ("L5") -> Pool; nicht aufgeführte Spots sind GENERAL
+     * @param quotas garantierte freie Plätze pro Pool, {@link #WHOLE_POOL} = alle (Standard)
+     */
+    public SpotPools(Map<String, Pool> assignments, Map<Pool, Integer> quotas) {
+        this.assignments = new HashMap<>(assignments);
+        Arrays.fill(this.quotas, WHOLE_POOL);
+        this.quotas[Pool.GENERAL.ordinal()] = 0;
+        quotas.forEach((pool, quota) -> {
+            if (pool != Pool.GENERAL) this.quotas[pool.ordinal()] = quota;
+        });
+        for (int i = 0; i < free.length; i++) free[i] = new BitSet();
+    }
+
+    /**
+     * Zerlegt eine Pool-Definition wie "L0-P0, L0-P1, L5" in einzelne Einträge.
+     */
+    public static List<String> parseSpec(String spec) {
+        List<String> entries = new ArrayList<>();
+        if (spec == null) return entries;
+        for (String entry : spec.split(",")) {
+            if (!entry.isBlank()) entries.add(entry.trim());
+        }
+        return entries;
+    }
+
+    /**
+     * Ordnet einen neuen (freien) Spot seinem Pool zu.
+     */
+    void add(int index, int lane, String spotId) {
+        if (index >= poolOf.length) poolOf = Arrays.copyOf(poolOf, Math.max(index + 1, poolOf.length * 2));
+        Pool pool = assignments.get(spotId);
+        if (pool == null) pool = assignments.getOrDefault("L" + lane, Pool.GENERAL);
+        poolOf[index] = (byte) pool.ordinal();
+        sizes[pool.ordinal()]++;
+        setFree(index, true);
+    }
+
+    /**
+     * Pflegt Frei-Index und Zähler bei einem Wechsel von/zu FREE.
+     */
+    void setFree(int index, boolean isFree) {
+        int pool = poolOf[index];
+        if (free[pool].get(index) == isFree) return;
+        free[pool].set(index, isFree);
+        freeCounts[pool] += isFree ? 1 : -1;
+    }
+
+    public Pool poolOf(int index) {
+        return POOLS[poolOf[index]];
+    }
+
+    /**
+     * Nächster freier Spot des Pools ab Index from, -1 wenn keiner mehr.
+     */
+    public int nextFree(Pool pool, int from) {
+        return free[pool.ordinal()].nextSetBit(from);
+    }
+
+    public int size(Pool pool) {
+        return sizes[pool.ordinal()];
+    }
+
+    public int freeCount(Pool pool) {
+        return freeCounts[pool.ordinal()];
+    }
+
+    /**
+     * Anzahl freier Plätze, die der Pool für seine eigenen Rollen zurückhält.
+     */
+    public int guaranteed(Pool pool) {
+        int quota = quotas[pool.ordinal()];
+        return quota == WHOLE_POOL ? sizes[pool.ordinal()] : Math.min(quota, sizes[pool.ordinal()]);
+    }
+
+    /**
+     * Darf ein Nutzer ohne Anspruch auf den Pool hier parken, ohne die Quote anzutasten?
+     */
+    public boolean allowsOverflow(Pool pool) {
+        return freeCounts[pool.ordinal()] > guaranteed(pool);
+    }
+}
@@ -0,0 +1,349 @@
+package de.campuspark.logic;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.campuspark.model.UserProfile;
+import de.campuspark.service.MqttLogger;
+
+/**
+ * Spaltenorientierter Speicher (Struct-of-Arrays) für den Zustand aller Parkplätze.
+ * Statt pro Spot ein Objekt mit Enum, Profil-Referenz und zwei Instants zu halten,
+ * liegen alle Attribute in primitiven Arrays, indiziert über einen dichten Spot-Index.
+ * Zeiten werden als Epoch-Sekunden, Nutzer als Handle in die {@link UserTable} gespeichert.
+ * Spot-IDs im Standardformat "L{x}-P{y}" werden nicht gespeichert, sondern aus Lane und
+ * Position rekonstruiert; nur abweichende IDs landen in einer kleinen Zusatz-Map.
+ * {@link SpotInfo} ist nur noch eine leichte Sicht (Index) auf diesen Speicher.
+ *
+ * Nicht thread-safe: Schreibzugriffe erfolgen ausschließlich über den SpotAllocator.
+ */
+public class SpotStore {
+
+    /** Markiert einen nicht gesetzten Zeitpunkt. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final SpotInfo.State[] STATES = SpotInfo.State.values();
+
+    private int size;
+    private byte[] states;
+    private int[] lanes;
+    private int[] positions;
+    private long[] arrivals;
+    private long[] departures;
+    private int[] users;
+    private long[] lastSeen;
+    private long[] appliedOrders;
+
+    /** [lane][pos] -> Spot-Index + 1 (0 = unbekannt). */
+    private int[][] indexByLanePos = new int[0][];
+
+    /** Spots, deren ID nicht dem Format "L{x}-P{y}" entspricht. */
+    private final Map<String, Integer> irregularIndexById = new HashMap<>();
+    private final Map<Integer, String> irregularIdByIndex = new HashMap<>();
+
+    private final UserTable userTable = new UserTable();
+    private final DepartureIndex departureIndex = new DepartureIndex();
+    private final SpotPools pools;
+    private final List<SpotTransitionListener> listeners = new CopyOnWriteArrayList<>();
+    private int freeCount;
+
+    public SpotStore() {
+        this(64);
+    }
+
+    public SpotStore(int initialCapacity) {
+        this(initialCapacity, new SpotPools());
+    }
+
+    /**
+     * @param pools Zuordnung der Spots zu Rollen-Pools (wird beim Anlegen der Spots befüllt)
+     */
+    public SpotStore(int initialCapacity, SpotPools pools) {
+        this.pools = pools;
+        states = new byte[initialCapacity];
+        lanes = new int[initialCapacity];
+        positions = new int[initialCapacity];
+        arrivals = new long[initialCapacity];
+        departures = new long[initialCapacity];
+        users = new int[initialCapacity];
+        lastSeen = new long[initialCapacity];
+        appliedOrders = new long[initialCapacity];
+    }
+
+    /**
+     * Legt einen neuen Spot (Status FREE) an.
+     * @return Index des neuen Spots
+     */
+    public int add(String spotId) {
+        if (size == states.length) grow();
+
+        int index = size++;
+        states[index] = (byte) SpotInfo.State.free.ordinal();
+        arrivals[index] = NO_TIME;
+        departures[index] = NO_TIME;
+        users[index] = UserTable.NONE;
+        lastSeen[index] = NO_TIME;
+        appliedOrders[index] = Long.MIN_VALUE;
+        freeCount++;
+
+        long lanePos = parseId(spotId);
+        if (lanePos >= 0) {
+            int lane = (int) (lanePos >>> 32);
+            int pos = (int) lanePos;
+            lanes[index] = lane;
+            positions[index] = pos;
+            registerLanePos(lane, pos, index);
+        } else {
+            lanes[index] = 0;
+            positions[index] = 0;
+            irregularIndexById.put(spotId, index);
+            irregularIdByIndex.put(index, spotId);
+        }
+        pools.add(index, lanes[index], spotId);
+
+        fireTransition(index, null, null, NO_TIME);
+        return index;
+    }
+
+    public void addListener(SpotTransitionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Meldet einen abgeschlossenen Zustandswechsel an alle Listener.
+     * @param previousPlate Kennzeichen vor dem Wechsel (für Abfahrten)
+     * @param previousArrival Ankunft vor dem Wechsel (für Abfahrten)
+     */
+    public void fireTransition(int index, SpotInfo.State from, String previousPlate, long previousArrival) {
+        if (listeners.isEmpty()) return;
+
+        SpotInfo.State to = getState(index);
+        UserProfile user = getUser(index);
+        boolean departed = to == SpotInfo.State.free;
+        SpotTransition transition = new SpotTransition(
+                index,
+                lanes[index],
+                positions[index],
+                from,
+                to,
+                System.currentTimeMillis(),
+                departed ? previousPlate : (user != null ? user.getPlate() : null),
+                departed ? previousArrival : arrivals[index],
+                departures[index]);
+
+        for (SpotTransitionListener listener : listeners) {
+            try {
+                listener.onTransition(transition);
+            } catch (RuntimeException e) {
+                MqttLogger.error("SpotStore", "Transition listener failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * @return Index des Spots oder -1, falls unbekannt.
+     */
+    public int indexOf(String spotId) {
+        long lanePos = parseId(spotId);
+        if (lanePos >= 0) {
+            return indexOf((int) (lanePos >>> 32), (int) lanePos);
+        }
+        Integer index = irregularIndexById.get(spotId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return Index des Spots an (lane, pos) oder -1, falls unbekannt.
+     */
+    public int indexOf(int lane, int pos) {
+        if (lane < 0 || lane >= indexByLanePos.length || pos < 0) return -1;
+        int[] row = indexByLanePos[lane];
+        if (row == null || pos >= row.length) return -1;
+        return row[pos] - 1;
+    }
+
+    /**
+     * Liefert eine Sicht auf den Spot mit dem Index.
+     */
+    public SpotInfo get(int index) {
+        return new SpotInfo(this, index);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Index der belegten Spots mit bekannter Abfahrtszeit, sortiert pro Lane.
+     */
+    public DepartureIndex getDepartureIndex() {
+        return departureIndex;
+    }
+
+    /**
+     * Rollen-Pools mit Frei-Index und Zählern pro Pool.
+     */
+    public SpotPools getPools() {
+        return pools;
+    }
+
+    // --- Spalten lesen ---
+
+    public String getId(int index) {
+        String irregular = irregularIdByIndex.isEmpty() ? null : irregularIdByIndex.get(index);
+        return irregular != null ? irregular : ParkingTopology.createSpotId(lanes[index], positions[index]);
+    }
+
+    public SpotInfo.State getState(int index) {
+        return STATES[states[index]];
+    }
+
+    public boolean isState(int index, SpotInfo.State state) {
+        return states[index] == state.ordinal();
+    }
+
+    public int getLane(int index) {
+        return lanes[index];
+    }
+
+    public int getPos(int index) {
+        return positions[index];
+    }
+
+    public long getArrival(int index) {
+        return arrivals[index];
+    }
+
+    public long getDeparture(int index) {
+        return departures[index];
+    }
+
+    public UserProfile getUser(int index) {
+        return userTable.get(users[index]);
+    }
+
+    /**
+     * Letzte Meldung des Sensors (Epoch-Millis) oder {@link #NO_TIME}.
+     */
+    public long getLastSeen(int index) {
+        return lastSeen[index];
+    }
+
+    // --- Spalten schreiben ---
+
+    public void setState(int index, SpotInfo.State state) {
+        boolean wasFree = states[index] == SpotInfo.State.free.ordinal();
+        boolean isFree = state == SpotInfo.State.free;
+        if (wasFree != isFree) {
+            freeCount += isFree ? 1 : -1;
+            pools.setFree(index, isFree);
+        }
+
+        unindexDeparture(index);
+        states[index] = (byte) state.ordinal();
+        indexDeparture(index);
+    }
+
+    public void setUser(int index, UserProfile user) {
+        users[index] = userTable.intern(user);
+    }
+
+    /**
+     * Reihenfolge-Schlüssel der zuletzt übernommenen Sensor-Meldung (Wasserstand)
+     * oder Long.MIN_VALUE, solange keine geordnete Meldung übernommen wurde.
+     */
+    public long getAppliedOrder(int index) {
+        return appliedOrders[index];
+    }
+
+    public void setAppliedOrder(int index, long order) {
+        appliedOrders[index] = order;
+    }
+
+    public void setLastSeen(int index, long epochMillis) {
+        lastSeen[index] = epochMillis;
+    }
+
+    public void setArrival(int index, Instant arrival) {
+        arrivals[index] = toEpoch(arrival);
+    }
+
+    public void setDeparture(int index, Instant departure) {
+        unindexDeparture(index);
+        departures[index] = toEpoch(departure);
+        indexDeparture(index);
+    }
+
+    public static Instant toInstant(long epochSecond) {
+        return epochSecond == NO_TIME ? null : Instant.ofEpochSecond(epochSecond);
+    }
+
+    private static long toEpoch(Instant instant) {
+        return instant == null ? NO_TIME : instant.getEpochSecond();
+    }
+
+    // Im Abfahrts-Index stehen genau die belegten Spots mit bekannter Abfahrtszeit
+    private void indexDeparture(int index) {
+        if (states[index] == SpotInfo.State.occupied.ordinal() && departures[index] != NO_TIME) {
+            departureIndex.add(lanes[index], positions[index], index, departures[index]);
+        }
+    }
+
+    private void unindexDeparture(int index) {
+        if (states[index] == SpotInfo.State.occupied.ordinal() && departures[index] != NO_TIME) {
+            departureIndex.remove(lanes[index], positions[index], index, departures[index]);
+        }
+    }
+
+    /**
+     * Zerlegt eine ID im Format "L{x}-P{y}" (z.B. "L2-P0") in (lane << 32 | pos).
+     * @return gepackte Lane/Position oder -1, wenn die ID nicht exakt dem Format entspricht.
+     */
+    public static long parseId(String spotId) {
+        try {
+            String[] parts = spotId.split("-");
+            if (parts.length != 2 || !parts[0].startsWith("L") || !parts[1].startsWith("P")) return -1;
+            int lane = Integer.parseInt(parts[0].substring(1));
+            int pos = Integer.parseInt(parts[1].substring(1));
+            if (lane < 0 || pos < 0 || !ParkingTopology.createSpotId(lane, pos).equals(spotId)) return -1;
+            return ((long) lane << 32) | pos;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void registerLanePos(int lane, int pos, int index) {
+        if (lane < 0 || pos < 0) return;
+        if (lane >= indexByLanePos.length) {
+            indexByLanePos = Arrays.copyOf(indexByLanePos, lane + 1);
+        }
+        int[] row = indexByLanePos[lane];
+        if (row == null) {
+            row = new int[Math.max(16, pos + 1)];
+        } else if (pos >= row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, pos + 1));
+        }
+        row[pos] = index + 1;
+        indexByLanePos[lane] = row;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, states.length * 2);
+        states = Arrays.copyOf(states, capacity);
+        lanes = Arrays.copyOf(lanes, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        arrivals = Arrays.copyOf(arrivals, capacity);
+        departures = Arrays.copyOf(departures, capacity);
+        users = Arrays.copyOf(users, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        appliedOrders = Arrays.copyOf(appliedOrders, capacity);
+    }
+}
@@ -0,0 +1,27 @@
+package de.campuspark.logic;
+
+/**
+ * Zustandswechsel eines Parkplatzes, wie er vom {@link SpotStore} an Listener gemeldet wird.
+ * Bei Abfahrten (to == free) enthalten plate und arrival noch die Werte des abgefahrenen Autos.
+ *
+ * @param spotIndex Index im SpotStore
+ * @param lane Lane des Spots
+ * @param pos Position in der Lane
+ * @param from vorheriger Zustand, null bei neu entdeckten Spots
+ * @param to neuer Zustand
+ * @param timeMillis Zeitpunkt des Wechsels
+ * @param plate betroffenes Kennzeichen oder null
+ * @param arrival Ankunft (Epoch-Sekunden) oder {@link SpotStore#NO_TIME}
+ * @param departure geschätzte Abfahrt (Epoch-Sekunden) oder {@link SpotStore#NO_TIME}
+ */
+public record SpotTransition(
+    int spotIndex,
+    int lane,
+    int pos,
+    SpotInfo.State from,
+    SpotInfo.State to,
+    long timeMillis,
+    String plate,
+    long arrival,
+    long departure
+) {}
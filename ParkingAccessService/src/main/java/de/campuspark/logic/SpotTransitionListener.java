@@ -0,0 +1,10 @@
+package de.campuspark.logic;
+
+/**
+ * Wird bei jedem Zustandswechsel eines Parkplatzes aufgerufen.
+ * Der Aufruf erfolgt synchron im Allocator, Implementierungen müssen daher O(1) bleiben.
+ */
+@FunctionalInterface
+public interface SpotTransitionListener {
+    void onTransition(SpotTransition transition);
+}
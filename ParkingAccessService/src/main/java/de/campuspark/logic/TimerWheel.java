@@ -0,0 +1,99 @@
+package de.campuspark.logic;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hashed Timer Wheel für viele gleichartige Fristen (z.B. Sensor-Timeouts), ohne einen Timer
+ * pro Eintrag. Die Zeit ist in Ticks fester Länge unterteilt, jeder Slot hält die IDs, deren
+ * Frist in diesem Tick abläuft. Einplanen ist O(1); pro ID ist höchstens eine Frist aktiv,
+ * weitere {@link #schedule}-Aufrufe für eine bereits eingeplante ID werden ignoriert.
+ * Das ist bewusst so: Der Aufrufer prüft beim Ablauf selbst, ob die Frist inzwischen verlängert
+ * wurde (z.B. anhand eines Last-Seen-Zeitstempels) und plant dann neu ein. Häufige
+ * Verlängerungen kosten so nichts, es muss nie ein Eintrag aus einem Slot entfernt werden.
+ *
+ * Fristen weiter als eine Umdrehung in der Zukunft werden auf die letzte Position gekürzt
+ * (und feuern damit zu früh); die Größe ist daher passend zur längsten Frist zu wählen.
+ * Nicht thread-safe.
+ */
+public class TimerWheel {
+
+    private final long tickMillis;
+    private final int[][] slots;
+    private final int[] slotSizes;
+    /** Pro ID: eingeplant ja/nein (64 IDs pro long). */
+    private long[] scheduled = new long[1];
+    /** Nächster noch nicht abgearbeiteter Tick. */
+    private long currentTick;
+
+    /**
+     * @param tickMillis Auflösung
+     * @param maxDelayMillis längste einzuplanende Frist
+     * @param nowMillis Startzeitpunkt
+     */
+    public TimerWheel(long tickMillis, long maxDelayMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        int slotCount = (int) (maxDelayMillis / tickMillis) + 2;
+        this.slots = new int[slotCount][];
+        this.slotSizes = new int[slotCount];
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public boolean isScheduled(int id) {
+        int word = id >>> 6;
+        return word < scheduled.length && (scheduled[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Plant die ID für den Zeitpunkt ein, sofern sie nicht schon eingeplant ist.
+     * Zeitpunkte in der Vergangenheit feuern beim nächsten {@link #advance}.
+     */
+    public void schedule(int id, long deadlineMillis) {
+        if (isScheduled(id)) return;
+        int word = id >>> 6;
+        if (word >= scheduled.length) scheduled = Arrays.copyOf(scheduled, Math.max(word + 1, scheduled.length * 2));
+        scheduled[word] |= 1L << id;
+
+        long tick = Math.max(currentTick, Math.min(deadlineMillis / tickMillis, currentTick + slots.length - 1));
+        int slot = (int) (tick % slots.length);
+        int[] ids = slots[slot];
+        if (ids == null) {
+            ids = slots[slot] = new int[16];
+        } else if (slotSizes[slot] == ids.length) {
+            ids = slots[slot] = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[slotSizes[slot]++] = id;
+    }
+
+    /**
+     * Arbeitet alle Ticks bis einschließlich now ab und meldet die abgelaufenen IDs.
+     * Die IDs gelten vor dem Aufruf des Consumers als nicht mehr eingeplant, er kann sie
+     * also direkt neu einplanen.
+     * @return Anzahl gemeldeter IDs
+     */
+    public int advance(long nowMillis, IntConsumer expired) {
+        long target = nowMillis / tickMillis;
+        // Nach langer Pause höchstens eine Umdrehung abarbeiten, jeder Slot kommt dabei einmal dran
+        if (target - currentTick >= slots.length) currentTick = target - slots.length + 1;
+
+        int fired = 0;
+        int[] batch = new int[0];
+        while (currentTick <= target) {
+            int slot = (int) (currentTick++ % slots.length);
+            int size = slotSizes[slot];
+            if (size == 0) continue;
+
+            // Slot vor dem Melden leeren; Neu-Einplanungen landen frühestens im nächsten Tick
+            if (batch.length < size) batch = new int[size];
+            System.arraycopy(slots[slot], 0, batch, 0, size);
+            slotSizes[slot] = 0;
+            for (int i = 0; i < size; i++) {
+                int id = batch[i];
+                scheduled[id >>> 6] &= ~(1L << id);
+                fired++;
+                expired.accept(id);
+            }
+        }
+        return fired;
+    }
+}
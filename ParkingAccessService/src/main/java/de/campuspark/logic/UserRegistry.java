@@ -1,18 +1,40 @@
 package de.campuspark.logic;
 
+import java.sql.SQLException;
+import java.util.List;
+
 import de.campuspark.model.RegistrationEvent;
 import de.campuspark.model.UserProfile;
+import de.campuspark.service.MqttLogger;
+import de.campuspark.service.UserDirectory;
+import de.campuspark.util.Config;
 import de.campuspark.util.DBConnection;
 
 public class UserRegistry {
 
     private static DBConnection dbconnection = new DBConnection();
 
+    /**
+     * Schreibt eine einzelne Registrierung sofort (inkl. NOTIFY an die User-Schnappschüsse).
+     * Im Dienst laufen Registrierungen gebündelt über den RegistrationWriter.
+     */
     public static void register(RegistrationEvent reg) {
-        dbconnection.insertUser(reg.getPlate(), reg.getPhoneNumber(), reg.getRole(), reg.getCourse());
+        try {
+            dbconnection.upsertUsers(List.of(reg));
+        } catch (SQLException e) {
+            MqttLogger.error("UserRegistry", "Could not register " + reg.getPlate() + ": " + e.getMessage());
+        }
     }
 
+    /**
+     * Sucht das Profil zum Kennzeichen. Mit USER_SNAPSHOT=true aus dem In-Memory-Schnappschuss,
+     * solange dieser noch nicht geladen ist (oder sonst) direkt aus der Datenbank.
+     * Ein per {@link UserDirectory#install} gesetzter Bestand wird immer verwendet.
+     */
     public static UserProfile findByPlate(String plate) {
+        if ((Config.USER_SNAPSHOT || UserDirectory.isOffline()) && UserDirectory.isLoaded()) {
+            return UserDirectory.get(plate);
+        }
         return dbconnection.findUserByPlate(plate);
     }
 
@@ -0,0 +1,103 @@
+package de.campuspark.logic;
+
+import java.util.Collection;
+import java.util.List;
+
+import de.campuspark.model.UserProfile;
+
+/**
+ * Unveränderlicher Schnappschuss aller registrierten Nutzer, indiziert nach Kennzeichen.
+ * Offene Adressierung mit linearem Sondieren in zwei parallelen Arrays (Schlüssel/Profil),
+ * Füllgrad höchstens 50 %. Lookups sind reine Speicherzugriffe ohne Locks; Änderungen
+ * erzeugen einen neuen Schnappschuss, der anschließend atomar ausgetauscht wird.
+ */
+public final class UserSnapshot {
+
+    public static final UserSnapshot EMPTY = of(List.of());
+
+    private final String[] plates;
+    private final UserProfile[] users;
+    private final int mask;
+    private final int size;
+
+    private UserSnapshot(String[] plates, UserProfile[] users, int size) {
+        this.plates = plates;
+        this.users = users;
+        this.mask = plates.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * Baut einen Schnappschuss aus allen Profilen (bei doppelten Kennzeichen gewinnt das letzte).
+     */
+    public static UserSnapshot of(Collection<UserProfile> profiles) {
+        int capacity = capacityFor(profiles.size());
+        String[] plates = new String[capacity];
+        UserProfile[] users = new UserProfile[capacity];
+        int size = 0;
+        for (UserProfile user : profiles) {
+            if (user.getPlate() != null && put(plates, users, user)) size++;
+        }
+        return new UserSnapshot(plates, users, size);
+    }
+
+    /**
+     * Neuer Schnappschuss mit zusätzlichen bzw. aktualisierten Profilen.
+     */
+    public UserSnapshot withUpserted(Collection<UserProfile> profiles) {
+        int capacity = capacityFor(size + profiles.size());
+        String[] newPlates = new String[capacity];
+        UserProfile[] newUsers = new UserProfile[capacity];
+        int newSize = 0;
+        for (UserProfile user : users) {
+            if (user != null && put(newPlates, newUsers, user)) newSize++;
+        }
+        for (UserProfile user : profiles) {
+            if (user.getPlate() != null && put(newPlates, newUsers, user)) newSize++;
+        }
+        return new UserSnapshot(newPlates, newUsers, newSize);
+    }
+
+    /**
+     * @return Profil zum Kennzeichen oder null, falls nicht registriert.
+     */
+    public UserProfile get(String plate) {
+        if (plate == null) return null;
+        for (int i = slot(plate, mask); ; i = (i + 1) & mask) {
+            String key = plates[i];
+            if (key == null) return null;
+            if (key.equals(plate)) return users[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true, wenn ein neuer Eintrag angelegt wurde (false bei Aktualisierung).
+     */
+    private static boolean put(String[] plates, UserProfile[] users, UserProfile user) {
+        int mask = plates.length - 1;
+        for (int i = slot(user.getPlate(), mask); ; i = (i + 1) & mask) {
+            if (plates[i] == null) {
+                plates[i] = user.getPlate();
+                users[i] = user;
+                return true;
+            }
+            if (plates[i].equals(user.getPlate())) {
+                users[i] = user;
+                return false;
+            }
+        }
+    }
+
+    private static int slot(String plate, int mask) {
+        int h = plate.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int capacityFor(int entries) {
+        return Integer.highestOneBit(Math.max(8, entries * 2 - 1)) << 1;
+    }
+}
@@ -0,0 +1,49 @@
+package de.campuspark.logic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.campuspark.model.UserProfile;
+
+/**
+ * Internierungstabelle für Nutzerprofile.
+ * Der {@link SpotStore} speichert pro Spot nur einen int-Handle statt einer Objektreferenz.
+ * Handle 0 steht für "kein Nutzer".
+ */
+public class UserTable {
+
+    public static final int NONE = 0;
+
+    private final Map<String, Integer> handleByPlate = new HashMap<>();
+    private UserProfile[] profiles = new UserProfile[64];
+    private int next = 1;
+
+    /**
+     * Liefert den Handle für ein Profil und legt ihn bei Bedarf an.
+     * Ein erneut interniertes Profil mit gleichem Kennzeichen ersetzt das alte (z.B. nach Re-Registrierung).
+     */
+    public int intern(UserProfile user) {
+        if (user == null) return NONE;
+
+        String key = user.getPlate() != null ? user.getPlate() : "";
+        Integer handle = handleByPlate.get(key);
+        if (handle == null) {
+            handle = next++;
+            if (handle >= profiles.length) {
+                profiles = Arrays.copyOf(profiles, profiles.length * 2);
+            }
+            handleByPlate.put(key, handle);
+        }
+        profiles[handle] = user;
+        return handle;
+    }
+
+    public UserProfile get(int handle) {
+        return handle == NONE ? null : profiles[handle];
+    }
+
+    public int size() {
+        return next - 1;
+    }
+}
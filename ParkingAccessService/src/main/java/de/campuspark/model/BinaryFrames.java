@@ -0,0 +1,107 @@
+package de.campuspark.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Kompakte Binärformate für ESP32-Displays, Schranken und Dashboards, parallel zu den
+ * JSON-Nachrichten auf eigenen Topics ("parking/bin/..."). Alle Mehrbyte-Werte sind
+ * Big-Endian, Byte 0 ist immer der Frame-Typ. Lane und Position passen in je ein Byte;
+ * Spots außerhalb (oder ohne "L&lt;lane&gt;-P&lt;pos&gt;"-ID) sind in den Binär-Feeds nicht enthalten.
+ *
+ * <pre>
+ * SPOT (6 Bytes)        0x01 | lane u8 | pos u8 | state u8 | free u16
+ * GARAGE                0x02 | bits u8 (=2) | seq u32 | free u16 | lanes u8 | spots u8 * lanes | states
+ * ALLOCATION            0x03 | result u8 | lane u8 | pos u8 | gateLen u8 | gate | plateLen u8 | plate
+ * SUMMARY (3 Bytes)     0x04 | free u16
+ * </pre>
+ * state: 0 = free, 1 = reserved, 2 = occupied, 3 = unavailable.
+ * GARAGE: "spots" ist pro Lane die höchste Position + 1; danach folgen die Zustände aller
+ * Lanes nacheinander in Positionsreihenfolge mit 2 Bit pro Spot, vier Spots pro Byte, der erste
+ * in den niederwertigsten Bits. Lücken sind als unavailable kodiert. seq steigt mit jedem Frame.
+ * ALLOCATION: result 0 = ALLOW, 1 = DENY (voll), 2 = DENY (unbekanntes Kennzeichen);
+ * lane/pos = 0xFF ohne Spot.
+ */
+public final class BinaryFrames {
+
+    public static final byte TYPE_SPOT = 0x01;
+    public static final byte TYPE_GARAGE = 0x02;
+    public static final byte TYPE_ALLOCATION = 0x03;
+    public static final byte TYPE_SUMMARY = 0x04;
+
+    public static final int BITS_PER_SPOT = 2;
+    public static final int MAX_LANE_POS = 0xFE;
+    public static final int NO_SPOT = 0xFF;
+    public static final int STATE_UNAVAILABLE = 3;
+
+    public static final int RESULT_ALLOW = 0;
+    public static final int RESULT_FULL = 1;
+    public static final int RESULT_UNKNOWN = 2;
+
+    private BinaryFrames() {}
+
+    public static byte[] spot(int lane, int pos, int state, int free) {
+        return new byte[] {
+                TYPE_SPOT, (byte) lane, (byte) pos, (byte) state, (byte) (free >>> 8), (byte) free
+        };
+    }
+
+    public static byte[] summary(int free) {
+        return new byte[] { TYPE_SUMMARY, (byte) (free >>> 8), (byte) free };
+    }
+
+    /**
+     * @param states Zustände als [lane][pos], Lücken mit {@link #STATE_UNAVAILABLE} gefüllt
+     */
+    public static byte[] garage(long sequence, int free, byte[][] states) {
+        int lanes = states.length;
+        int spots = 0;
+        for (byte[] lane : states) spots += lane.length;
+
+        byte[] frame = new byte[9 + lanes + (spots * BITS_PER_SPOT + 7) / 8];
+        frame[0] = TYPE_GARAGE;
+        frame[1] = BITS_PER_SPOT;
+        frame[2] = (byte) (sequence >>> 24);
+        frame[3] = (byte) (sequence >>> 16);
+        frame[4] = (byte) (sequence >>> 8);
+        frame[5] = (byte) sequence;
+        frame[6] = (byte) (free >>> 8);
+        frame[7] = (byte) free;
+        frame[8] = (byte) lanes;
+
+        int offset = 9 + lanes;
+        int bit = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            frame[9 + lane] = (byte) states[lane].length;
+            for (byte state : states[lane]) {
+                frame[offset + (bit >>> 3)] |= (byte) ((state & 0x03) << (bit & 7));
+                bit += BITS_PER_SPOT;
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * @param lane Lane des Spots oder {@link #NO_SPOT}
+     */
+    public static byte[] allocation(int result, int lane, int pos, String gateId, String plate) {
+        byte[] gate = ascii(gateId);
+        byte[] plateBytes = ascii(plate);
+        byte[] frame = new byte[6 + gate.length + plateBytes.length];
+        frame[0] = TYPE_ALLOCATION;
+        frame[1] = (byte) result;
+        frame[2] = (byte) lane;
+        frame[3] = (byte) pos;
+        frame[4] = (byte) gate.length;
+        System.arraycopy(gate, 0, frame, 5, gate.length);
+        frame[5 + gate.length] = (byte) plateBytes.length;
+        System.arraycopy(plateBytes, 0, frame, 6 + gate.length, plateBytes.length);
+        return frame;
+    }
+
+    private static byte[] ascii(String value) {
+        if (value == null) return new byte[0];
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        return bytes.length <= 0xFF ? bytes : Arrays.copyOf(bytes, 0xFF);
+    }
+}
@@ -0,0 +1,23 @@
+package de.campuspark.model;
+
+import java.util.List;
+
+/**
+ * Prognose der freien Parkplätze für die nächsten Minuten.
+ * Wird periodisch vom OccupancyForecaster auf "parking/state/forecast" publiziert.
+ */
+public record ForecastMessage(
+    long timestamp,          // Zeitpunkt der Prognose (Epoch-Millis)
+    int horizonMinutes,      // Prognosehorizont, z.B. 30
+    int freeNow,             // aktuell freie Plätze
+    int predictedFree,       // erwartete freie Plätze am Ende des Horizonts
+    List<LaneForecast> lanes
+) {
+    public record LaneForecast(
+        int lane,
+        int freeNow,
+        double expectedArrivals,
+        double expectedDepartures,
+        int predictedFree
+    ) {}
+}
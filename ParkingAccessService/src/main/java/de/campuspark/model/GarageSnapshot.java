@@ -0,0 +1,38 @@
+package de.campuspark.model;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Unveränderlicher Schnappschuss des gesamten Parkhauszustands.
+ * Wird vom SpotAllocator nach Änderungen neu aufgebaut und atomar ersetzt; Lesezugriffe
+ * (z.B. über die HTTP-API) arbeiten nur auf diesem Objekt und sperren den Allocator nie.
+ */
+public record GarageSnapshot(
+    long version,                 // fortlaufende Nummer des Schnappschusses
+    long timestamp,               // Erstellungszeitpunkt (Epoch-Millis)
+    int free,
+    List<LaneCount> lanes,
+    List<PoolCount> pools,        // Rollen-Pools (nur belegte Pools)
+    List<SpotStateMessage> spots,
+    @JsonIgnore Map<String, Integer> spotById,     // Spot-ID -> Index in spots
+    @JsonIgnore Map<String, Integer> spotByPlate   // normalisiertes Kennzeichen -> Index in spots
+) {
+    public static final GarageSnapshot EMPTY = new GarageSnapshot(0, 0, 0, List.of(), List.of(), List.of(), Map.of(), Map.of());
+
+    public record LaneCount(int lane, int free, int reserved, int occupied, int unavailable) {}
+
+    public record PoolCount(String pool, int size, int free, int guaranteed) {}
+
+    public SpotStateMessage findSpot(String spotId) {
+        Integer index = spotById.get(spotId);
+        return index != null ? spots.get(index) : null;
+    }
+
+    public SpotStateMessage findPlate(String normalizedPlate) {
+        Integer index = spotByPlate.get(normalizedPlate);
+        return index != null ? spots.get(index) : null;
+    }
+}
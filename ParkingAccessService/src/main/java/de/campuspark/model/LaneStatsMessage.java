@@ -0,0 +1,24 @@
+package de.campuspark.model;
+
+/**
+ * Aggregierte Belegung einer Lane (bzw. des ganzen Parkhauses bei lane = -1).
+ * Wird periodisch vom OccupancyAggregator retained auf "parking/state/lane/{lane}" publiziert.
+ */
+public record LaneStatsMessage(
+    int lane,                // Lane-Nummer, -1 = gesamtes Parkhaus
+    long timestamp,          // Zeitpunkt der Aggregation (Epoch-Millis)
+    int free,
+    int reserved,
+    int occupied,
+    WindowStats sliding,     // gleitendes Fenster bis jetzt
+    WindowStats tumbling     // zuletzt abgeschlossenes festes Fenster
+) {
+    public record WindowStats(
+        long start,              // Fensterbeginn (Epoch-Millis)
+        int minutes,             // Fensterlänge
+        int arrivals,
+        int departures,
+        double avgDwellMinutes,  // mittlere Parkdauer der Abfahrten im Fenster
+        double turnover          // Abfahrten pro Spot im Fenster
+    ) {}
+}
@@ -1,5 +1,11 @@
 package de.campuspark.model;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -43,6 +49,24 @@ public class LicensePlateEvent {
         return confidence;
     }
 
+    /**
+     * Zeitpunkt der Erkennung. Der ALPR-Dienst sendet lokale Zeit ohne Zone ("2025-12-18T16:15:00"),
+     * daher wird ohne Offset die Systemzeitzone angenommen.
+     * @return Zeitpunkt oder null, wenn der Zeitstempel fehlt oder nicht lesbar ist
+     */
+    public Instant recognizedAt() {
+        if (timestamp == null || timestamp.isBlank()) return null;
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toInstant();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "LicensePlateEvent{" +
@@ -0,0 +1,12 @@
+package de.campuspark.model;
+
+/**
+ * Zustand des Sensors eines Spots.
+ * Wird vom SensorMonitor bei jedem Wechsel retained auf "parking/state/health/{spotId}" publiziert.
+ */
+public record SensorHealthMessage(
+    String spotId,
+    String status,           // "lost" (verstummt, Spot gesperrt) oder "ok" (meldet sich wieder)
+    long lastSeen,           // letzte Sensor-Meldung (Epoch-Millis)
+    long timestamp           // Zeitpunkt des Wechsels (Epoch-Millis)
+) {}
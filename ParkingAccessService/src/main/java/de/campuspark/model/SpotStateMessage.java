@@ -12,7 +12,7 @@ import java.time.ZoneId;
 public class SpotStateMessage {
 
     public String spotId;
-    public String state;      // FREE, RESERVED, OCCUPIED
+    public String state;      // FREE, RESERVED, OCCUPIED, UNAVAILABLE
     public String plate;      // Das Kennzeichen oder null
     public String arrivalTime; // ISO-8601 String
     public String estimatedDepartureTime;
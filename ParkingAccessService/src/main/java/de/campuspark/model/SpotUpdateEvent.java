@@ -2,6 +2,9 @@ package de.campuspark.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Event zur Aktualisierung des Belegungsstatus eines einzelnen Parkplatzes.
@@ -9,21 +12,23 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  */
 public class SpotUpdateEvent {
 
+    /** Keine Reihenfolge bekannt (reine String-Payload ohne Sequenz/Zeitstempel). */
+    public static final long NO_ORDER = Long.MIN_VALUE;
+    public static final long NO_SEQUENCE = -1;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     private final String spotId;
     private final String status; // 'occupied' oder 'free'
-    private final long timestamp; // optional, kann aber nützlich für State Tracking sein
+    private final long timestamp; // Zeitpunkt der Messung (Sensor) bzw. des Empfangs (Epoch-Millis)
+    private final long sequence; // fortlaufende Nummer des Sensors oder NO_SEQUENCE
+    private final boolean sensorTimestamp; // timestamp stammt vom Sensor (nicht vom Empfang)
 
     /**
-     * Privater Konstruktor für die Deserialisierung durch Jackson (JSON -> Objekt).
-     *
-     * HINWEIS: Da der Sensor-Publisher nur einen String sendet ('occupied'/'free'),
-     * benötigt der Subscriber im handleSpotUpdate() Handler spezielle Logik,
-     * um dieses Objekt zu instanziieren, da Jackson standardmäßig erwartet,
-     * dass die gesamte JSON-Struktur in der Payload ist.
-     *
-     * Ein spezieller 'create' oder 'of' Methodenansatz im Handler ist hier besser.
-     * Dieser Konstruktor wird hier für Konsistenz und potenzielle zukünftige
-     * JSON-Payloads beibehalten.
+     * Konstruktor für die Deserialisierung durch Jackson (JSON -> Objekt).
+     * Für Nachrichten der Sensoren {@link #of(String, String)} verwenden: dort kommt die
+     * Spot-ID aus dem Topic, und die Payload ist entweder nur der Status ('occupied'/'free')
+     * oder JSON mit Status und optional Sequenznummer und/oder Zeitstempel.
      */
     @JsonCreator
     public SpotUpdateEvent(
@@ -31,30 +36,75 @@ public class SpotUpdateEvent {
             @JsonProperty("status") String status,
             @JsonProperty("timestamp") long timestamp
     ) {
+        this(spotId, status, timestamp, NO_SEQUENCE, timestamp > 0);
+    }
+
+    private SpotUpdateEvent(String spotId, String status, long timestamp, long sequence, boolean sensorTimestamp) {
         this.spotId = spotId;
         this.status = status;
         this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.sensorTimestamp = sensorTimestamp;
     }
 
-    // --- Zusätzliche Hilfsmethode für Ihren aktuellen Anwendungsfall ---
     /**
-     * Erstellt ein SpotUpdateEvent basierend auf dem MQTT Topic und der String-Payload.
+     * Erstellt ein SpotUpdateEvent basierend auf dem MQTT Topic und der Payload.
+     * Unterstützte Payloads:
+     * <pre>
+     * occupied
+     * {"status":"occupied","seq":42,"timestamp":1717400000000}
+     * </pre>
+     * seq (alternativ "sequence") und timestamp (Epoch-Millis, Werte in Sekunden werden erkannt)
+     * sind optional. Ohne Zeitstempel vom Sensor gilt der Empfangszeitpunkt. Bei Zeitstempeln in
+     * Sekunden haben mehrere Meldungen einer Sekunde dieselbe Reihenfolge; ein Statuswechsel wird
+     * dann trotzdem übernommen, echte Reihenfolge innerhalb der Sekunde gibt es aber nur mit seq.
      * @param topic Das empfangene MQTT Topic (z.B. "parking/raw/spot/A-01")
-     * @param status Die empfangene String-Payload (z.B. "occupied" oder "free")
+     * @param payload Die empfangene Payload
      * @return Ein SpotUpdateEvent-Objekt
      */
-    public static SpotUpdateEvent of(String topic, String status) {
+    public static SpotUpdateEvent of(String topic, String payload) throws JsonProcessingException {
         // Topic muss dem Format "parking/raw/spot/<spotId>" entsprechen
         String[] parts = topic.split("/");
         String spotId = parts[parts.length - 1]; // Letzter Teil ist die Spot-ID
-        long currentTimestamp = System.currentTimeMillis();
+        long receivedAt = System.currentTimeMillis();
+
+        String status = payload.trim();
+        long sequence = NO_SEQUENCE;
+        long timestamp = receivedAt;
+        boolean sensorTimestamp = false;
+        if (status.startsWith("{")) {
+            JsonNode json = mapper.readTree(status);
+            JsonNode statusNode = json.get("status");
+            status = statusNode != null && statusNode.isTextual() ? statusNode.textValue() : "";
+            JsonNode seq = json.has("seq") ? json.get("seq") : json.get("sequence");
+            if (seq != null && seq.canConvertToLong() && seq.asLong() >= 0) sequence = seq.asLong();
+            JsonNode time = json.get("timestamp");
+            if (time != null && time.canConvertToLong() && time.asLong() > 0) {
+                // ESP32-Firmware sendet teils Sekunden: alles unter 10^11 gilt als Sekunden
+                timestamp = time.asLong() < 100_000_000_000L ? time.asLong() * 1000 : time.asLong();
+                sensorTimestamp = true;
+            }
+        }
 
         // Optional: Validierung des Status
         if (!status.equals("occupied") && !status.equals("free")) {
             System.err.println("WARNUNG: Unerwarteter Status-Payload: " + status);
         }
 
-        return new SpotUpdateEvent(spotId, status, currentTimestamp);
+        return new SpotUpdateEvent(spotId, status, timestamp, sequence, sensorTimestamp);
+    }
+
+    /**
+     * Schlüssel für die Reihenfolge der Meldungen eines Sensors: die Sequenznummer, sonst der
+     * Zeitstempel des Sensors, sonst {@link #NO_ORDER}. Größer = neuer.
+     */
+    public long getOrder() {
+        if (sequence != NO_SEQUENCE) return sequence;
+        return sensorTimestamp ? timestamp : NO_ORDER;
+    }
+
+    public boolean hasSequence() {
+        return sequence != NO_SEQUENCE;
     }
     
     // --- Getter ---
@@ -70,6 +120,10 @@ public class SpotUpdateEvent {
         return timestamp;
     }
 
+    public long getSequence() {
+        return sequence;
+    }
+
     public boolean isOccupied() {
         return "occupied".equalsIgnoreCase(status);
     }
@@ -80,6 +134,7 @@ public class SpotUpdateEvent {
                 "spotId='" + spotId + '\'' +
                 ", status='" + status + '\'' +
                 ", timestamp=" + timestamp +
+                ", sequence=" + sequence +
                 '}';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package de.campuspark.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.campuspark.logic.PlateIndex;
+import de.campuspark.util.Config;
+
+/**
+ * Idempotenz-Fenster für Kennzeichen-Erkennungen an der Schranke.
+ * Der ALPR-Dienst meldet ein wartendes Auto mehrfach; jede Meldung würde sonst einen weiteren
+ * Platz reservieren. Pro (Schranke, Kennzeichen) wird daher die zuletzt vergebene Zuweisung
+ * für ein begrenztes Zeitfenster gemerkt und bei Wiederholungen erneut ausgeliefert.
+ *
+ * Die Einträge liegen in Einfügereihenfolge in einer LinkedHashMap; da das Fenster fest ist,
+ * ist der Kopf immer der älteste Eintrag und abgelaufene Einträge werden dort in O(1) entfernt.
+ */
+public class AccessDeduplicator {
+
+    /** Hartes Limit, falls sehr viele verschiedene Kennzeichen in kurzer Zeit eintreffen. */
+    private static final int MAX_ENTRIES = 10_000;
+
+    public record Issued(String spotId, long issuedAtMillis) {}
+
+    private static final Map<String, Issued> issued = new LinkedHashMap<>();
+
+    /**
+     * @return noch gültige Zuweisung für (Schranke, Kennzeichen) oder null
+     */
+    public static synchronized Issued lookup(String gateId, String plate) {
+        expire(System.currentTimeMillis());
+        return issued.get(key(gateId, plate));
+    }
+
+    /**
+     * Merkt sich eine neu vergebene Zuweisung.
+     */
+    public static synchronized void remember(String gateId, String plate, String spotId) {
+        long now = System.currentTimeMillis();
+        expire(now);
+
+        // Entfernen und neu einfügen, damit die Einfügereihenfolge der Zeitreihenfolge entspricht
+        String key = key(gateId, plate);
+        issued.remove(key);
+        issued.put(key, new Issued(spotId, now));
+
+        if (issued.size() > MAX_ENTRIES) {
+            Iterator<String> it = issued.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static void expire(long now) {
+        long cutoff = now - TimeUnit.SECONDS.toMillis(Config.ALPR_DEDUP_WINDOW_SECONDS);
+        Iterator<Issued> it = issued.values().iterator();
+        while (it.hasNext() && it.next().issuedAtMillis() < cutoff) {
+            it.remove();
+        }
+    }
+
+    private static String key(String gateId, String plate) {
+        return gateId + '|' + PlateIndex.normalize(plate);
+    }
+}
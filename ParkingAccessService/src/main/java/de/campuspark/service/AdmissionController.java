@@ -0,0 +1,217 @@
+package de.campuspark.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.campuspark.model.LicensePlateEvent;
+import de.campuspark.model.SpotUpdateEvent;
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+
+/**
+ * Zulassungskontrolle für eingehende Nachrichten. Der MQTT-Callback reiht nur ein; ein
+ * Verarbeitungs-Thread arbeitet die Klassen nach Priorität ab:
+ * <ol>
+ *   <li>{@link TrafficClass#ACCESS}: Kennzeichen an der Schranke</li>
+ *   <li>{@link TrafficClass#CONTROL}: Registrierungen, Umpark-Anfragen und Sonstiges</li>
+ *   <li>{@link TrafficClass#SENSOR}: Belegungsmeldungen der Spots</li>
+ * </ol>
+ * Spielt der Broker nach einem Reconnect einen Rückstau aus, verhindern zwei Regeln, dass die
+ * Schranke hinter veralteten Nachrichten wartet: Pro Spot zählt nur die neueste noch nicht
+ * verarbeitete Sensor-Meldung (ältere werden zusammengefasst; "neu" nach Sequenznummer bzw.
+ * Sensor-Zeitstempel, sonst nach Eingang), und Kennzeichen, die älter als PLATE_MAX_AGE_SECONDS
+ * sind, werden verworfen. Das Alter wird nur auf diesem Rechner gemessen (Wartezeit in der
+ * Warteschlange); der Zeitstempel der Kamera zählt nur bei vom Broker wiederholten Nachrichten
+ * (retained bzw. DUP), da die ALPR-Uhr ohne Zone und ggf. ohne NTP läuft. Verworfene Nachrichten
+ * werden sofort bestätigt, verworfene Kennzeichen zusätzlich als Warnung geloggt.
+ * Die Zähler stehen in {@link Metrics} unter "admission.&lt;klasse&gt;.*" (admitted, collapsed, stale).
+ */
+public class AdmissionController {
+
+    public enum TrafficClass { ACCESS, CONTROL, SENSOR }
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /** Eingereihte Nachricht; order nur für Sensor-Meldungen (sonst NO_ORDER), admittedAt per nanoTime. */
+    private record Pending(String topic, MqttMessage message, long order, long admittedAt) {}
+
+    private final BiConsumer<String, MqttMessage> handler;
+    private final Consumer<MqttMessage> ack;
+    private final String sensorPrefix = Config.TOPIC_SPOT.replace("#", "");
+
+    // Warteschlangen und Zähler sind durch lock geschützt
+    private final Object lock = new Object();
+    private final ArrayDeque<Pending> access = new ArrayDeque<>();
+    private final ArrayDeque<Pending> control = new ArrayDeque<>();
+    // Topic (= Spot) -> neueste Meldung, in Reihenfolge der ersten noch offenen Meldung
+    private final LinkedHashMap<String, Pending> sensors = new LinkedHashMap<>();
+    private int processing;
+
+    private Thread worker;
+
+    /**
+     * @param handler verarbeitet eine zugelassene Nachricht (inkl. Bestätigung)
+     * @param ack bestätigt eine verworfene Nachricht beim Broker
+     */
+    public AdmissionController(BiConsumer<String, MqttMessage> handler, Consumer<MqttMessage> ack) {
+        this.handler = handler;
+        this.ack = ack;
+    }
+
+    public synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(this::run, "admission");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Klassifiziert und reiht ein (kehrt sofort zurück).
+     */
+    public void admit(String topic, MqttMessage message) {
+        TrafficClass trafficClass = classify(topic);
+        if (trafficClass == TrafficClass.ACCESS) {
+            String replayed = replayedTooOld(message);
+            if (replayed != null) {
+                shedPlate(replayed, message);
+                return;
+            }
+        }
+
+        long order = trafficClass == TrafficClass.SENSOR ? sensorOrder(topic, message) : SpotUpdateEvent.NO_ORDER;
+        long now = System.nanoTime();
+        MqttMessage superseded = null;
+        synchronized (lock) {
+            switch (trafficClass) {
+                case ACCESS -> access.addLast(new Pending(topic, message, order, now));
+                case CONTROL -> control.addLast(new Pending(topic, message, order, now));
+                case SENSOR -> {
+                    Pending queued = sensors.get(topic);
+                    if (queued != null && order != SpotUpdateEvent.NO_ORDER && order < queued.order()) {
+                        // Verspätete Meldung: die eingereihte neuere bleibt stehen
+                        superseded = message;
+                    } else {
+                        Pending replaced = sensors.put(topic, new Pending(topic, message, order, now));
+                        if (replaced != null) superseded = replaced.message();
+                    }
+                }
+            }
+            lock.notifyAll();
+        }
+        Metrics.increment(metric(trafficClass, "admitted"));
+        if (superseded != null) shed(TrafficClass.SENSOR, "collapsed", superseded);
+    }
+
+    /**
+     * Anzahl eingereihter plus gerade verarbeiteter Nachrichten.
+     */
+    public int pending() {
+        synchronized (lock) {
+            return access.size() + control.size() + sensors.size() + processing;
+        }
+    }
+
+    public TrafficClass classify(String topic) {
+        if (topic.equals(Config.TOPIC_LICENSE_PLATE)) return TrafficClass.ACCESS;
+        if (topic.startsWith(sensorPrefix)) return TrafficClass.SENSOR;
+        return TrafficClass.CONTROL;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Pending next;
+            try {
+                next = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                // Im Rückstau kann ein Kennzeichen inzwischen veraltet sein
+                long waited = System.nanoTime() - next.admittedAt();
+                if (classify(next.topic()) == TrafficClass.ACCESS
+                        && waited > TimeUnit.SECONDS.toNanos(Config.PLATE_MAX_AGE_SECONDS)) {
+                    shedPlate("queued for " + TimeUnit.NANOSECONDS.toSeconds(waited) + " s", next.message());
+                } else {
+                    handler.accept(next.topic(), next.message());
+                }
+            } finally {
+                synchronized (lock) {
+                    processing--;
+                }
+            }
+        }
+    }
+
+    private Pending take() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                Pending next = access.pollFirst();
+                if (next == null) next = control.pollFirst();
+                if (next == null && !sensors.isEmpty()) {
+                    Iterator<Pending> it = sensors.values().iterator();
+                    next = it.next();
+                    it.remove();
+                }
+                if (next != null) {
+                    processing++;
+                    return next;
+                }
+                lock.wait();
+            }
+        }
+    }
+
+    private void shed(TrafficClass trafficClass, String reason, MqttMessage message) {
+        Metrics.increment(metric(trafficClass, reason));
+        ack.accept(message);
+    }
+
+    private void shedPlate(String reason, MqttMessage message) {
+        MqttLogger.warn("Admission", "Dropping plate read " + new String(message.getPayload(), StandardCharsets.UTF_8)
+                + ": " + reason, null);
+        shed(TrafficClass.ACCESS, "stale", message);
+    }
+
+    /**
+     * Vom Broker wiederholtes Kennzeichen (retained oder DUP) mit lesbarem Zeitstempel älter als
+     * PLATE_MAX_AGE_SECONDS. Live zugestellte und nicht lesbare Nachrichten gelten als frisch.
+     * @return Grund für das Verwerfen oder null
+     */
+    private static String replayedTooOld(MqttMessage message) {
+        if (!message.isRetained() && !message.isDuplicate()) return null;
+        try {
+            Instant recognized = mapper.readValue(message.getPayload(), LicensePlateEvent.class).recognizedAt();
+            if (recognized == null) return null;
+            long ageMillis = System.currentTimeMillis() - recognized.toEpochMilli();
+            if (ageMillis <= TimeUnit.SECONDS.toMillis(Config.PLATE_MAX_AGE_SECONDS)) return null;
+            return "redelivered " + TimeUnit.MILLISECONDS.toSeconds(ageMillis) + " s after recognition";
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reihenfolge-Schlüssel einer Sensor-Meldung, {@link SpotUpdateEvent#NO_ORDER} wenn unbekannt.
+     */
+    private static long sensorOrder(String topic, MqttMessage message) {
+        try {
+            return SpotUpdateEvent.of(topic, new String(message.getPayload(), StandardCharsets.UTF_8)).getOrder();
+        } catch (Exception e) {
+            return SpotUpdateEvent.NO_ORDER;
+        }
+    }
+
+    private static String metric(TrafficClass trafficClass, String name) {
+        return "admission." + trafficClass.name().toLowerCase() + "." + name;
+    }
+}
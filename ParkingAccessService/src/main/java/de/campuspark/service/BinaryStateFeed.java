@@ -0,0 +1,131 @@
+package de.campuspark.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.campuspark.logic.ParkingTopology;
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.model.BinaryFrames;
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+
+/**
+ * Veröffentlicht den Spot-Zustand zusätzlich im kompakten {@link BinaryFrames}-Format
+ * (aktiv mit BINARY_FEED=true):
+ * <ul>
+ *   <li>pro Wechsel ein 6-Byte-Frame auf TOPIC_SPOT_STATE_BIN + spotId und, falls sich die Zahl
+ *       freier Plätze ändert, ein 3-Byte-Frame auf TOPIC_SPOT_COUNT_BIN,</li>
+ *   <li>die ganze Garage als Bitmap (2 Bit pro Spot, retained) auf TOPIC_GARAGE_BITMAP.</li>
+ * </ul>
+ * Ein Gerät kann so nach dem Verbinden aus einer einzigen Nachricht von rund 160 Bytes
+ * (600 Spots) den vollständigen Zustand darstellen, statt hunderte JSON-Nachrichten auszuwerten.
+ * Die Bitmap wird nur nach Änderungen gesendet, höchstens alle BINARY_FEED_INTERVAL_MS;
+ * Wechsel innerhalb dieses Intervalls landen gesammelt in einem Frame.
+ */
+public class BinaryStateFeed {
+
+    private static final int UNAVAILABLE = BinaryFrames.STATE_UNAVAILABLE;
+
+    // Alles durch lock geschützt
+    private static final Object lock = new Object();
+    /** Zustand pro [lane][pos], Lücken unavailable. */
+    private static byte[][] grid = new byte[0][];
+    /** Spot-Indizes, die nicht in die Binär-Feeds passen (Lane/Position zu groß, freie ID). */
+    private static final BitSet excluded = new BitSet();
+    private static int free;
+    private static long sequence;
+    private static boolean flushScheduled;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "binary-feed");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Meldet den Feed am Allocator an. Muss vor dem Abonnieren laufen, damit alle Spots
+     * schon über ihre Anlage erfasst werden.
+     */
+    public static void start() {
+        if (!Config.BINARY_FEED) return;
+        SpotAllocator.addTransitionListener(BinaryStateFeed::onTransition);
+    }
+
+    /**
+     * Übernimmt einen Wechsel und sendet den Spot-Frame (läuft unter dem Allocator-Lock).
+     */
+    public static void onTransition(SpotTransition t) {
+        int lane = t.lane();
+        int pos = t.pos();
+        byte[] spotFrame = null;
+        byte[] summaryFrame = null;
+
+        synchronized (lock) {
+            int freeBefore = free;
+            if (t.from() == SpotInfo.State.free) free--;
+            if (t.to() == SpotInfo.State.free) free++;
+
+            if (t.from() == null) {
+                // Freie IDs liegen im Store auf (0, 0) und würden dort einen echten Spot überdecken
+                boolean fits = lane <= BinaryFrames.MAX_LANE_POS && pos <= BinaryFrames.MAX_LANE_POS
+                        && ParkingTopology.createSpotId(lane, pos).equals(SpotAllocator.getSpotId(t.spotIndex()));
+                if (!fits) excluded.set(t.spotIndex());
+            }
+            if (!excluded.get(t.spotIndex())) {
+                set(lane, pos, t.to().ordinal());
+                spotFrame = BinaryFrames.spot(lane, pos, t.to().ordinal(), free);
+                scheduleFlush();
+            }
+            if (free != freeBefore) summaryFrame = BinaryFrames.summary(free);
+        }
+
+        if (spotFrame != null) {
+            MqttPublisher.publish(Config.TOPIC_SPOT_STATE_BIN + ParkingTopology.createSpotId(lane, pos), spotFrame,
+                    0, false, MqttPublisher.Priority.STATE);
+        }
+        if (summaryFrame != null) {
+            MqttPublisher.publish(Config.TOPIC_SPOT_COUNT_BIN, summaryFrame, 0, true, MqttPublisher.Priority.STATE);
+        }
+    }
+
+    private static void flush() {
+        try {
+            byte[] frame;
+            synchronized (lock) {
+                flushScheduled = false;
+                frame = BinaryFrames.garage(++sequence, free, grid);
+            }
+            MqttPublisher.publish(Config.TOPIC_GARAGE_BITMAP, frame, 1, true, MqttPublisher.Priority.STATE);
+            Metrics.increment("binary.garage_frames");
+        } catch (Exception e) {
+            MqttLogger.error("BinaryStateFeed", "Could not publish garage bitmap: " + e.getMessage());
+        }
+    }
+
+    // Muss unter lock laufen
+    private static void scheduleFlush() {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        scheduler.schedule(BinaryStateFeed::flush, Math.max(0, Config.BINARY_FEED_INTERVAL_MS), TimeUnit.MILLISECONDS);
+    }
+
+    // Muss unter lock laufen
+    private static void set(int lane, int pos, int state) {
+        if (lane >= grid.length) {
+            int old = grid.length;
+            grid = Arrays.copyOf(grid, lane + 1);
+            for (int l = old; l < grid.length; l++) grid[l] = new byte[0];
+        }
+        byte[] row = grid[lane];
+        if (pos >= row.length) {
+            int old = row.length;
+            row = grid[lane] = Arrays.copyOf(row, pos + 1);
+            Arrays.fill(row, old, row.length, (byte) UNAVAILABLE);
+        }
+        row[pos] = (byte) state;
+    }
+}
@@ -0,0 +1,355 @@
+package de.campuspark.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import de.campuspark.logic.LectureSchedule;
+import de.campuspark.util.Config;
+import de.campuspark.util.JfrEvents;
+
+/**
+ * Index aller Kurskalender.
+ * Jeder Kalender (lokale *.ics-Datei oder StuV-API) wird mit dem {@link IcsReader} gelesen
+ * (lokale Dateien per Memory-Mapping); abgelegt werden als {@link LectureSchedule} nur die
+ * Termine von heute bis CALENDAR_HORIZON_DAYS Tage voraus (0 = ganzer Kalender). Ein
+ * Hintergrund-Job aktualisiert die Kalender periodisch: lokale Dateien nur bei geändertem
+ * Zeitstempel, entfernte Kalender über Conditional Requests (ETag / Last-Modified), sodass
+ * unveränderte Kalender nicht erneut heruntergeladen und gelesen werden. Am nächsten Tag
+ * wird jeder Kalender unabhängig davon neu indiziert, damit das Fenster mitwandert.
+ *
+ * Entfernte Kalender werden nie auf dem aufrufenden (MQTT-)Thread geladen: Downloads laufen
+ * asynchron in einem begrenzten Pool mit festen Timeouts, pro Kurs ist höchstens ein Download
+ * gleichzeitig unterwegs, und bis zum Abschluss wird der letzte gültige Stand ausgeliefert
+ * (stale-while-revalidate).
+ */
+public class CalendarIndex {
+
+    /**
+     * Geladener Kalender eines Kurses inkl. der Validatoren für die nächste Aktualisierung.
+     */
+    private record Entry(LectureSchedule schedule, LocalDate indexedOn, long fileModified, String etag,
+                         String lastModified, long loadedAt) {}
+
+    private static final Map<String, Entry> calendars = new ConcurrentHashMap<>();
+
+    /** Laufende Downloads pro Kurs (Request-Coalescing). */
+    private static final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    /** Zeitpunkt des letzten fehlgeschlagenen Erstladens pro Kurs (Negativ-Cache). */
+    private static final Map<String, Long> failedAt = new ConcurrentHashMap<>();
+    private static final long RETRY_AFTER_MS = 60_000;
+
+    private static final Duration HTTP_TIMEOUT = Duration.ofMillis(Config.CALENDAR_HTTP_TIMEOUT_MS);
+
+    /** URL-Muster der StuV-API mit %s für den Kurs, in Tests auf einen lokalen Server umgebogen. */
+    static String baseUrl = Config.STUV_BASE_URL;
+
+    private static final HttpClient http = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(HTTP_TIMEOUT)
+            .build();
+
+    /** Begrenzt die Anzahl paralleler Downloads + Parse-Vorgänge. */
+    private static final ExecutorService fetchers = Executors.newFixedThreadPool(Config.CALENDAR_MAX_CONCURRENT_FETCHES, r -> {
+        Thread t = new Thread(r, "calendar-fetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "calendar-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Lädt alle lokal vorhandenen Kalender und startet den periodischen Refresh-Job.
+     */
+    public static void start() {
+        File[] localFiles = new File(".").listFiles((dir, name) -> name.endsWith(".ics"));
+        if (localFiles != null) {
+            for (File file : localFiles) {
+                String course = file.getName().substring(0, file.getName().length() - ".ics".length());
+                refreshLocal(course, file);
+            }
+        }
+
+        long interval = Config.CALENDAR_REFRESH_MINUTES;
+        refresher.scheduleWithFixedDelay(CalendarIndex::refreshAll, interval, interval, TimeUnit.MINUTES);
+        MqttLogger.info("CalendarIndex", "Indexed " + calendars.size() + " course calendars", null);
+    }
+
+    /**
+     * Liefert den Vorlesungsplan eines Kurses, ohne auf das Netzwerk zu warten.
+     * Unbekannte Kurse werden im Hintergrund geladen; der Aufrufer wartet darauf höchstens
+     * {@code CALENDAR_WAIT_MS}. Veraltete Kalender werden weiter ausgeliefert, während im
+     * Hintergrund aktualisiert wird.
+     * @return Plan des Kurses oder null, wenn (noch) kein Kalender vorliegt oder der User keinen
+     *         Kurs hat (Mitarbeiter, Dozenten).
+     */
+    public static LectureSchedule get(String course) {
+        if (course == null || course.isBlank()) return null;
+        Entry entry = calendars.get(course);
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.loadedAt() > TimeUnit.MINUTES.toMillis(Config.CALENDAR_REFRESH_MINUTES)
+                    || !LocalDate.now().equals(entry.indexedOn())) {
+                refresh(course);
+            }
+            return entry.schedule();
+        }
+
+        File localFile = new File(course + ".ics");
+        if (localFile.exists()) {
+            entry = refreshLocal(course, localFile);
+            return entry != null ? entry.schedule() : null;
+        }
+
+        // Kürzlich fehlgeschlagen -> nicht erneut warten, nur im Hintergrund neu versuchen
+        Long failed = failedAt.get(course);
+        if (failed != null && System.currentTimeMillis() - failed < RETRY_AFTER_MS) {
+            return null;
+        }
+
+        try {
+            entry = refresh(course).get(Config.CALENDAR_WAIT_MS, TimeUnit.MILLISECONDS);
+            return entry != null ? entry.schedule() : null;
+        } catch (TimeoutException e) {
+            MqttLogger.warn("CalendarIndex", "Calendar " + course + " not loaded yet, continuing without it", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // bereits in refresh() geloggt
+        }
+        return null;
+    }
+
+    /**
+     * Wie {@link #get}, wartet aber nie: Liegt für den Kurs noch kein Kalender vor, wird er nur
+     * im Hintergrund angefordert. Für Aufrufer, die einen Lock halten.
+     * @return Plan des Kurses oder null, wenn (noch) kein Kalender vorliegt.
+     */
+    public static LectureSchedule peek(String course) {
+        if (course == null || course.isBlank()) return null;
+        if (calendars.containsKey(course)) return get(course);
+        Long failed = failedAt.get(course);
+        if (failed == null || System.currentTimeMillis() - failed >= RETRY_AFTER_MS) {
+            fetchers.execute(() -> refresh(course));
+        }
+        return null;
+    }
+
+    /**
+     * Aktualisiert alle bekannten Kurse.
+     */
+    public static void refreshAll() {
+        for (String course : calendars.keySet()) {
+            refresh(course);
+        }
+        for (String course : failedAt.keySet()) {
+            refresh(course);
+        }
+    }
+
+    /**
+     * Stößt die Aktualisierung eines Kurses an. Lokale Dateien werden direkt geprüft,
+     * entfernte Kalender asynchron geladen. Läuft für den Kurs bereits ein Download,
+     * wird dessen Future zurückgegeben.
+     * @return Future mit dem neuen (oder bei Fehlern dem letzten gültigen) Stand.
+     */
+    static CompletableFuture<Entry> refresh(String course) {
+        File localFile = new File(course + ".ics");
+        if (localFile.exists()) {
+            return CompletableFuture.completedFuture(refreshLocal(course, localFile));
+        }
+
+        CompletableFuture<Entry> pending = inFlight.get(course);
+        if (pending != null) return pending;
+
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        pending = inFlight.putIfAbsent(course, created);
+        if (pending != null) return pending;
+
+        fetchers.execute(() -> {
+            Entry previous = calendars.get(course);
+            JfrEvents.CalendarLoad trace = trace(course, "http");
+            Entry result;
+            Exception error = null;
+            try {
+                result = loadRemote(course, previous, trace);
+                store(course, previous, result);
+                failedAt.remove(course);
+                done(trace, previous, result);
+            } catch (Exception e) {
+                done(trace, previous, null);
+                MqttLogger.error("CalendarIndex", "Could not load calendar " + course + ": " + e);
+                failedAt.put(course, System.currentTimeMillis());
+                result = previous;
+                error = e;
+            }
+            // Erst austragen, dann abschließen: Ein Refresh nach dem Abschluss lädt neu
+            inFlight.remove(course, created);
+            if (result != null) {
+                created.complete(result);
+            } else {
+                created.completeExceptionally(error);
+            }
+        });
+        return created;
+    }
+
+    private static Entry refreshLocal(String course, File file) {
+        Entry previous = calendars.get(course);
+        JfrEvents.CalendarLoad trace = trace(course, "file");
+        try {
+            Entry updated = loadLocal(file, previous, trace);
+            store(course, previous, updated);
+            done(trace, previous, updated);
+            return updated;
+        } catch (IOException e) {
+            done(trace, previous, null);
+            MqttLogger.error("CalendarIndex", "Could not load calendar " + course + ": " + e.getMessage());
+            return previous;
+        }
+    }
+
+    private static void store(String course, Entry previous, Entry updated) {
+        calendars.put(course, updated);
+        if (previous == null || updated.schedule() != previous.schedule()) {
+            MqttLogger.info("CalendarIndex", "Indexed calendar " + course + " (" + updated.schedule().size() + " lecture blocks)", null);
+        }
+    }
+
+    private static Entry loadLocal(File file, Entry previous, JfrEvents.CalendarLoad trace) throws IOException {
+        long modified = file.lastModified();
+        LocalDate today = LocalDate.now();
+        if (previous != null && previous.fileModified() == modified && today.equals(previous.indexedOn())) {
+            return touch(previous);
+        }
+        long[] window = window(today);
+        if (trace.isEnabled()) trace.bytes = file.length();
+        List<IcsReader.Event> events = IcsReader.readFile(file.toPath(), window[0], window[1]);
+        return new Entry(schedule(events), today, modified, null, null, System.currentTimeMillis());
+    }
+
+    private static Entry loadRemote(String course, Entry previous, JfrEvents.CalendarLoad trace)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(String.format(baseUrl, course)))
+                .timeout(HTTP_TIMEOUT)
+                .GET();
+        // Am nächsten Tag muss neu indiziert werden, auch wenn sich der Kalender nicht geändert hat
+        LocalDate today = LocalDate.now();
+        boolean current = previous != null && today.equals(previous.indexedOn());
+        if (current && previous.etag() != null) {
+            request.header("If-None-Match", previous.etag());
+        }
+        if (current && previous.lastModified() != null) {
+            request.header("If-Modified-Since", previous.lastModified());
+        }
+
+        // Gesamten Body mit hartem Timeout laden, damit auch langsame Übertragungen abbrechen
+        CompletableFuture<HttpResponse<byte[]>> download =
+                http.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> response;
+        try {
+            response = download.get(HTTP_TIMEOUT.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Bricht den Austausch ab, sonst läuft die Übertragung im Client weiter
+            download.cancel(true);
+            throw new IOException("Timeout after " + HTTP_TIMEOUT.toMillis() * 2 + " ms");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        if (response.statusCode() == 304 && current) {
+            return touch(previous);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        long[] window = window(today);
+        if (trace.isEnabled()) trace.bytes = response.body().length;
+        List<IcsReader.Event> events = IcsReader.read(ByteBuffer.wrap(response.body()), window[0], window[1]);
+        return new Entry(
+                schedule(events),
+                today,
+                0,
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                System.currentTimeMillis());
+    }
+
+    private static JfrEvents.CalendarLoad trace(String course, String source) {
+        JfrEvents.CalendarLoad trace = new JfrEvents.CalendarLoad();
+        if (trace.isEnabled()) {
+            trace.course = course;
+            trace.source = source;
+        }
+        trace.begin();
+        return trace;
+    }
+
+    /**
+     * @param updated neuer Stand oder null bei Fehlern
+     */
+    private static void done(JfrEvents.CalendarLoad trace, Entry previous, Entry updated) {
+        if (!trace.shouldCommit()) return;
+        if (updated == null) {
+            trace.result = "failed";
+        } else {
+            trace.result = previous != null && updated.schedule() == previous.schedule() ? "unchanged" : "indexed";
+            trace.blocks = updated.schedule().size();
+        }
+        trace.commit();
+    }
+
+    /**
+     * Markiert einen unveränderten Stand als frisch validiert.
+     */
+    private static Entry touch(Entry entry) {
+        return new Entry(entry.schedule(), entry.indexedOn(), entry.fileModified(), entry.etag(), entry.lastModified(),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Indizierter Zeitraum [Beginn von heute, Ende des letzten Horizont-Tages) in Epoch-Sekunden.
+     */
+    private static long[] window(LocalDate today) {
+        if (Config.CALENDAR_HORIZON_DAYS <= 0) return new long[] { Long.MIN_VALUE, Long.MAX_VALUE };
+        ZoneId zone = ZoneId.systemDefault();
+        return new long[] {
+                today.atStartOfDay(zone).toEpochSecond(),
+                today.plusDays(Config.CALENDAR_HORIZON_DAYS + 1L).atStartOfDay(zone).toEpochSecond()
+        };
+    }
+
+    /**
+     * Überführt die gelesenen (bereits gefilterten) Termine in einen Plan.
+     */
+    private static LectureSchedule schedule(List<IcsReader.Event> events) {
+        long[] starts = new long[events.size()];
+        long[] ends = new long[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = events.get(i).start();
+            ends[i] = events.get(i).end();
+        }
+        return LectureSchedule.of(starts, ends, starts.length);
+    }
+}
@@ -1,70 +1,70 @@
 package de.campuspark.service;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Date;
 
-import biweekly.Biweekly;
-import biweekly.ICalendar;
 import biweekly.component.VEvent;
+import de.campuspark.logic.LectureSchedule;
 import de.campuspark.model.UserProfile;
-import de.campuspark.util.Config;
 
 public class CalendarService {
 
     public static DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
-    private static boolean isEventOnDate(VEvent event, LocalDate targetDate) {
-        if (event.getDateStart() == null) return false;
-
-        Date start = event.getDateStart().getValue();
-        LocalDate eventDate = start.toInstant()
-                                   .atZone(ZoneId.systemDefault())
-                                   .toLocalDate();
+    /**
+     * Schätzt das Ende des heutigen Vorlesungstages eines Users.
+     * Die Abfrage läuft gegen den vorberechneten {@link CalendarIndex}.
+     * @return Ende des letzten Termins heute, jetzt falls heute keine Vorlesung ist,
+     *         oder null wenn der Kalender nicht geladen werden konnte.
+     */
+    public static Instant getEstimatedEndTime(UserProfile user) {
+        return endOfDay(CalendarIndex.get(user.getCourse()));
+    }
 
-        return eventDate.equals(targetDate);
+    /**
+     * Wie {@link #getEstimatedEndTime}, wartet aber nie auf das Laden eines Kalenders
+     * (siehe {@link CalendarIndex#peek}); für Aufrufer unter dem Allocator-Lock.
+     */
+    public static Instant getCachedEndTime(UserProfile user) {
+        return endOfDay(CalendarIndex.peek(user.getCourse()));
     }
 
-    public static Instant getEstimatedEndTime(UserProfile user) {
-        // Pfad zu deinen lokalen Dateien (z.B. im Projekt-Root oder einem 'resources' Ordner)
-        String localFileName = user.getCourse() + ".ics";
-        File localFile = new File(localFileName);
+    private static Instant endOfDay(LectureSchedule schedule) {
+        if (schedule == null) return null;
 
-        try (InputStream in = localFile.exists() 
-                ? new FileInputStream(localFile) // Nutze lokale Datei, falls vorhanden
-                : URI.create(String.format(Config.STUV_BASE_URL, user.getCourse())).toURL().openStream()) {
-            
-            if (localFile.exists()) {
-                System.out.println("DEBUG: Lade Kalender lokal für " + user.getCourse());
-            }
+        Instant end = schedule.getEndOfDay(LocalDate.now(), ZoneId.systemDefault());
+        return end != null ? end : Instant.now();
+    }
 
-            ICalendar ical = Biweekly.parse(in).first();
-            LocalDate today = LocalDate.now();
+    /**
+     * Prüft, ob der Kurs des Users gerade in einer Vorlesung sitzt.
+     */
+    public static boolean isInLecture(UserProfile user) {
+        LectureSchedule schedule = CalendarIndex.get(user.getCourse());
+        return schedule != null && schedule.isBusy(Instant.now());
+    }
 
-            return ical.getEvents().stream()
-                .filter(event -> isEventOnDate(event, today))
-                .filter(event -> !shouldIgnore(event))
-                .map(event -> event.getDateEnd().getValue().toInstant())
-                .max(Instant::compareTo)
-                .orElse(Instant.now());
-        
-        } catch (IOException e) {
-            System.err.println("Fehler beim Laden des Kalenders: " + e.getMessage());
-            return null;
-        }
+    /**
+     * Liefert den Beginn der nächsten vorlesungsfreien Zeit des Users (jetzt, falls gerade frei).
+     */
+    public static Instant getNextFreeWindow(UserProfile user) {
+        LectureSchedule schedule = CalendarIndex.get(user.getCourse());
+        return schedule != null ? schedule.getNextFreeWindow(Instant.now()) : Instant.now();
+    }
+
+    public static boolean shouldIgnore(VEvent event) {
+        String summary = (event.getSummary() != null) ? event.getSummary().getValue() : "";
+        String location = (event.getLocation() != null) ? event.getLocation().getValue() : "";
+        return shouldIgnore(summary, location);
     }
 
-    private static boolean shouldIgnore(VEvent event) {
-        String summary = (event.getSummary() != null) ? event.getSummary().getValue().toLowerCase() : "";
-        String location = (event.getLocation() != null) ? event.getLocation().getValue().toLowerCase() : "";
-        return summary.contains("stuv") || location.isBlank();
+    /**
+     * Termine ohne Raum und StuV-Termine zählen nicht als Vorlesung.
+     */
+    public static boolean shouldIgnore(String summary, String location) {
+        return summary.toLowerCase().contains("stuv") || location.isBlank();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,167 @@
+package de.campuspark.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.campuspark.logic.PlateIndex;
+import de.campuspark.model.GarageSnapshot;
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+
+/**
+ * Eingebettete HTTP-API (nur lesend) für den aktuellen Parkhauszustand.
+ * Alle Antworten werden aus dem unveränderlichen {@link GarageSnapshot} des SpotAllocators
+ * erzeugt, Abfragen konkurrieren also nie mit Schreibzugriffen auf den Allocator.
+ * Jede Anfrage läuft auf einem eigenen virtuellen Thread.
+ *
+ * <pre>
+ * GET /api/spots[?state=free]   alle Spots (optional nach Zustand gefiltert)
+ * GET /api/spots/{spotId}       ein Spot
+ * GET /api/lanes                freie/reservierte/belegte Plätze pro Lane
+ * GET /api/pools                Größe, freie und garantierte Plätze pro Rollen-Pool
+ * GET /api/plates/{plate}       Spot eines Kennzeichens
+ * GET /api/metrics              Zähler und Alter des Schnappschusses
+ * </pre>
+ * Die API gibt Standort und Abfahrtszeit einzelner Kennzeichen preis und hat keine
+ * Authentifizierung. Sie ist daher nur mit gesetztem HTTP_PORT aktiv und lauscht standardmäßig
+ * nur auf Loopback (HTTP_HOST); Browser-Zugriffe anderer Origins erlaubt nur ein explizit
+ * konfiguriertes HTTP_CORS_ORIGIN.
+ */
+public class GarageApi {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static HttpServer server;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "garage-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Startet den Server auf HTTP_HOST:HTTP_PORT (negativ = deaktiviert, Standard) und die
+     * periodische Aktualisierung des Schnappschusses.
+     */
+    public static synchronized void start() {
+        if (server != null || Config.HTTP_PORT < 0) return;
+
+        long interval = Config.SNAPSHOT_REFRESH_MS;
+        scheduler.scheduleWithFixedDelay(SpotAllocator::refreshSnapshot, 0, interval, TimeUnit.MILLISECONDS);
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(Config.HTTP_HOST, Config.HTTP_PORT), 0);
+        } catch (IOException e) {
+            MqttLogger.error("GarageApi", "Could not start HTTP server on " + Config.HTTP_HOST + ":" + Config.HTTP_PORT
+                    + ": " + e.getMessage());
+            return;
+        }
+        server.createContext("/api/spots", GarageApi::handleSpots);
+        server.createContext("/api/lanes", exchange -> handle(exchange, () -> SpotAllocator.getSnapshot().lanes()));
+        server.createContext("/api/pools", exchange -> handle(exchange, () -> SpotAllocator.getSnapshot().pools()));
+        server.createContext("/api/plates/", GarageApi::handlePlate);
+        server.createContext("/api/metrics", exchange -> handle(exchange, GarageApi::metrics));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        MqttLogger.info("GarageApi", "HTTP API listening on " + server.getAddress(), null);
+    }
+
+    private static void handleSpots(HttpExchange exchange) throws IOException {
+        GarageSnapshot snapshot = SpotAllocator.getSnapshot();
+        String id = pathParameter(exchange, "/api/spots");
+        if (id != null) {
+            handle(exchange, () -> snapshot.findSpot(id));
+            return;
+        }
+
+        String state = queryParameter(exchange, "state");
+        handle(exchange, () -> state == null ? snapshot.spots()
+                : snapshot.spots().stream().filter(s -> s.state.equalsIgnoreCase(state)).toList());
+    }
+
+    private static void handlePlate(HttpExchange exchange) throws IOException {
+        String plate = pathParameter(exchange, "/api/plates");
+        handle(exchange, () -> plate != null ? SpotAllocator.getSnapshot().findPlate(PlateIndex.normalize(plate)) : null);
+    }
+
+    private static Map<String, Object> metrics() {
+        GarageSnapshot snapshot = SpotAllocator.getSnapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("snapshotVersion", snapshot.version());
+        result.put("snapshotAgeMs", System.currentTimeMillis() - snapshot.timestamp());
+        result.put("free", snapshot.free());
+        result.put("spots", snapshot.spots().size());
+        result.put("counters", Metrics.snapshot());
+        return result;
+    }
+
+    /**
+     * Beantwortet GET-Anfragen mit dem Ergebnis als JSON (404 bei null, 500 bei Fehlern).
+     */
+    private static void handle(HttpExchange exchange, Supplier<Object> body) throws IOException {
+        try (exchange) {
+            Metrics.increment("http.requests");
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, Map.of("error", "method not allowed"));
+                return;
+            }
+            Object result;
+            try {
+                result = body.get();
+            } catch (RuntimeException e) {
+                MqttLogger.error("GarageApi", "Request " + exchange.getRequestURI() + " failed: " + e.getMessage());
+                send(exchange, 500, Map.of("error", "internal error"));
+                return;
+            }
+            if (result == null) {
+                send(exchange, 404, Map.of("error", "not found"));
+            } else {
+                send(exchange, 200, result);
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (!Config.HTTP_CORS_ORIGIN.isBlank()) {
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", Config.HTTP_CORS_ORIGIN);
+            exchange.getResponseHeaders().set("Vary", "Origin");
+        }
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    /**
+     * Pfadteil nach dem Präfix ("/api/spots/L1-P0" -> "L1-P0") oder null.
+     */
+    private static String pathParameter(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getPath();
+        if (path.length() <= prefix.length() + 1) return null;
+        return path.substring(prefix.length() + 1);
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            String[] kv = pair.split("=", 2);
+            if (kv[0].equals(name)) return kv.length > 1 ? kv[1] : "";
+        }
+        return null;
+    }
+}
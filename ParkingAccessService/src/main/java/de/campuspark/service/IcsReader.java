@@ -0,0 +1,286 @@
+package de.campuspark.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streamender Leser für iCalendar-Dateien, zugeschnitten auf den Vorlesungsplan.
+ * Statt wie Biweekly ein vollständiges Objektmodell aller Termine mit allen Eigenschaften
+ * aufzubauen, wird der Kalender einmal byteweise durchlaufen (lokale Dateien per
+ * Memory-Mapping) und pro VEVENT nur DTSTART, DTEND, SUMMARY und LOCATION betrachtet.
+ * Zeitpunkte werden direkt aus den Ziffern gelesen; Texte werden nur für Termine im
+ * gewünschten Zeitraum erzeugt, danach gelten dieselben Ausschlussregeln wie bisher
+ * ({@link CalendarService#shouldIgnore(String, String)}).
+ *
+ * Unterstützt: gefaltete Zeilen, CRLF und LF, Text-Escapes, Zeiten in UTC ("Z"), mit TZID
+ * oder ohne Zone (Systemzeitzone) sowie ganztägige Termine (VALUE=DATE). Unterkomponenten
+ * eines Termins (z.B. VALARM) und VTIMEZONE-Definitionen werden übersprungen.
+ */
+public final class IcsReader {
+
+    /** Relevanter Termin (Zeitpunkte in Epoch-Sekunden). */
+    public record Event(long start, long end, String summary, String location) {}
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private static final byte[] BEGIN_VEVENT = bytes("BEGIN:VEVENT");
+    private static final byte[] END_VEVENT = bytes("END:VEVENT");
+    private static final byte[] END_VCALENDAR = bytes("END:VCALENDAR");
+    private static final byte[] BEGIN = bytes("BEGIN:");
+    private static final byte[] END = bytes("END:");
+    private static final byte[] DTSTART = bytes("DTSTART");
+    private static final byte[] DTEND = bytes("DTEND");
+    private static final byte[] SUMMARY = bytes("SUMMARY");
+    private static final byte[] LOCATION = bytes("LOCATION");
+    private static final byte[] TZID = bytes("TZID=");
+
+    private IcsReader() {
+    }
+
+    /**
+     * Liest eine lokale Datei per Memory-Mapping.
+     * @see #read(ByteBuffer, long, long)
+     */
+    public static List<Event> readFile(Path file, long fromEpochSecond, long toEpochSecond) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Calendar too large: " + file);
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), fromEpochSecond, toEpochSecond);
+        }
+    }
+
+    /**
+     * Liefert alle nicht ignorierten Termine des ersten Kalenders, die den Zeitraum
+     * [from, to) berühren (Ende &gt;= from und Beginn &lt; to). Termine ohne Beginn oder Ende
+     * werden wie bisher übergangen.
+     */
+    public static List<Event> read(ByteBuffer ics, long fromEpochSecond, long toEpochSecond) {
+        List<Event> events = new ArrayList<>();
+        int limit = ics.limit();
+        int pos = ics.position();
+
+        boolean inEvent = false;
+        int nested = 0; // Tiefe der Unterkomponenten innerhalb des Termins
+        long start = NONE;
+        long end = NONE;
+        int summaryFrom = -1, summaryTo = -1;
+        int locationFrom = -1, locationTo = -1;
+
+        while (pos < limit) {
+            int lineStart = pos;
+            int lineEnd = logicalLineEnd(ics, pos, limit);
+            pos = skipNewline(ics, lineEnd, limit);
+
+            if (!inEvent) {
+                if (startsWith(ics, lineStart, lineEnd, BEGIN_VEVENT)) {
+                    inEvent = true;
+                    nested = 0;
+                    start = end = NONE;
+                    summaryFrom = locationFrom = -1;
+                } else if (startsWith(ics, lineStart, lineEnd, END_VCALENDAR)) {
+                    break; // wie Biweekly.parse(...).first(): nur der erste Kalender
+                }
+                continue;
+            }
+
+            if (startsWith(ics, lineStart, lineEnd, END_VEVENT) && nested == 0) {
+                inEvent = false;
+                if (start == NONE || end == NONE || end < fromEpochSecond || start >= toEpochSecond) continue;
+
+                String summary = summaryFrom >= 0 ? text(ics, summaryFrom, summaryTo) : "";
+                String location = locationFrom >= 0 ? text(ics, locationFrom, locationTo) : "";
+                if (!CalendarService.shouldIgnore(summary, location)) {
+                    events.add(new Event(start, end, summary, location));
+                }
+            } else if (startsWith(ics, lineStart, lineEnd, BEGIN)) {
+                nested++;
+            } else if (startsWith(ics, lineStart, lineEnd, END)) {
+                nested = Math.max(0, nested - 1);
+            } else if (nested == 0) {
+                int valueFrom = valueStart(ics, lineStart, lineEnd);
+                if (valueFrom < 0) continue;
+                if (isProperty(ics, lineStart, lineEnd, DTSTART)) {
+                    start = dateTime(ics, lineStart, valueFrom, lineEnd);
+                } else if (isProperty(ics, lineStart, lineEnd, DTEND)) {
+                    end = dateTime(ics, lineStart, valueFrom, lineEnd);
+                } else if (isProperty(ics, lineStart, lineEnd, SUMMARY)) {
+                    summaryFrom = valueFrom;
+                    summaryTo = lineEnd;
+                } else if (isProperty(ics, lineStart, lineEnd, LOCATION)) {
+                    locationFrom = valueFrom;
+                    locationTo = lineEnd;
+                }
+            }
+        }
+        return events;
+    }
+
+    // -----------------------------
+    // ZEILEN
+    // -----------------------------
+
+    /**
+     * Ende der logischen Zeile (exklusive CR/LF); Folgezeilen mit führendem Leerzeichen
+     * oder Tab gehören noch dazu (RFC 5545 Folding).
+     */
+    private static int logicalLineEnd(ByteBuffer b, int pos, int limit) {
+        while (true) {
+            while (pos < limit && b.get(pos) != '\n') pos++;
+            int end = (pos > 0 && pos <= limit && b.get(pos - 1) == '\r') ? pos - 1 : pos;
+            if (pos + 1 < limit && (b.get(pos + 1) == ' ' || b.get(pos + 1) == '\t')) {
+                pos++;
+                continue;
+            }
+            return end;
+        }
+    }
+
+    private static int skipNewline(ByteBuffer b, int pos, int limit) {
+        if (pos < limit && b.get(pos) == '\r') pos++;
+        if (pos < limit && b.get(pos) == '\n') pos++;
+        return pos;
+    }
+
+    private static boolean startsWith(ByteBuffer b, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (b.get(from + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Zeile beginnt mit dem Eigenschaftsnamen, gefolgt von ':' oder ';'.
+     */
+    private static boolean isProperty(ByteBuffer b, int from, int to, byte[] name) {
+        if (!startsWith(b, from, to, name) || to - from == name.length) return false;
+        byte next = b.get(from + name.length);
+        return next == ':' || next == ';';
+    }
+
+    /**
+     * Position nach dem ersten ':' außerhalb von Anführungszeichen (Parameterwerte dürfen ':' enthalten).
+     */
+    private static int valueStart(ByteBuffer b, int from, int to) {
+        boolean quoted = false;
+        for (int i = from; i < to; i++) {
+            byte c = b.get(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) return i + 1;
+        }
+        return -1;
+    }
+
+    // -----------------------------
+    // WERTE
+    // -----------------------------
+
+    /**
+     * Liest "yyyyMMdd" oder "yyyyMMdd'T'HHmmss['Z']" als Epoch-Sekunden.
+     * @return Zeitpunkt oder {@link #NONE}, wenn der Wert nicht lesbar ist
+     */
+    private static long dateTime(ByteBuffer b, int lineStart, int from, int to) {
+        int length = to - from;
+        if (length < 8) return NONE;
+        int year = digits(b, from, 4);
+        int month = digits(b, from + 4, 2);
+        int day = digits(b, from + 6, 2);
+        int hour = 0, minute = 0, second = 0;
+        boolean utc = false;
+        if (length >= 15 && b.get(from + 8) == 'T') {
+            hour = digits(b, from + 9, 2);
+            minute = digits(b, from + 11, 2);
+            second = digits(b, from + 13, 2);
+            utc = length >= 16 && b.get(from + 15) == 'Z';
+        }
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) return NONE;
+
+        try {
+            LocalDateTime time = LocalDateTime.of(year, month, day, hour, minute, second);
+            if (utc) return time.toEpochSecond(ZoneOffset.UTC);
+            return time.atZone(zone(b, lineStart, from - 1)).toEpochSecond();
+        } catch (DateTimeException e) {
+            return NONE;
+        }
+    }
+
+    private static int digits(ByteBuffer b, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = b.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Zeitzone aus dem TZID-Parameter, sonst (bzw. bei unbekannter Zone) die Systemzeitzone.
+     */
+    private static ZoneId zone(ByteBuffer b, int from, int to) {
+        for (int i = from; i + TZID.length <= to; i++) {
+            if (!startsWith(b, i, to, TZID)) continue;
+            int valueFrom = i + TZID.length;
+            int valueTo = valueFrom;
+            while (valueTo < to && b.get(valueTo) != ';') valueTo++;
+            String id = new String(bytes(b, valueFrom, valueTo), StandardCharsets.UTF_8).replace("\"", "");
+            try {
+                return ZoneId.of(id);
+            } catch (DateTimeException e) {
+                break;
+            }
+        }
+        return ZoneId.systemDefault();
+    }
+
+    /**
+     * Entfaltet und entschlüsselt einen Textwert (\\, \, \; \n).
+     */
+    private static String text(ByteBuffer b, int from, int to) {
+        byte[] raw = new byte[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            byte c = b.get(i);
+            if (c == '\r' || c == '\n') {
+                // Faltung: Zeilenumbruch plus ein Leerzeichen/Tab entfallen
+                if (c == '\r' && i + 1 < to && b.get(i + 1) == '\n') i++;
+                if (i + 1 < to && (b.get(i + 1) == ' ' || b.get(i + 1) == '\t')) i++;
+                continue;
+            }
+            if (c == '\\' && i + 1 < to) {
+                byte next = b.get(i + 1);
+                if (next == 'n' || next == 'N') {
+                    raw[n++] = '\n';
+                    i++;
+                    continue;
+                }
+                if (next == '\\' || next == ',' || next == ';') {
+                    raw[n++] = next;
+                    i++;
+                    continue;
+                }
+            }
+            raw[n++] = c;
+        }
+        return new String(raw, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer b, int from, int to) {
+        byte[] out = new byte[to - from];
+        for (int i = 0; i < out.length; i++) out[i] = b.get(from + i);
+        return out;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,96 @@
+package de.campuspark.service;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.logic.SpotTransitionListener;
+
+/**
+ * Gemeinsame Grundlage von {@link OccupancyForecaster} und {@link OccupancyAggregator}:
+ * Spots, freie, reservierte und belegte Plätze pro Lane aus den Spot-Wechseln sowie der Start
+ * als Listener mit periodischer Veröffentlichung.
+ * Die Arrays wachsen wie im {@link de.campuspark.logic.SpotStore} mit der höchsten gemeldeten
+ * Lane; Nutzer mit eigenen Lane-Arrays vergrößern diese über {@link #lanes()} mit.
+ * Nicht thread-safe, die Nutzer zählen unter ihrem eigenen Lock.
+ */
+final class LaneCounters {
+
+    private int[] spots = new int[0];
+    private int[] free = new int[0];
+    private int[] reserved = new int[0];
+    private int[] occupied = new int[0];
+
+    /**
+     * Meldet den Listener am Allocator an und startet die Veröffentlichung in festem Takt
+     * auf einem eigenen Daemon-Thread.
+     */
+    static void start(String threadName, SpotTransitionListener listener, Runnable publish, long intervalSeconds) {
+        SpotAllocator.addTransitionListener(listener);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(publish, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Anzahl der Lanes mit Platz in den Arrays; alle bekannten Lanes liegen darunter.
+     */
+    int lanes() {
+        return spots.length;
+    }
+
+    /**
+     * Vergrößert die Arrays, sodass die Lane hineinpasst.
+     * @return true, wenn die Arrays gewachsen sind
+     */
+    boolean ensureLane(int lane) {
+        if (lane < spots.length) return false;
+        spots = Arrays.copyOf(spots, lane + 1);
+        free = Arrays.copyOf(free, lane + 1);
+        reserved = Arrays.copyOf(reserved, lane + 1);
+        occupied = Arrays.copyOf(occupied, lane + 1);
+        return true;
+    }
+
+    /**
+     * Übernimmt einen Wechsel, die Lane muss per {@link #ensureLane} angelegt sein.
+     */
+    void apply(SpotTransition t) {
+        int lane = t.lane();
+        if (t.from() == null) spots[lane]++;
+        else count(lane, t.from(), -1);
+        count(lane, t.to(), +1);
+    }
+
+    int spots(int lane) {
+        return spots[lane];
+    }
+
+    int free(int lane) {
+        return free[lane];
+    }
+
+    int reserved(int lane) {
+        return reserved[lane];
+    }
+
+    int occupied(int lane) {
+        return occupied[lane];
+    }
+
+    private void count(int lane, SpotInfo.State state, int delta) {
+        switch (state) {
+            case free -> free[lane] += delta;
+            case reserved -> reserved[lane] += delta;
+            case occupied -> occupied[lane] += delta;
+            case unavailable -> { } // zählt nur in spots
+        }
+    }
+}
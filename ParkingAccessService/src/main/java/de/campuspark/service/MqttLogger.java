@@ -2,20 +2,13 @@ package de.campuspark.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.campuspark.model.LogEvent;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
 import java.nio.charset.StandardCharsets;
 
 public class MqttLogger {
 
-    private static MqttClient client;
     private static final String TOPIC = "parking/logs";
     private static final ObjectMapper mapper = new ObjectMapper();
 
-    public static void setMqttClient(MqttClient mqttClient) {
-        client = mqttClient;
-    }
-
     public static void info(String source, String message, String spotId) {
         publish("INFO", source, message, spotId);
     }
@@ -29,7 +22,7 @@ public class MqttLogger {
     }
 
     private static void publish(String level, String source, String msg, String spotId) {
-        if (client == null || !client.isConnected()) {
+        if (!MqttPublisher.isConnected()) {
             // Fallback, falls MQTT down ist
             System.out.println("[" + level + "] " + msg); 
             return;
@@ -45,10 +38,9 @@ public class MqttLogger {
             );
             
             String json = mapper.writeValueAsString(event);
-            MqttMessage mqttMessage = new MqttMessage(json.getBytes(StandardCharsets.UTF_8));
-            mqttMessage.setQos(0);
-            
-            client.publish(TOPIC, mqttMessage);
+
+            // Niedrigste Priorität: Logs dürfen Steuerbefehle nie verzögern
+            MqttPublisher.publish(TOPIC, json.getBytes(StandardCharsets.UTF_8), 0, false, MqttPublisher.Priority.TELEMETRY);
             
         } catch (Exception e) {
             e.printStackTrace();
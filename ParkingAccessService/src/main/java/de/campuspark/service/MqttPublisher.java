@@ -0,0 +1,295 @@
+package de.campuspark.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+import de.campuspark.util.PublishJournal;
+
+/**
+ * Nicht-blockierender Versand aller ausgehenden MQTT-Nachrichten über einen {@link IMqttAsyncClient}.
+ * Aufrufer reihen nur ein und kehren sofort zurück; ein Versand-Thread übergibt die Nachrichten
+ * nach Priorität an den Client:
+ * <ol>
+ *   <li>{@link Priority#CONTROL}: Schrankenbefehle und Zuweisungen</li>
+ *   <li>{@link Priority#STATE}: Spot-Zustände, Zähler, Statistiken, Benachrichtigungen</li>
+ *   <li>{@link Priority#TELEMETRY}: Logs und Metriken</li>
+ * </ol>
+ * Das In-Flight-Fenster (unbestätigte Nachrichten beim Broker) ist gestaffelt: Telemetrie darf
+ * höchstens die Hälfte, Zustände drei Viertel belegen, der Rest bleibt Steuerbefehlen vorbehalten.
+ * So warten Schrankenbefehle nie hinter Log-Verkehr. Steuerbefehle werden bei Fehlern erneut
+ * versucht; Schrankenbefehle liegen bis zur Bestätigung zusätzlich im {@link PublishJournal}
+ * und werden nach einem Neustart nachgesendet, sofern sie noch aktuell sind.
+ * Die beiden unteren Warteschlangen sind begrenzt. Bei Überlauf verwirft die Zustands-Warteschlange
+ * die älteste Nachricht, zu deren Topic bereits eine neuere wartet (pro Topic bleibt die neueste
+ * erhalten), und nur wenn es keine solche gibt die älteste überhaupt; Telemetrie verwirft immer
+ * die älteste Nachricht.
+ */
+public class MqttPublisher {
+
+    public enum Priority { CONTROL, STATE, TELEMETRY }
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long IDLE_WAIT_MS = 100;
+
+    /** Eingereihte Nachricht. journalId < 0: nicht im Journal. */
+    private static final class Outgoing {
+        final String topic;
+        final MqttMessage message;
+        final Priority priority;
+        final long journalId;
+        int attempts;
+
+        Outgoing(String topic, MqttMessage message, Priority priority, long journalId) {
+            this.topic = topic;
+            this.message = message;
+            this.priority = priority;
+            this.journalId = journalId;
+        }
+    }
+
+    // Alle Warteschlangen und der In-Flight-Zähler sind durch lock geschützt
+    private static final Object lock = new Object();
+    private static final EnumMap<Priority, ArrayDeque<Outgoing>> queues = new EnumMap<>(Priority.class);
+    static {
+        for (Priority priority : Priority.values()) queues.put(priority, new ArrayDeque<>());
+    }
+    /** Jüngste eingereihte Zustands-Nachricht pro Topic. */
+    private static final Map<String, Outgoing> newestState = new HashMap<>();
+    /** Eingereihte Zustands-Nachrichten, zu deren Topic schon eine neuere wartet. */
+    private static int supersededState;
+    private static int inFlight;
+
+    private static IMqttAsyncClient client;
+    private static PublishJournal journal;
+    private static Thread worker;
+
+    private static final IMqttActionListener listener = new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken token) {
+            completed((Outgoing) token.getUserContext(), null);
+        }
+
+        @Override
+        public void onFailure(IMqttToken token, Throwable exception) {
+            completed((Outgoing) token.getUserContext(), exception);
+        }
+    };
+
+    /**
+     * Startet den Versand-Thread (idempotent) und sendet offene Schrankenbefehle aus dem Journal nach.
+     * @param journalFile Journal für Schrankenbefehle oder null (ohne Persistenz)
+     */
+    public static synchronized void start(IMqttAsyncClient mqttClient, Path journalFile) {
+        client = mqttClient;
+        if (worker != null) return;
+
+        if (journalFile != null) {
+            try {
+                journal = PublishJournal.open(journalFile);
+                recover(journal);
+            } catch (IOException e) {
+                MqttLogger.error("MqttPublisher", "Cannot open publish journal " + journalFile + ": " + e.getMessage());
+            }
+        }
+
+        worker = new Thread(MqttPublisher::run, "mqtt-publisher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static boolean isConnected() {
+        IMqttAsyncClient current = client;
+        return current != null && current.isConnected();
+    }
+
+    /**
+     * Reiht eine Nachricht ein (kehrt sofort zurück).
+     */
+    public static void publish(String topic, byte[] payload, int qos, boolean retained, Priority priority) {
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(qos);
+        message.setRetained(retained);
+        enqueue(new Outgoing(topic, message, priority, -1));
+    }
+
+    /**
+     * Reiht einen Schrankenbefehl ein, der bis zur Broker-Bestätigung im Journal liegt.
+     */
+    public static void publishDurable(String topic, byte[] payload, int qos) {
+        long journalId = -1;
+        PublishJournal current = journal;
+        if (current != null) {
+            try {
+                journalId = current.put(topic, qos, payload);
+            } catch (IOException e) {
+                MqttLogger.error("MqttPublisher", "Could not journal command for " + topic + ": " + e.getMessage());
+            }
+        }
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(qos);
+        enqueue(new Outgoing(topic, message, Priority.CONTROL, journalId));
+    }
+
+    /**
+     * Anzahl eingereihter plus noch unbestätigter Nachrichten.
+     */
+    public static int pending() {
+        synchronized (lock) {
+            int count = inFlight;
+            for (ArrayDeque<Outgoing> queue : queues.values()) count += queue.size();
+            return count;
+        }
+    }
+
+    private static void enqueue(Outgoing out) {
+        synchronized (lock) {
+            ArrayDeque<Outgoing> queue = queues.get(out.priority);
+            if (out.priority == Priority.STATE && newestState.put(out.topic, out) != null) supersededState++;
+            if (out.priority != Priority.CONTROL && queue.size() >= capacity(out.priority)) {
+                evict(queue, out.priority);
+            }
+            queue.addLast(out);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Schafft Platz in einer vollen Warteschlange (muss unter lock laufen).
+     */
+    private static void evict(ArrayDeque<Outgoing> queue, Priority priority) {
+        if (priority == Priority.STATE && supersededState > 0) {
+            for (Iterator<Outgoing> it = queue.iterator(); it.hasNext(); ) {
+                Outgoing queued = it.next();
+                if (newestState.get(queued.topic) != queued) {
+                    it.remove();
+                    supersededState--;
+                    Metrics.increment("mqtt.coalesced");
+                    return;
+                }
+            }
+        }
+        Outgoing dropped = queue.pollFirst();
+        if (dropped != null && priority == Priority.STATE) dequeuedState(dropped);
+        Metrics.increment("mqtt.dropped");
+    }
+
+    // Muss unter lock laufen
+    private static void dequeuedState(Outgoing out) {
+        if (!newestState.remove(out.topic, out)) supersededState--;
+    }
+
+    private static void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Outgoing next;
+            try {
+                next = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                next.attempts++;
+                client.publish(next.topic, next.message, next, listener);
+            } catch (Exception e) {
+                completed(next, e);
+            }
+        }
+    }
+
+    /**
+     * Wartet auf die nächste Nachricht, deren Priorität im aktuellen In-Flight-Fenster Platz hat.
+     */
+    private static Outgoing take() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                if (isConnected()) {
+                    for (Priority priority : Priority.values()) {
+                        if (inFlight >= window(priority)) break; // niedrigere Prioritäten haben kleinere Fenster
+                        Outgoing next = queues.get(priority).pollFirst();
+                        if (next != null) {
+                            if (priority == Priority.STATE) dequeuedState(next);
+                            inFlight++;
+                            return next;
+                        }
+                    }
+                }
+                lock.wait(IDLE_WAIT_MS);
+            }
+        }
+    }
+
+    private static void completed(Outgoing out, Throwable error) {
+        boolean retry = error != null && out.priority == Priority.CONTROL && out.attempts < MAX_ATTEMPTS;
+        synchronized (lock) {
+            inFlight--;
+            // Erneuter Versuch vorne in der Warteschlange; gesendet wird erst wieder bei Verbindung
+            if (retry) queues.get(Priority.CONTROL).addFirst(out);
+            lock.notifyAll();
+        }
+
+        if (error == null) {
+            Metrics.increment("mqtt.published");
+        } else if (retry) {
+            Metrics.increment("mqtt.retried");
+            return;
+        } else {
+            Metrics.increment("mqtt.failed");
+            // Kein MqttLogger für Telemetrie-Fehler, sonst erzeugt jeder Fehler weitere Telemetrie
+            if (out.priority != Priority.TELEMETRY) {
+                MqttLogger.error("MqttPublisher", "Giving up on message to " + out.topic + ": " + error.getMessage());
+            }
+        }
+
+        if (out.journalId >= 0) {
+            try {
+                journal.done(out.journalId);
+            } catch (IOException e) {
+                MqttLogger.error("MqttPublisher", "Could not update publish journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reiht offene Schrankenbefehle erneut ein; zu alte werden verworfen, damit sich
+     * eine Schranke nach einem Ausfall nicht für ein längst abgefahrenes Auto öffnet.
+     */
+    private static void recover(PublishJournal journal) throws IOException {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(Config.BARRIER_REPLAY_MAX_AGE_SECONDS);
+        for (PublishJournal.Entry entry : journal.pending()) {
+            if (entry.timeMillis() < cutoff) {
+                MqttLogger.warn("MqttPublisher", "Discarding stale command to " + entry.topic(), null);
+                journal.done(entry.id());
+                continue;
+            }
+            MqttMessage message = new MqttMessage(entry.payload());
+            message.setQos(entry.qos());
+            enqueue(new Outgoing(entry.topic(), message, Priority.CONTROL, entry.id()));
+            Metrics.increment("mqtt.recovered");
+        }
+    }
+
+    private static int window(Priority priority) {
+        int max = Config.MQTT_MAX_INFLIGHT;
+        return switch (priority) {
+            case CONTROL -> max;
+            case STATE -> Math.max(1, max * 3 / 4);
+            case TELEMETRY -> Math.max(1, max / 2);
+        };
+    }
+
+    private static int capacity(Priority priority) {
+        return priority == Priority.TELEMETRY ? Config.MQTT_TELEMETRY_QUEUE_CAPACITY : Config.MQTT_STATE_QUEUE_CAPACITY;
+    }
+}
@@ -0,0 +1,143 @@
+package de.campuspark.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.campuspark.model.NotificationEvent;
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+
+/**
+ * Entkoppelter Versand von Benachrichtigungen an den Notification-Service (SMS).
+ * Benachrichtigungen werden eingereiht und von einem eigenen Thread gebündelt publiziert:
+ * <ul>
+ *   <li>Gleiche (Kennzeichen, Nachrichtentyp) innerhalb eines Batch-Fensters werden zu einer
+ *       Nachricht zusammengefasst ("coalesced").</li>
+ *   <li>Wurde dieselbe Kombination innerhalb der Cooldown-Zeit bereits versendet, wird sie
+ *       verworfen ("suppressed"), damit wiederholte Umparkanfragen keine SMS-Flut auslösen.</li>
+ * </ul>
+ * Die Zähler stehen in {@link Metrics} unter "notifications.*".
+ */
+public class NotificationDispatcher {
+
+    private static final int MAX_BATCH = 100;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final BlockingQueue<NotificationEvent> queue = new LinkedBlockingQueue<>();
+
+    // (Kennzeichen|Typ) -> Zeitpunkt des letzten Versands, in Versandreihenfolge
+    private static final Map<String, Long> lastSent = new LinkedHashMap<>();
+
+    private static Thread worker;
+
+    /**
+     * Startet den Versand-Thread (idempotent).
+     */
+    public static synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(NotificationDispatcher::run, "notification-dispatch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Reiht eine Benachrichtigung zum Versand ein (kehrt sofort zurück).
+     */
+    public static void submit(NotificationEvent notification) {
+        Metrics.increment("notifications.submitted");
+        queue.offer(notification);
+    }
+
+    private static void run() {
+        long window = TimeUnit.MILLISECONDS.toNanos(Config.NOTIFICATION_BATCH_WINDOW_MS);
+        List<NotificationEvent> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + window;
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - System.nanoTime();
+                    NotificationEvent next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                MqttLogger.error("NotificationDispatcher", "Unexpected error while dispatching: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static void dispatch(List<NotificationEvent> batch) {
+        // Innerhalb des Batches zusammenfassen, der jüngste Text gewinnt
+        Map<String, NotificationEvent> coalesced = new LinkedHashMap<>();
+        for (NotificationEvent notification : batch) {
+            if (coalesced.put(key(notification), notification) != null) {
+                Metrics.increment("notifications.coalesced");
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long cooldown = TimeUnit.SECONDS.toMillis(Config.NOTIFICATION_COOLDOWN_SECONDS);
+        expire(now - cooldown);
+
+        for (Map.Entry<String, NotificationEvent> entry : coalesced.entrySet()) {
+            if (lastSent.containsKey(entry.getKey())) {
+                Metrics.increment("notifications.suppressed");
+                MqttLogger.info("NotificationDispatcher", "Suppressed " + entry.getValue().getMessageType()
+                        + " for " + entry.getValue().getPlate() + " (cooldown)", null);
+                continue;
+            }
+            if (publish(entry.getValue())) {
+                lastSent.put(entry.getKey(), now);
+                Metrics.increment("notifications.sent");
+            } else {
+                Metrics.increment("notifications.failed");
+            }
+        }
+    }
+
+    private static boolean publish(NotificationEvent notification) {
+        try {
+            if (!MqttPublisher.isConnected()) {
+                MqttLogger.error("NotificationDispatcher", "Not connected, dropping notification for " + notification.getPlate());
+                return false;
+            }
+            String json = mapper.writeValueAsString(notification);
+            MqttPublisher.publish(Config.TOPIC_NOTIFICATION, json.getBytes(StandardCharsets.UTF_8), 1, false,
+                    MqttPublisher.Priority.STATE);
+            return true;
+        } catch (Exception e) {
+            MqttLogger.error("NotificationDispatcher", "Could not publish notification: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Einträge liegen in Versandreihenfolge, abgelaufene stehen also immer vorne
+    private static void expire(long cutoff) {
+        Iterator<Long> it = lastSent.values().iterator();
+        while (it.hasNext() && it.next() < cutoff) {
+            it.remove();
+        }
+    }
+
+    private static String key(NotificationEvent notification) {
+        return notification.getPlate() + '|' + notification.getMessageType();
+    }
+}
@@ -0,0 +1,234 @@
+package de.campuspark.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotStore;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.model.LaneStatsMessage;
+import de.campuspark.util.Config;
+
+/**
+ * Inkrementelle Aggregation der Belegung pro Lane.
+ * Aus den Spot-Wechseln werden freie/reservierte/belegte Plätze, Ankünfte, Abfahrten,
+ * mittlere Parkdauer und Umschlag (Abfahrten pro Spot) mitgeführt, jeweils über ein
+ * gleitendes Fenster (Ring aus 1-Minuten-Buckets) und ein festes, zuletzt abgeschlossenes Fenster.
+ * Jeder Wechsel kostet O(1); veröffentlicht wird in festem Takt als kleine retained Nachricht
+ * pro Lane plus eine Gesamtsicht, sodass Dashboards nicht mehr alle Spot-Topics auswerten müssen.
+ * Die Arrays wachsen mit der höchsten gemeldeten Lane.
+ */
+public class OccupancyAggregator {
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Object lock = new Object();
+
+    private static final int slidingMinutes = (int) Config.AGGREGATE_SLIDING_MINUTES;
+    private static final long tumblingMillis = TimeUnit.MINUTES.toMillis(Config.AGGREGATE_TUMBLING_MINUTES);
+
+    // Aktueller Zustand pro Lane
+    private static final LaneCounters counters = new LaneCounters();
+
+    // Gleitendes Fenster: [lane * slidingMinutes + minute % slidingMinutes]
+    private static int[] slidingArrivals = new int[0];
+    private static int[] slidingDepartures = new int[0];
+    private static long[] slidingDwellSeconds = new long[0];
+    private static long currentMinute = -1;
+
+    // Festes Fenster: laufende Zähler und Ergebnis des zuletzt abgeschlossenen Fensters
+    private static int[] tumblingArrivals = new int[0];
+    private static int[] tumblingDepartures = new int[0];
+    private static long[] tumblingDwellSeconds = new long[0];
+    private static int[] closedArrivals = new int[0];
+    private static int[] closedDepartures = new int[0];
+    private static long[] closedDwellSeconds = new long[0];
+    private static long tumblingStart = -1;
+
+    // Zuletzt publizierte Nutzdaten pro Topic, unveränderte Werte werden nicht erneut gesendet
+    private static final Map<String, String> lastPublished = new HashMap<>();
+
+    /**
+     * Meldet den Aggregator am Allocator an und startet die periodische Veröffentlichung.
+     */
+    public static void start() {
+        LaneCounters.start("occupancy-aggregate", OccupancyAggregator::onTransition, OccupancyAggregator::publish,
+                Config.AGGREGATE_INTERVAL_SECONDS);
+    }
+
+    /**
+     * Verarbeitet einen Spot-Wechsel in O(1) (amortisiert, neue Lanes vergrößern die Arrays).
+     */
+    public static void onTransition(SpotTransition t) {
+        int lane = t.lane();
+        if (lane < 0) return;
+
+        synchronized (lock) {
+            advanceTo(t.timeMillis());
+            if (counters.ensureLane(lane)) growLanes(counters.lanes());
+            counters.apply(t);
+
+            int bucket = lane * slidingMinutes + (int) (currentMinute % slidingMinutes);
+            if (t.to() == SpotInfo.State.occupied && t.from() != SpotInfo.State.occupied) {
+                slidingArrivals[bucket]++;
+                tumblingArrivals[lane]++;
+            }
+            if (t.from() == SpotInfo.State.occupied && t.to() == SpotInfo.State.free) {
+                long dwell = t.arrival() != SpotStore.NO_TIME ? Math.max(0, t.timeMillis() / 1000 - t.arrival()) : 0;
+                slidingDepartures[bucket]++;
+                slidingDwellSeconds[bucket] += dwell;
+                tumblingDepartures[lane]++;
+                tumblingDwellSeconds[lane] += dwell;
+            }
+        }
+    }
+
+    /**
+     * Momentaufnahme aller bekannten Lanes; Index 0 ist die Gesamtsicht (lane = -1).
+     */
+    public static LaneStatsMessage[] snapshot(long now) {
+        synchronized (lock) {
+            advanceTo(now);
+
+            int lanes = 0;
+            for (int lane = 0; lane < counters.lanes(); lane++) {
+                if (counters.spots(lane) > 0) lanes++;
+            }
+            LaneStatsMessage[] result = new LaneStatsMessage[lanes + 1];
+            long slidingStart = (currentMinute - slidingMinutes + 1) * MINUTE_MILLIS;
+            int tumblingMinutes = (int) TimeUnit.MILLISECONDS.toMinutes(tumblingMillis);
+
+            int spots = 0, free = 0, reserved = 0, occupied = 0;
+            int sArrivals = 0, sDepartures = 0, tArrivals = 0, tDepartures = 0;
+            long sDwell = 0, tDwell = 0;
+            int next = 1;
+            for (int lane = 0; lane < counters.lanes(); lane++) {
+                if (counters.spots(lane) == 0) continue;
+
+                int arrivals = 0, departures = 0;
+                long dwell = 0;
+                for (int b = lane * slidingMinutes, end = b + slidingMinutes; b < end; b++) {
+                    arrivals += slidingArrivals[b];
+                    departures += slidingDepartures[b];
+                    dwell += slidingDwellSeconds[b];
+                }
+
+                result[next++] = new LaneStatsMessage(lane, now,
+                        counters.free(lane), counters.reserved(lane), counters.occupied(lane),
+                        window(slidingStart, slidingMinutes, arrivals, departures, dwell, counters.spots(lane)),
+                        window(tumblingStart - tumblingMillis, tumblingMinutes, closedArrivals[lane],
+                                closedDepartures[lane], closedDwellSeconds[lane], counters.spots(lane)));
+
+                spots += counters.spots(lane);
+                free += counters.free(lane);
+                reserved += counters.reserved(lane);
+                occupied += counters.occupied(lane);
+                sArrivals += arrivals;
+                sDepartures += departures;
+                sDwell += dwell;
+                tArrivals += closedArrivals[lane];
+                tDepartures += closedDepartures[lane];
+                tDwell += closedDwellSeconds[lane];
+            }
+
+            result[0] = new LaneStatsMessage(-1, now, free, reserved, occupied,
+                    window(slidingStart, slidingMinutes, sArrivals, sDepartures, sDwell, spots),
+                    window(tumblingStart - tumblingMillis, tumblingMinutes, tArrivals, tDepartures, tDwell, spots));
+            return result;
+        }
+    }
+
+    private static void publish() {
+        try {
+            LaneStatsMessage[] stats = snapshot(System.currentTimeMillis());
+            if (!MqttPublisher.isConnected()) return;
+
+            for (LaneStatsMessage lane : stats) {
+                String topic = Config.TOPIC_LANE_STATS + (lane.lane() < 0 ? "all" : String.valueOf(lane.lane()));
+                // Zeitstempel nicht vergleichen, sonst wäre jede Nachricht "neu"
+                String key = mapper.writeValueAsString(withoutTimestamp(lane));
+                if (key.equals(lastPublished.get(topic))) continue;
+
+                MqttPublisher.publish(topic, mapper.writeValueAsString(lane).getBytes(StandardCharsets.UTF_8),
+                        0, true, MqttPublisher.Priority.STATE);
+                lastPublished.put(topic, key);
+            }
+        } catch (Exception e) {
+            MqttLogger.error("OccupancyAggregator", "Could not publish lane stats: " + e.getMessage());
+        }
+    }
+
+    private static LaneStatsMessage withoutTimestamp(LaneStatsMessage m) {
+        return new LaneStatsMessage(m.lane(), 0, m.free(), m.reserved(), m.occupied(), m.sliding(), m.tumbling());
+    }
+
+    private static LaneStatsMessage.WindowStats window(long start, int minutes, int arrivals, int departures,
+                                                       long dwellSeconds, int spots) {
+        double avgDwell = departures > 0 ? dwellSeconds / 60.0 / departures : 0.0;
+        double turnover = spots > 0 ? departures / (double) spots : 0.0;
+        return new LaneStatsMessage.WindowStats(start, minutes, arrivals, departures,
+                Math.round(avgDwell * 10) / 10.0, Math.round(turnover * 100) / 100.0);
+    }
+
+    /**
+     * Vergrößert die Fenster-Arrays auf die Lane-Anzahl (muss unter lock laufen).
+     * Das gleitende Fenster liegt Lane für Lane hintereinander, bestehende Buckets bleiben erhalten.
+     */
+    private static void growLanes(int lanes) {
+        slidingArrivals = Arrays.copyOf(slidingArrivals, lanes * slidingMinutes);
+        slidingDepartures = Arrays.copyOf(slidingDepartures, lanes * slidingMinutes);
+        slidingDwellSeconds = Arrays.copyOf(slidingDwellSeconds, lanes * slidingMinutes);
+        tumblingArrivals = Arrays.copyOf(tumblingArrivals, lanes);
+        tumblingDepartures = Arrays.copyOf(tumblingDepartures, lanes);
+        tumblingDwellSeconds = Arrays.copyOf(tumblingDwellSeconds, lanes);
+        closedArrivals = Arrays.copyOf(closedArrivals, lanes);
+        closedDepartures = Arrays.copyOf(closedDepartures, lanes);
+        closedDwellSeconds = Arrays.copyOf(closedDwellSeconds, lanes);
+    }
+
+    /**
+     * Rückt beide Fenster bis zum Zeitpunkt vor: abgelaufene Minuten-Buckets werden geleert,
+     * ein abgelaufenes festes Fenster wird als "zuletzt abgeschlossen" übernommen.
+     */
+    private static void advanceTo(long timeMillis) {
+        long minute = timeMillis / MINUTE_MILLIS;
+        if (currentMinute < 0) {
+            currentMinute = minute;
+        } else if (minute > currentMinute) {
+            long first = Math.max(currentMinute + 1, minute - slidingMinutes + 1);
+            for (long m = first; m <= minute; m++) {
+                int offset = (int) (m % slidingMinutes);
+                for (int lane = 0; lane < counters.lanes(); lane++) {
+                    int b = lane * slidingMinutes + offset;
+                    slidingArrivals[b] = 0;
+                    slidingDepartures[b] = 0;
+                    slidingDwellSeconds[b] = 0;
+                }
+            }
+            currentMinute = minute;
+        }
+
+        long windowStart = timeMillis - timeMillis % tumblingMillis;
+        if (tumblingStart < 0) {
+            tumblingStart = windowStart;
+        } else if (windowStart > tumblingStart) {
+            // Lag dazwischen ein leeres Fenster, ist das zuletzt abgeschlossene leer
+            boolean adjacent = windowStart - tumblingStart == tumblingMillis;
+            for (int lane = 0; lane < counters.lanes(); lane++) {
+                closedArrivals[lane] = adjacent ? tumblingArrivals[lane] : 0;
+                closedDepartures[lane] = adjacent ? tumblingDepartures[lane] : 0;
+                closedDwellSeconds[lane] = adjacent ? tumblingDwellSeconds[lane] : 0;
+            }
+            Arrays.fill(tumblingArrivals, 0);
+            Arrays.fill(tumblingDepartures, 0);
+            Arrays.fill(tumblingDwellSeconds, 0);
+            tumblingStart = windowStart;
+        }
+    }
+}
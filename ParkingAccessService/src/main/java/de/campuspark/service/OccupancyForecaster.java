@@ -0,0 +1,190 @@
+package de.campuspark.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.model.ForecastMessage;
+import de.campuspark.util.Config;
+
+/**
+ * Inkrementelle Prognose der freien Parkplätze ("frei in 30 Minuten").
+ * Pro Lane, Wochentag und 15-Minuten-Slot werden gleitende Ankunfts- und Abfahrtsraten
+ * (exponentiell geglättet) in festen primitiven Arrays gehalten. Jeder Spot-Wechsel kostet
+ * O(1): er erhöht nur einen Zähler des laufenden Slots, der beim Slot-Wechsel in die Raten
+ * eingerechnet wird. Für Abfahrten werden zusätzlich die kalenderbasierten Abfahrtszeiten
+ * der geparkten Autos herangezogen. Die Arrays wachsen mit der höchsten gemeldeten Lane.
+ */
+public class OccupancyForecaster {
+
+    private static final int SLOT_MINUTES = 15;
+    private static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(SLOT_MINUTES);
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final int SLOTS_PER_WEEK = 7 * SLOTS_PER_DAY;
+
+    /** Glättungsfaktor: Gewicht der jüngsten Woche gegenüber der Historie. */
+    private static final double ALPHA = 0.3;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Object lock = new Object();
+
+    // [lane * SLOTS_PER_WEEK + wochenSlot] -> erwartete Ereignisse pro Slot
+    private static double[] arrivalRate = new double[0];
+    private static double[] departureRate = new double[0];
+
+    // Zähler des laufenden Slots
+    private static int[] slotArrivals = new int[0];
+    private static int[] slotDepartures = new int[0];
+    private static long currentSlot = -1;
+
+    // Aktueller Zustand pro Lane
+    private static final LaneCounters counters = new LaneCounters();
+
+    /**
+     * Meldet den Forecaster am Allocator an und startet die periodische Veröffentlichung.
+     */
+    public static void start() {
+        LaneCounters.start("occupancy-forecast", OccupancyForecaster::onTransition, OccupancyForecaster::publish,
+                Config.FORECAST_INTERVAL_SECONDS);
+    }
+
+    /**
+     * Verarbeitet einen Spot-Wechsel in O(1) (amortisiert, neue Lanes vergrößern die Arrays).
+     */
+    public static void onTransition(SpotTransition t) {
+        int lane = t.lane();
+        if (lane < 0) return;
+
+        synchronized (lock) {
+            advanceTo(t.timeMillis());
+            if (counters.ensureLane(lane)) {
+                int lanes = counters.lanes();
+                arrivalRate = Arrays.copyOf(arrivalRate, lanes * SLOTS_PER_WEEK);
+                departureRate = Arrays.copyOf(departureRate, lanes * SLOTS_PER_WEEK);
+                slotArrivals = Arrays.copyOf(slotArrivals, lanes);
+                slotDepartures = Arrays.copyOf(slotDepartures, lanes);
+            }
+            counters.apply(t);
+
+            if (t.to() == SpotInfo.State.occupied) slotArrivals[lane]++;
+            if (t.from() == SpotInfo.State.occupied && t.to() == SpotInfo.State.free) slotDepartures[lane]++;
+        }
+    }
+
+    /**
+     * Berechnet die Prognose für alle bekannten Lanes.
+     */
+    public static ForecastMessage forecast(Instant now) {
+        Duration horizon = Duration.ofMinutes(Config.FORECAST_HORIZON_MINUTES);
+
+        // Kalenderbasierte Abfahrten zuerst (Allocator-Lock), erst danach eigener Lock
+        int knownLanes;
+        synchronized (lock) {
+            knownLanes = counters.lanes();
+        }
+        int[] calendarDepartures = new int[knownLanes];
+        for (int lane = 0; lane < knownLanes; lane++) {
+            calendarDepartures[lane] = SpotAllocator.countDeparturesBetween(lane, now, now.plus(horizon));
+        }
+
+        List<ForecastMessage.LaneForecast> lanes = new ArrayList<>();
+        int freeNow = 0;
+        int predictedFree = 0;
+        synchronized (lock) {
+            advanceTo(now.toEpochMilli());
+            for (int lane = 0; lane < counters.lanes(); lane++) {
+                if (counters.spots(lane) == 0) continue;
+
+                // Seit der Kalenderabfrage neu hinzugekommene Lanes zählen ohne Kalender
+                int calendar = lane < knownLanes ? calendarDepartures[lane] : 0;
+                double arrivals = expected(arrivalRate, lane, now, horizon);
+                double departures = Math.max(calendar, expected(departureRate, lane, now, horizon));
+                int free = counters.free(lane);
+                int predicted = (int) Math.round(free + departures - arrivals);
+                predicted = Math.max(0, Math.min(counters.spots(lane), predicted));
+
+                lanes.add(new ForecastMessage.LaneForecast(lane, free, arrivals, departures, predicted));
+                freeNow += free;
+                predictedFree += predicted;
+            }
+        }
+        return new ForecastMessage(now.toEpochMilli(), (int) horizon.toMinutes(), freeNow, predictedFree, lanes);
+    }
+
+    private static void publish() {
+        try {
+            ForecastMessage forecast = forecast(Instant.now());
+            if (!MqttPublisher.isConnected()) return;
+
+            MqttPublisher.publish(Config.TOPIC_FORECAST, mapper.writeValueAsString(forecast).getBytes(StandardCharsets.UTF_8),
+                    0, true, MqttPublisher.Priority.STATE);
+        } catch (Exception e) {
+            MqttLogger.error("OccupancyForecaster", "Could not publish forecast: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Summe der Raten über den Horizont, anteilig für angeschnittene Slots.
+     */
+    private static double expected(double[] rates, int lane, Instant from, Duration horizon) {
+        long start = from.toEpochMilli();
+        long end = start + horizon.toMillis();
+        double sum = 0.0;
+        for (long t = start; t < end; ) {
+            long slotEnd = (t / SLOT_MILLIS + 1) * SLOT_MILLIS;
+            long until = Math.min(slotEnd, end);
+            sum += rates[lane * SLOTS_PER_WEEK + weekSlot(t / SLOT_MILLIS)] * (until - t) / (double) SLOT_MILLIS;
+            t = until;
+        }
+        return sum;
+    }
+
+    /**
+     * Schließt alle Slots bis zum Zeitpunkt ab und rechnet deren Zähler in die Raten ein.
+     * Übersprungene Slots ohne Ereignisse zählen als 0 (höchstens eine Woche).
+     */
+    private static void advanceTo(long timeMillis) {
+        long slot = timeMillis / SLOT_MILLIS;
+        if (currentSlot < 0) {
+            currentSlot = slot;
+            return;
+        }
+        if (slot <= currentSlot) return;
+
+        // Bei sehr langen Pausen reicht eine Woche Nullen, ältere Slots würden sich nur wiederholen
+        long first = (slot - currentSlot > SLOTS_PER_WEEK) ? slot - SLOTS_PER_WEEK : currentSlot;
+        for (long s = first; s < slot; s++) {
+            boolean closing = (s == currentSlot);
+            int weekSlot = weekSlot(s);
+            for (int lane = 0; lane < counters.lanes(); lane++) {
+                if (counters.spots(lane) == 0) continue;
+                int i = lane * SLOTS_PER_WEEK + weekSlot;
+                arrivalRate[i] = ALPHA * (closing ? slotArrivals[lane] : 0) + (1 - ALPHA) * arrivalRate[i];
+                departureRate[i] = ALPHA * (closing ? slotDepartures[lane] : 0) + (1 - ALPHA) * departureRate[i];
+            }
+        }
+        Arrays.fill(slotArrivals, 0);
+        Arrays.fill(slotDepartures, 0);
+        currentSlot = slot;
+    }
+
+    /**
+     * Absoluter Slot (Epoch / 15 min) -> Slot innerhalb der Woche in lokaler Zeit.
+     */
+    private static int weekSlot(long absoluteSlot) {
+        ZonedDateTime time = Instant.ofEpochMilli(absoluteSlot * SLOT_MILLIS).atZone(ZoneId.systemDefault());
+        int day = time.getDayOfWeek().getValue() - 1;
+        int slotOfDay = (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+        return day * SLOTS_PER_DAY + slotOfDay;
+    }
+}
@@ -0,0 +1,301 @@
+package de.campuspark.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotStore;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.util.Config;
+
+/**
+ * Eingebetteter Zeitreihen-Speicher für Belegungswechsel.
+ * Jeder Spot-Wechsel wird als Datensatz fester Breite an ein tägliches Segment
+ * ("occupancy-YYYY-MM-DD.seg") angehängt, das per Memory-Mapping beschrieben wird.
+ * Zu Beginn jedes Segments wird der aktuelle Zustand aller belegten/reservierten Spots
+ * als Snapshot abgelegt, sodass jeder Tag ohne Vortage auswertbar ist.
+ *
+ * Segment-Layout: 16 Byte Header (Magic, Version, Satzlänge, Anzahl Sätze), danach Sätze à 48 Byte:
+ * <pre>
+ *  0 long  Zeitpunkt (Epoch-Millis)
+ *  8 int   Lane
+ * 12 int   Position
+ * 16 byte  vorheriger Zustand (-1 = neu)
+ * 17 byte  neuer Zustand
+ * 18 byte  Typ (0 = Wechsel, 1 = Snapshot)
+ * 19 byte  Länge Kennzeichen
+ * 20 long  Ankunft (Epoch-Sekunden)
+ * 28 long  geschätzte Abfahrt (Epoch-Sekunden)
+ * 36 12 Byte Kennzeichen (ASCII, ggf. gekürzt)
+ * </pre>
+ */
+public class OccupancyHistory {
+
+    private static final int MAGIC = 0x43505453; // "CPTS"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 48;
+    private static final int PLATE_BYTES = 12;
+    private static final int INITIAL_RECORDS = 16 * 1024;
+
+    private static final byte TYPE_TRANSITION = 0;
+    private static final byte TYPE_SNAPSHOT = 1;
+
+    /** Letzter aufgezeichneter Zustand eines Spots (Zeiten in Epoch-Sekunden oder {@link SpotStore#NO_TIME}). */
+    public record SpotRecord(int lane, int pos, SpotInfo.State state, String plate, long arrival, long departure) {}
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static File directory;
+
+    // Aktuelles Schreibsegment
+    private static LocalDate segmentDate;
+    private static RandomAccessFile segmentFile;
+    private static MappedByteBuffer segment;
+    private static long recordCount;
+
+    /**
+     * Öffnet das Verzeichnis und meldet den Speicher als Listener am Allocator an.
+     */
+    public static void start() {
+        directory = new File(Config.HISTORY_DIR);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            MqttLogger.error("OccupancyHistory", "Cannot create history directory " + directory.getAbsolutePath());
+            return;
+        }
+        SpotAllocator.addTransitionListener(OccupancyHistory::append);
+    }
+
+    /**
+     * Hängt einen Spot-Wechsel an das Segment des Tages an (O(1), ohne Systemaufruf).
+     */
+    public static synchronized void append(SpotTransition t) {
+        try {
+            LocalDate day = Instant.ofEpochMilli(t.timeMillis()).atZone(ZoneId.systemDefault()).toLocalDate();
+            if (!day.equals(segmentDate)) {
+                roll(day);
+            }
+            write(t.timeMillis(), t.lane(), t.pos(), t.from(), t.to(), TYPE_TRANSITION, t.plate(), t.arrival(), t.departure());
+        } catch (IOException e) {
+            MqttLogger.error("OccupancyHistory", "Could not append transition: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Letzter aufgezeichneter Zustand aller Spots aus dem Segment von heute, ersatzweise von
+     * gestern (Neustart nach Mitternacht). Liest nur und darf daher vor {@link #start()} und
+     * parallel zu anderen Startphasen laufen.
+     * @return Spots in der Reihenfolge ihres ersten Auftretens, leer ohne Segment
+     */
+    public static List<SpotRecord> recover() throws IOException {
+        LocalDate today = LocalDate.now();
+        File file = segmentFile(today);
+        if (!file.exists()) file = segmentFile(today.minusDays(1));
+        if (!file.exists()) return List.of();
+
+        Map<Long, SpotRecord> latest = new LinkedHashMap<>();
+        SpotInfo.State[] states = SpotInfo.State.values();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long count = validCount(buf);
+            byte[] plateBytes = new byte[PLATE_BYTES];
+            for (long r = 0; r < count; r++) {
+                int off = HEADER_SIZE + (int) (r * RECORD_SIZE);
+                int lane = buf.getInt(off + 8);
+                int pos = buf.getInt(off + 12);
+                byte state = buf.get(off + 17);
+                if (lane < 0 || pos < 0 || state < 0 || state >= states.length) continue;
+
+                int plateLength = Math.min(buf.get(off + 19), PLATE_BYTES);
+                buf.get(off + 36, plateBytes, 0, plateLength);
+                String plate = plateLength > 0 ? new String(plateBytes, 0, plateLength, StandardCharsets.US_ASCII) : null;
+                latest.put(((long) lane << 32) | pos, new SpotRecord(lane, pos, states[state], plate,
+                        buf.getLong(off + 20), buf.getLong(off + 28)));
+            }
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    /**
+     * Belegte Plätze pro Lane, jeweils am Ende jedes Zeitfensters im Bereich [from, to).
+     * @return [Fenster][Lane] -> Anzahl belegter Spots
+     */
+    public static int[][] occupancyPerLane(Instant from, Instant to, Duration bucket) throws IOException {
+        int buckets = (int) Math.max(0, (to.toEpochMilli() - from.toEpochMilli() + bucket.toMillis() - 1) / bucket.toMillis());
+        Map<Long, Byte> states = new HashMap<>();
+        int[] occupied = new int[0];
+        int[][] result = new int[buckets][];
+
+        long bucketEnd = from.toEpochMilli() + bucket.toMillis();
+        int nextBucket = 0;
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate firstDay = from.atZone(zone).toLocalDate();
+        LocalDate lastDay = to.atZone(zone).toLocalDate();
+
+        boolean continuous = false;
+        for (LocalDate day = firstDay; !day.isAfter(lastDay) && nextBucket < buckets; day = day.plusDays(1)) {
+            File file = segmentFile(day);
+            if (!file.exists()) {
+                continuous = false;
+                continue;
+            }
+
+            // Nach einer Lücke beginnt der Zustand neu mit dem Snapshot des Tages;
+            // bei lückenloser Folge setzt der Snapshot den Vortag nahtlos fort.
+            if (!continuous) {
+                states.clear();
+                Arrays.fill(occupied, 0);
+            }
+            continuous = true;
+
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long count = validCount(buf);
+                for (long r = 0; r < count; r++) {
+                    int off = HEADER_SIZE + (int) (r * RECORD_SIZE);
+                    long time = buf.getLong(off);
+                    if (time >= to.toEpochMilli()) break;
+
+                    // Abgeschlossene Fenster vor diesem Datensatz festhalten
+                    while (nextBucket < buckets && time >= bucketEnd) {
+                        result[nextBucket++] = occupied.clone();
+                        bucketEnd += bucket.toMillis();
+                    }
+
+                    int lane = buf.getInt(off + 8);
+                    int pos = buf.getInt(off + 12);
+                    byte state = buf.get(off + 17);
+                    if (lane < 0) continue;
+                    if (lane >= occupied.length) occupied = Arrays.copyOf(occupied, lane + 1);
+
+                    Byte previous = states.put(((long) lane << 32) | (pos & 0xffffffffL), state);
+                    boolean wasOccupied = previous != null && previous == SpotInfo.State.occupied.ordinal();
+                    boolean isOccupied = state == SpotInfo.State.occupied.ordinal();
+                    if (wasOccupied != isOccupied) occupied[lane] += isOccupied ? 1 : -1;
+                }
+            }
+        }
+
+        // Restliche Fenster haben keine weiteren Wechsel mehr
+        while (nextBucket < buckets) {
+            result[nextBucket++] = occupied.clone();
+        }
+        return result;
+    }
+
+    /**
+     * Wechselt auf das Segment des neuen Tages und schreibt den Start-Snapshot.
+     */
+    private static void roll(LocalDate day) throws IOException {
+        closeSegment();
+
+        File file = segmentFile(day);
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        segmentFile = new RandomAccessFile(file, "rw");
+        long capacity = Math.max(segmentFile.length(), HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE);
+        segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        segmentDate = day;
+
+        if (exists && segment.getInt(0) == MAGIC) {
+            // Neustart am selben Tag: hinter den vorhandenen Sätzen weiterschreiben
+            recordCount = validCount(segment);
+            return;
+        }
+
+        segment.putInt(0, MAGIC);
+        segment.putShort(4, VERSION);
+        segment.putShort(6, (short) RECORD_SIZE);
+        recordCount = 0;
+        segment.putLong(8, recordCount);
+
+        // Snapshot aller nicht freien Spots, damit der Tag für sich auswertbar ist
+        long now = System.currentTimeMillis();
+        SpotAllocator.forEachSpot(spot -> {
+            if (spot.getState() == SpotInfo.State.free) return;
+            Instant arrival = spot.getArrivalTime();
+            Instant departure = spot.getEstimatedDepartureTime();
+            try {
+                write(now, spot.getLane(), spot.getPos(), null, spot.getState(), TYPE_SNAPSHOT, spot.getAssignedPlate(),
+                        arrival != null ? arrival.getEpochSecond() : SpotStore.NO_TIME,
+                        departure != null ? departure.getEpochSecond() : SpotStore.NO_TIME);
+            } catch (IOException e) {
+                MqttLogger.error("OccupancyHistory", "Could not write snapshot: " + e.getMessage());
+            }
+        });
+    }
+
+    private static void write(long time, int lane, int pos, SpotInfo.State from, SpotInfo.State to, byte type,
+                              String plate, long arrival, long departure) throws IOException {
+        long offset = HEADER_SIZE + recordCount * RECORD_SIZE;
+        if (offset + RECORD_SIZE > segment.capacity()) {
+            grow();
+        }
+
+        int off = (int) offset;
+        segment.putLong(off, time);
+        segment.putInt(off + 8, lane);
+        segment.putInt(off + 12, pos);
+        segment.put(off + 16, from != null ? (byte) from.ordinal() : -1);
+        segment.put(off + 17, (byte) to.ordinal());
+        segment.put(off + 18, type);
+
+        byte[] plateBytes = plate != null ? plate.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        int plateLength = Math.min(plateBytes.length, PLATE_BYTES);
+        segment.put(off + 19, (byte) plateLength);
+        segment.putLong(off + 20, arrival);
+        segment.putLong(off + 28, departure);
+        for (int i = 0; i < PLATE_BYTES; i++) {
+            segment.put(off + 36 + i, i < plateLength ? plateBytes[i] : 0);
+        }
+
+        // Zähler erst nach dem vollständigen Satz erhöhen -> Leser sehen nie halbe Sätze
+        recordCount++;
+        segment.putLong(8, recordCount);
+    }
+
+    private static void grow() throws IOException {
+        long capacity = (long) segment.capacity() * 2;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("History segment full");
+        }
+        segment.force();
+        segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private static void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (segmentFile != null) {
+            segmentFile.close();
+            segmentFile = null;
+        }
+    }
+
+    private static long validCount(MappedByteBuffer buf) {
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) return 0;
+        long count = buf.getLong(8);
+        long max = (buf.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        return Math.max(0, Math.min(count, max));
+    }
+
+    private static File segmentFile(LocalDate day) {
+        return new File(directory != null ? directory : new File(Config.HISTORY_DIR), "occupancy-" + FILE_DATE.format(day) + ".seg");
+    }
+}
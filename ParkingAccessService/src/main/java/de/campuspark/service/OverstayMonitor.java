@@ -0,0 +1,209 @@
+package de.campuspark.service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotStore;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.logic.UserRegistry;
+import de.campuspark.model.NotificationEvent;
+import de.campuspark.model.UserProfile;
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+
+/**
+ * Handelt anhand der geschätzten Abfahrtszeiten der geparkten Autos:
+ * <ul>
+ *   <li>Vorankündigung: DEPARTURE_NOTICE_MINUTES vor der Abfahrt eines Autos werden alle Autos
+ *       benachrichtigt, die es zuparken, damit sie rechtzeitig umparken.</li>
+ *   <li>Überziehung: Steht ein Auto OVERSTAY_GRACE_MINUTES nach seiner geschätzten Abfahrt
+ *       noch da, wird sein Halter benachrichtigt.</li>
+ * </ul>
+ * Alle Fristen liegen in einem nach Zeit sortierten Index (gepackte longs wie im
+ * {@link de.campuspark.logic.DepartureIndex}), der über die Spot-Wechsel inkrementell gepflegt
+ * wird. Statt periodisch zu prüfen, ist immer genau ein Task auf die früheste Frist geplant;
+ * ohne anstehende Fristen fällt also keine Arbeit an. Jede Frist feuert höchstens einmal pro
+ * Parkvorgang, auch wenn der Sensor zwischenzeitlich verstummt (unavailable) und sich wieder
+ * meldet. Versand über den {@link NotificationDispatcher}.
+ */
+public class OverstayMonitor {
+
+    private static final int INDEX_BITS = 24;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    // Fristen als (Zeitpunkt in Epoch-Sekunden << 24 | Spot-Index), durch lock geschützt
+    private static final Object lock = new Object();
+    private static final TreeSet<Long> notices = new TreeSet<>();
+    private static final TreeSet<Long> overstays = new TreeSet<>();
+    /** Pro Spot: eingeplante Abfahrt (Epoch-Sekunden) oder NO_TIME. */
+    private static long[] departures = new long[0];
+    /** Pro Spot: Kennzeichen des geparkten Autos. */
+    private static String[] plates = new String[0];
+
+    private static ScheduledFuture<?> next;
+    private static long nextAt = Long.MAX_VALUE;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "overstay-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Meldet den Monitor am Allocator an. Autos, die bereits stehen, werden über deren
+     * nächsten Wechsel erfasst.
+     */
+    public static void start() {
+        if (!Config.OVERSTAY_MONITOR) return;
+        SpotAllocator.addTransitionListener(OverstayMonitor::onTransition);
+    }
+
+    /**
+     * Pflegt die Fristen eines Spots in O(log n) (läuft unter dem Allocator-Lock).
+     */
+    public static void onTransition(SpotTransition t) {
+        // Verstummter Sensor: Das Auto steht vermutlich noch, Fristen (auch bereits gefeuerte)
+        // bleiben unverändert. Meldet sich der Sensor mit demselben Parkvorgang zurück, greift
+        // unten die Prüfung auf unveränderte Abfahrt und wiederholt nichts.
+        if (t.to() == SpotInfo.State.unavailable) return;
+        int index = t.spotIndex();
+        // Ohne Vorlesung heute ist die geschätzte Abfahrt "jetzt" (= Ankunft): nichts zu überwachen
+        boolean parked = t.to() == SpotInfo.State.occupied && t.departure() != SpotStore.NO_TIME
+                && t.departure() > t.arrival() + 60
+                && t.plate() != null && !t.plate().equals("UNKNOWN");
+
+        synchronized (lock) {
+            if (index >= departures.length) {
+                int capacity = Math.max(index + 1, departures.length * 2);
+                int old = departures.length;
+                departures = Arrays.copyOf(departures, capacity);
+                Arrays.fill(departures, old, capacity, SpotStore.NO_TIME);
+                plates = Arrays.copyOf(plates, capacity);
+            }
+            if (parked && departures[index] == t.departure() && t.plate().equals(plates[index])) return;
+
+            unschedule(index);
+            if (parked) {
+                departures[index] = t.departure();
+                plates[index] = t.plate();
+                notices.add(key(t.departure() - TimeUnit.MINUTES.toSeconds(Config.DEPARTURE_NOTICE_MINUTES), index));
+                overstays.add(key(t.departure() + TimeUnit.MINUTES.toSeconds(Config.OVERSTAY_GRACE_MINUTES), index));
+            }
+            reschedule();
+        }
+    }
+
+    /**
+     * Arbeitet alle fälligen Fristen ab und plant den nächsten Lauf.
+     */
+    private static void run() {
+        long now = System.currentTimeMillis() / 1000;
+        while (true) {
+            boolean overstay;
+            int index;
+            long departure;
+            String plate;
+            synchronized (lock) {
+                Long notice = notices.isEmpty() ? null : notices.first();
+                Long over = overstays.isEmpty() ? null : overstays.first();
+                boolean noticeDue = notice != null && timeOf(notice) <= now;
+                boolean overDue = over != null && timeOf(over) <= now;
+                if (!noticeDue && !overDue) {
+                    nextAt = Long.MAX_VALUE;
+                    reschedule();
+                    return;
+                }
+                overstay = !noticeDue;
+                long key = overstay ? overstays.pollFirst() : notices.pollFirst();
+                index = (int) (key & INDEX_MASK);
+                departure = departures[index];
+                plate = plates[index];
+            }
+
+            try {
+                if (overstay) {
+                    notifyOverstay(plate, departure, now);
+                } else {
+                    notifyBlockers(plate, departure, now);
+                }
+            } catch (Exception e) {
+                MqttLogger.error("OverstayMonitor", "Could not handle deadline for " + plate + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void notifyOverstay(String plate, long departure, long now) {
+        UserProfile user = UserRegistry.findByPlate(plate);
+        if (user == null) return;
+
+        long minutes = (now - departure) / 60;
+        NotificationDispatcher.submit(new NotificationEvent(user, "OVERSTAY",
+                "Ihre geschaetzte Abfahrtszeit (" + format(departure) + ") ist seit " + minutes
+                        + " Minuten ueberschritten. Bitte geben Sie den Parkplatz frei."));
+        Metrics.increment("overstay.notified");
+        MqttLogger.info("OverstayMonitor", "Overstay of " + plate + " by " + minutes + " min", null);
+    }
+
+    private static void notifyBlockers(String plate, long departure, long now) {
+        // Verspäteter Lauf (z.B. nach Standby): Abfahrt schon vorbei, Warnung käme zu spät
+        if (departure < now) return;
+
+        for (SpotAllocator.Blocker blocker : SpotAllocator.findBlockersforPlate(plate)) {
+            UserProfile user = blocker.user();
+            if (user == null || user.getPlate() == null || user.getPlate().equals("UNKNOWN")) continue;
+            NotificationDispatcher.submit(new NotificationEvent(user, "RELOCATE",
+                    "Ein Fahrzeug hinter Ihnen faehrt voraussichtlich um " + format(departure)
+                            + " ab, bitte parken Sie rechtzeitig um"));
+            Metrics.increment("overstay.blockers_notified");
+            MqttLogger.info("OverstayMonitor", "Early move notice to blocker of " + plate, blocker.spotId());
+        }
+    }
+
+    // Muss unter lock laufen
+    private static void unschedule(int index) {
+        long departure = departures[index];
+        if (departure == SpotStore.NO_TIME) return;
+        notices.remove(key(departure - TimeUnit.MINUTES.toSeconds(Config.DEPARTURE_NOTICE_MINUTES), index));
+        overstays.remove(key(departure + TimeUnit.MINUTES.toSeconds(Config.OVERSTAY_GRACE_MINUTES), index));
+        departures[index] = SpotStore.NO_TIME;
+        plates[index] = null;
+    }
+
+    /**
+     * Plant den Lauf auf die früheste Frist, falls diese vor dem bisher geplanten Lauf liegt
+     * (muss unter lock laufen).
+     */
+    private static void reschedule() {
+        long earliest = Long.MAX_VALUE;
+        if (!notices.isEmpty()) earliest = timeOf(notices.first());
+        if (!overstays.isEmpty()) earliest = Math.min(earliest, timeOf(overstays.first()));
+        if (earliest == Long.MAX_VALUE || earliest >= nextAt) return;
+
+        if (next != null) next.cancel(false);
+        nextAt = earliest;
+        long delayMillis = Math.max(0, earliest * 1000 - System.currentTimeMillis());
+        next = scheduler.schedule(OverstayMonitor::run, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long key(long epochSecond, int index) {
+        return (epochSecond << INDEX_BITS) | index;
+    }
+
+    private static long timeOf(long key) {
+        return key >> INDEX_BITS;
+    }
+
+    private static String format(long epochSecond) {
+        return Instant.ofEpochSecond(epochSecond).atZone(ZoneId.systemDefault()).format(TIME);
+    }
+}
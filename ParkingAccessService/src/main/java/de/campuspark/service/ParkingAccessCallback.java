@@ -3,6 +3,7 @@ package de.campuspark.service;
 import de.campuspark.logic.*;
 import de.campuspark.model.*;
 import de.campuspark.util.Config;
+import de.campuspark.util.JfrEvents;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.paho.client.mqttv3.*;
@@ -11,11 +12,14 @@ import java.nio.charset.StandardCharsets;
 
 public class ParkingAccessCallback implements MqttCallback {
 
-    private final MqttClient client;
+    private final IMqttAsyncClient client;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final AdmissionController admission;
 
-    public ParkingAccessCallback(MqttClient client) {
+    public ParkingAccessCallback(IMqttAsyncClient client) {
         this.client = client;
+        this.admission = new AdmissionController(this::process, this::ack);
+        if (Config.ADMISSION_CONTROL) admission.start();
     }
 
     @Override
@@ -27,6 +31,25 @@ public class ParkingAccessCallback implements MqttCallback {
 
     @Override
     public void messageArrived(String topic, MqttMessage message) {
+        TrafficRecorder.record(topic, message.getPayload());
+        if (Config.ADMISSION_CONTROL) {
+            admission.admit(topic, message);
+        } else {
+            process(topic, message);
+        }
+    }
+
+    /**
+     * Anzahl eingereihter bzw. noch in Verarbeitung befindlicher Nachrichten.
+     */
+    public int pending() {
+        return admission.pending();
+    }
+
+    /**
+     * Verarbeitet eine (zugelassene) Nachricht und bestätigt sie.
+     */
+    private void process(String topic, MqttMessage message) {
         try {
             String payload = new String(message.getPayload(), StandardCharsets.UTF_8);
 
@@ -52,6 +75,19 @@ public class ParkingAccessCallback implements MqttCallback {
         } catch (Exception e) {
             MqttLogger.error("ParkingAccess", "Exception processing message: " + e.getMessage());
             e.printStackTrace(); 
+        } finally {
+            ack(message);
+        }
+    }
+
+    /**
+     * Bestätigt die Nachricht beim Broker (Manual Acks, siehe ParkingAccessService).
+     */
+    private void ack(MqttMessage message) {
+        try {
+            client.messageArrivedComplete(message.getId(), message.getQos());
+        } catch (MqttException e) {
+            MqttLogger.error("ParkingAccess", "Could not acknowledge message " + message.getId() + ": " + e.getMessage());
         }
     }
 
@@ -63,27 +99,78 @@ public class ParkingAccessCallback implements MqttCallback {
     // HANDLER-BEREICH
     // -----------------------------
 
+    /**
+     * Reiht die Registrierung in den Write-Behind-Puffer ein. Die Nachricht wird sofort bestätigt
+     * (die Session ist nicht persistent, eine erneute Zustellung gäbe es ohnehin nicht);
+     * eine endgültig gescheiterte oder abgelehnte Registrierung wird als Fehler geloggt.
+     */
     private void handleRegistration(String json) throws Exception {
         RegistrationEvent reg = mapper.readValue(json, RegistrationEvent.class);
-        UserRegistry.register(reg);
-        
-        MqttLogger.info("ParkingAccess", "Registered new plate: " + reg.getPlate(), null);
+        RegistrationWriter.submit(reg).whenComplete((ignored, error) -> {
+            if (error == null) {
+                MqttLogger.info("ParkingAccess", "Registered new plate: " + reg.getPlate(), null);
+            } else {
+                MqttLogger.error("ParkingAccess", "Registration of " + reg.getPlate() + " lost: " + error.getMessage());
+            }
+        });
     }
 
+    /**
+     * Zugangsentscheidung, als {@link JfrEvents.Access} mit der Dauer jeder Stufe aufgezeichnet.
+     */
     private void handleAccess(String json) throws Exception {
+        JfrEvents.Access trace = new JfrEvents.Access();
+        trace.start();
+        try {
+            decideAccess(json, trace);
+        } finally {
+            if (trace.shouldCommit()) trace.commit();
+        }
+    }
+
+    private void decideAccess(String json, JfrEvents.Access trace) throws Exception {
         LicensePlateEvent lp = mapper.readValue(json, LicensePlateEvent.class);
+        trace.identify(lp.getPlate(), lp.getGateId());
+        trace.parseNanos = trace.lap();
 
         UserProfile user = UserRegistry.findByPlate(lp.getPlate());
 
+        // 0. Unsicher gelesenes Kennzeichen: nächstes registriertes Kennzeichen versuchen
+        if (user == null && Config.FUZZY_PLATE_MATCH && confidenceOf(lp) < Config.FUZZY_PLATE_CONFIDENCE) {
+            PlateIndex.Match match = UserDirectory.findSimilarPlate(lp.getPlate(), Config.FUZZY_PLATE_MAX_DISTANCE);
+            if (match != null) {
+                MqttLogger.warn("ParkingAccess", "Corrected plate " + lp.getPlate() + " -> " + match.plate()
+                        + " (distance " + match.distance() + ", confidence " + lp.getConfidence() + ")", null);
+                user = UserRegistry.findByPlate(match.plate());
+            }
+        }
+
+        trace.lookupNanos = trace.lap();
+
         // 1. Unbekanntes Kennzeichen
         if (user == null) {
             MqttLogger.warn("ParkingAccess", "Access denied: Unknown plate " + lp.getPlate(), null);
             publishAllocation(lp, user, "-2", "DENY");
+            trace.finish("deny_unknown", null);
+            return;
+        }
+
+        // 2. Wiederholte Erkennung an derselben Schranke: bereits vergebenen Platz erneut ausliefern
+        AccessDeduplicator.Issued previous = AccessDeduplicator.lookup(lp.getGateId(), user.getPlate());
+        boolean duplicate = previous != null && SpotAllocator.isHeldBy(previous.spotId(), user.getPlate());
+        trace.dedupNanos = trace.lap();
+        if (duplicate) {
+            publishBarrier(lp, "OPEN");
+            publishAllocation(lp, user, previous.spotId(), "ALLOW");
+            MqttLogger.info("ParkingAccess", "Duplicate read of " + lp.getPlate() + " at " + lp.getGateId()
+                    + ", reusing " + previous.spotId(), previous.spotId());
+            trace.finish("duplicate", previous.spotId());
             return;
         }
 
-        // 2. Parkplatz finden (z. B. freie Spots aus State-Service)
+        // 3. Parkplatz finden (z. B. freie Spots aus State-Service)
         SpotInfo spot = SpotAllocator.reserveSpotForUser(user);
+        trace.reserveNanos = trace.lap();
         
         // SpotState sofort publishen (Reserviert), damit niemand anders ihn nimmt
         publishSpot(spot);
@@ -93,16 +180,27 @@ public class ParkingAccessCallback implements MqttCallback {
         if (spotId == null) {
             MqttLogger.warn("ParkingAccess", "Access denied: No free spot available for " + lp.getPlate(), null);
             publishAllocation(lp, user, "-1", "DENY");
+            trace.finish("deny_full", null);
             return;
         }
 
-        // 3. Schranke öffnen
+        AccessDeduplicator.remember(lp.getGateId(), user.getPlate(), spotId);
+
+        // 4. Schranke öffnen
         publishBarrier(lp, "OPEN");
 
-        // 4. Display-/Parking-Node informieren
+        // 5. Display-/Parking-Node informieren
         publishAllocation(lp, user, spotId, "ALLOW");
 
         MqttLogger.info("ParkingAccess", "Allocation successful: " + lp.getPlate() + " -> " + spotId, spotId);
+        trace.finish("allow", spotId);
+    }
+
+    /**
+     * Konfidenz als Anteil 0.0 - 1.0 (der ALPR-Dienst sendet Prozentwerte).
+     */
+    private static double confidenceOf(LicensePlateEvent lp) {
+        return lp.getConfidence() > 1.0 ? lp.getConfidence() / 100.0 : lp.getConfidence();
     }
 
     private void handleMoveRequest(String json) throws Exception {
@@ -115,22 +213,22 @@ public class ParkingAccessCallback implements MqttCallback {
         }
 
         // Finde alle Autos, die diesen User blockieren
-        SpotInfo[] blockers = SpotAllocator.findBlockersforPlate(user.getPlate());
+        SpotAllocator.Blocker[] blockers = SpotAllocator.findBlockersforPlate(user.getPlate());
         
         if (blockers.length == 0) {
             MqttLogger.info("ParkingAccess", "Move Request: No blockers found for " + user.getPlate(), null);
         }
 
-        for(SpotInfo spot : blockers){
-            NotificationEvent notif = new NotificationEvent(spot.getUser(), "Move Request", "Benutzer moechte ausparken, bitte parken Sie ihr Fahrzeug um");
-            String notifJson = mapper.writeValueAsString(notif);
-
-            client.publish(
-                    Config.TOPIC_NOTIFICATION,
-                    new MqttMessage(notifJson.getBytes(StandardCharsets.UTF_8))
-            );
+        // Versand über den Dispatcher: gebündelt, asynchron und mit Cooldown gegen SMS-Fluten
+        for(SpotAllocator.Blocker blocker : blockers){
+            if (blocker.user() == null) {
+                MqttLogger.warn("ParkingAccess", "Move Request: blocker on " + blocker.spotId() + " is unknown", blocker.spotId());
+                continue;
+            }
+            NotificationEvent notif = new NotificationEvent(blocker.user(), "Move Request", "Benutzer moechte ausparken, bitte parken Sie ihr Fahrzeug um");
+            NotificationDispatcher.submit(notif);
             
-            MqttLogger.info("ParkingAccess", "Sent Move-Notification to blocker on " + spot.getSpotId(), spot.getSpotId());
+            MqttLogger.info("ParkingAccess", "Queued Move-Notification to blocker on " + blocker.spotId(), blocker.spotId());
         }
     }
 
@@ -138,7 +236,8 @@ public class ParkingAccessCallback implements MqttCallback {
         SpotUpdateEvent spotUpd = SpotUpdateEvent.of(topic, payload);
         
         // Logging passiert innerhalb von handleSensorUpdate
-        SpotInfo updatedSpot = SpotAllocator.handleSensorUpdate(spotUpd.getSpotId(), spotUpd.isOccupied());
+        // Veraltete Meldungen (Wasserstand pro Spot) liefern null und werden nicht publiziert
+        SpotInfo updatedSpot = SpotAllocator.handleSensorUpdate(spotUpd);
         
         publishSpot(updatedSpot);
     }
@@ -155,13 +254,8 @@ public class ParkingAccessCallback implements MqttCallback {
         );
         String json = mapper.writeValueAsString(cmd);
 
-        MqttMessage message = new MqttMessage(json.getBytes(StandardCharsets.UTF_8));
-        message.setQos(2);
-
-        client.publish(
-                Config.TOPIC_BARRIER,
-                message
-        );
+        // Höchste Priorität und bis zur Bestätigung im Journal
+        MqttPublisher.publishDurable(Config.TOPIC_BARRIER, json.getBytes(StandardCharsets.UTF_8), 2);
     }
 
     private void publishAllocation(LicensePlateEvent lp, UserProfile user, String spotId, String action) throws Exception {
@@ -173,39 +267,39 @@ public class ParkingAccessCallback implements MqttCallback {
         );
 
         String json = mapper.writeValueAsString(alloc);
-        MqttMessage message = new MqttMessage(json.getBytes(StandardCharsets.UTF_8));
-        message.setQos(1);
+        MqttPublisher.publish(Config.TOPIC_ALLOCATION, json.getBytes(StandardCharsets.UTF_8), 1, false,
+                MqttPublisher.Priority.CONTROL);
 
-        client.publish(
-                Config.TOPIC_ALLOCATION,
-                message
-        );
+        if (Config.BINARY_FEED) {
+            MqttPublisher.publish(Config.TOPIC_ALLOCATION_BIN, binaryAllocation(lp, spotId, action), 1, false,
+                    MqttPublisher.Priority.CONTROL);
+        }
+    }
+
+    /**
+     * Zuweisung im {@link BinaryFrames}-Format; "-1"/"-2" sind die Ablehnungen (voll / unbekannt).
+     */
+    private static byte[] binaryAllocation(LicensePlateEvent lp, String spotId, String action) {
+        int result = !"DENY".equals(action) ? BinaryFrames.RESULT_ALLOW
+                : "-2".equals(spotId) ? BinaryFrames.RESULT_UNKNOWN : BinaryFrames.RESULT_FULL;
+        int lane = BinaryFrames.NO_SPOT;
+        int pos = BinaryFrames.NO_SPOT;
+        long lanePos = result == BinaryFrames.RESULT_ALLOW ? SpotStore.parseId(spotId) : -1;
+        if (lanePos >= 0 && (lanePos >>> 32) <= BinaryFrames.MAX_LANE_POS && (int) lanePos <= BinaryFrames.MAX_LANE_POS) {
+            lane = (int) (lanePos >>> 32);
+            pos = (int) lanePos;
+        }
+        return BinaryFrames.allocation(result, lane, pos, lp.getGateId(), lp.getPlate());
     }
 
     private void publishSpot(SpotInfo spot) throws Exception {
         if(spot == null) return;
-        SpotStateMessage msg = new SpotStateMessage(
-                spot.getSpotId(),
-                spot.getState().toString(),
-                spot.getAssignedPlate(),
-                spot.getArrivalTime(),
-                spot.getEstimatedDepartureTime()
-        );
+        SpotStateMessage msg = SpotAllocator.getStateMessage(spot);
         String json = mapper.writeValueAsString(msg);
 
-        MqttMessage message = new MqttMessage(json.getBytes(StandardCharsets.UTF_8));
-        message.setQos(1);
-
-        client.publish(
-                Config.TOPIC_SPOT_STATE + spot.getSpotId(),
-                message
-        );
-
-        message = new MqttMessage(SpotAllocator.getFreeSpotCount().getBytes());
-
-        client.publish(
-                Config.TOPIC_SPOT_COUNT,
-                message
-        );
+        MqttPublisher.publish(Config.TOPIC_SPOT_STATE + msg.spotId, json.getBytes(StandardCharsets.UTF_8), 1, false,
+                MqttPublisher.Priority.STATE);
+        MqttPublisher.publish(Config.TOPIC_SPOT_COUNT, SpotAllocator.getFreeSpotCount().getBytes(), 1, false,
+                MqttPublisher.Priority.STATE);
     }
 }
@@ -0,0 +1,141 @@
+package de.campuspark.service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import de.campuspark.model.RegistrationEvent;
+import de.campuspark.util.Config;
+import de.campuspark.util.DBConnection;
+
+/**
+ * Write-Behind-Puffer für Registrierungen.
+ * Eingehende Registrierungen werden in einer begrenzten Queue gesammelt und von einem
+ * einzelnen Writer-Thread gebündelt geschrieben: alles, was innerhalb des Batch-Fensters
+ * (Standard 50 ms) eintrifft, geht als mehrzeiliger Upsert in einer Transaktion in die DB.
+ * Jede Registrierung erhält ein Future, das nach dem Commit abgeschlossen wird bzw. mit dem
+ * DB-Fehler scheitert. Ist die Queue voll, wird die Registrierung sofort abgelehnt, statt den
+ * aufrufenden Thread (die Zulassungskontrolle der Schranke) zu blockieren.
+ */
+public class RegistrationWriter {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 200;
+
+    private record Pending(RegistrationEvent reg, CompletableFuture<Void> done) {}
+
+    private static final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(Config.REGISTRATION_QUEUE_CAPACITY);
+    private static volatile DBConnection db = new DBConnection();
+    private static Thread worker;
+
+    /**
+     * Startet den Writer-Thread (idempotent).
+     */
+    public static synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(RegistrationWriter::run, "registration-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Startet den Writer gegen eine andere Datenbank als DB_URL (Benchmarks).
+     */
+    public static synchronized void start(DBConnection database) {
+        if (worker != null) throw new IllegalStateException("RegistrationWriter already running");
+        db = database;
+        start();
+    }
+
+    /**
+     * Reiht eine Registrierung ein, ohne zu blockieren.
+     * @return Future, das nach dem Commit abgeschlossen wird (bzw. mit dem DB-Fehler oder
+     *         bei voller Queue mit einer {@link RejectedExecutionException} scheitert)
+     */
+    public static CompletableFuture<Void> submit(RegistrationEvent reg) {
+        start();
+        Pending pending = new Pending(reg, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            pending.done().completeExceptionally(new RejectedExecutionException(
+                    "registration queue full (" + Config.REGISTRATION_QUEUE_CAPACITY + ")"));
+        }
+        return pending.done();
+    }
+
+    public static int getQueueSize() {
+        return queue.size();
+    }
+
+    private static void run() {
+        long window = TimeUnit.MILLISECONDS.toNanos(Config.REGISTRATION_BATCH_WINDOW_MS);
+        int maxBatch = Config.REGISTRATION_BATCH_SIZE;
+        List<Pending> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+
+                // Weitere Registrierungen bis Fensterende oder Batch-Größe einsammeln
+                long deadline = System.nanoTime() + window;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        queue.drainTo(batch, maxBatch - batch.size());
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                for (Pending pending : batch) pending.done().completeExceptionally(e);
+                return;
+            } catch (RuntimeException e) {
+                for (Pending pending : batch) pending.done().completeExceptionally(e);
+                MqttLogger.error("RegistrationWriter", "Unexpected error while flushing: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Schreibt den Batch mit Wiederholungen; scheitert er endgültig, werden die Einträge
+     * einzeln geschrieben, damit ein fehlerhafter Datensatz nicht den ganzen Batch verwirft.
+     */
+    private static void flush(List<Pending> batch) throws InterruptedException {
+        List<RegistrationEvent> regs = new ArrayList<>(batch.size());
+        for (Pending pending : batch) regs.add(pending.reg());
+
+        long start = System.nanoTime();
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                db.upsertUsers(regs);
+                for (Pending pending : batch) pending.done().complete(null);
+                MqttLogger.info("RegistrationWriter", "Stored " + batch.size() + " registrations in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms", null);
+                return;
+            } catch (SQLException e) {
+                MqttLogger.warn("RegistrationWriter", "Batch of " + batch.size() + " failed (attempt "
+                        + attempt + "/" + MAX_ATTEMPTS + "): " + e.getMessage(), null);
+                if (attempt < MAX_ATTEMPTS) Thread.sleep(RETRY_BACKOFF_MS * attempt);
+            }
+        }
+
+        for (Pending pending : batch) {
+            try {
+                db.upsertUsers(List.of(pending.reg()));
+                pending.done().complete(null);
+            } catch (SQLException e) {
+                MqttLogger.error("RegistrationWriter", "Could not store registration " + pending.reg().getPlate() + ": " + e.getMessage());
+                pending.done().completeExceptionally(e);
+            }
+        }
+    }
+}
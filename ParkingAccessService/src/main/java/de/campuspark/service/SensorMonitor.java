@@ -0,0 +1,89 @@
+package de.campuspark.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotTransition;
+import de.campuspark.model.SensorHealthMessage;
+import de.campuspark.model.SpotStateMessage;
+import de.campuspark.util.Config;
+import de.campuspark.util.Metrics;
+
+/**
+ * Überwacht die Lebendigkeit der Spot-Sensoren (ESP32). Die Sensoren melden ihren Zustand
+ * mindestens jede Minute; bleibt ein Sensor länger als SENSOR_TIMEOUT_SECONDS stumm, markiert
+ * der {@link SpotAllocator} den Spot als {@link SpotInfo.State#unavailable} und vergibt ihn
+ * nicht mehr. Meldet sich der Sensor wieder, übernimmt der Spot dessen Zustand.
+ *
+ * Geprüft wird alle SENSOR_CHECK_SECONDS über das Timer Wheel des Allocators, also nur die
+ * gerade fälligen Spots. Jeder Wechsel wird als {@link SensorHealthMessage} veröffentlicht;
+ * Zähler: "sensor.lost", "sensor.recovered".
+ */
+public class SensorMonitor {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sensor-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Meldet den Monitor am Allocator an und startet die periodische Prüfung.
+     */
+    public static void start() {
+        if (Config.SENSOR_TIMEOUT_SECONDS <= 0) return;
+        SpotAllocator.addTransitionListener(SensorMonitor::onTransition);
+
+        long interval = Math.max(1, Config.SENSOR_CHECK_SECONDS);
+        scheduler.scheduleWithFixedDelay(SensorMonitor::check, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sperrt alle verstummten Spots und veröffentlicht deren neuen Zustand.
+     */
+    public static void check() {
+        try {
+            for (SpotInfo spot : SpotAllocator.expireSilentSensors(System.currentTimeMillis())) {
+                MqttLogger.warn("SensorMonitor", "Sensor silent for more than " + Config.SENSOR_TIMEOUT_SECONDS
+                        + " s, spot marked unavailable", spot.getSpotId());
+                publishSpot(spot);
+            }
+        } catch (Exception e) {
+            MqttLogger.error("SensorMonitor", "Sensor check failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Veröffentlicht Wechsel in und aus dem Zustand unavailable (läuft unter dem Allocator-Lock).
+     */
+    private static void onTransition(SpotTransition t) {
+        boolean lost = t.to() == SpotInfo.State.unavailable;
+        boolean recovered = t.from() == SpotInfo.State.unavailable;
+        if (!lost && !recovered) return;
+
+        Metrics.increment(lost ? "sensor.lost" : "sensor.recovered");
+        String spotId = SpotAllocator.getSpotId(t.spotIndex());
+        SensorHealthMessage msg = new SensorHealthMessage(spotId, lost ? "lost" : "ok",
+                SpotAllocator.getSensorLastSeen(t.spotIndex()), t.timeMillis());
+        try {
+            MqttPublisher.publish(Config.TOPIC_SENSOR_HEALTH + spotId, mapper.writeValueAsBytes(msg), 1, true,
+                    MqttPublisher.Priority.STATE);
+        } catch (Exception e) {
+            MqttLogger.error("SensorMonitor", "Could not publish sensor health for " + spotId + ": " + e.getMessage());
+        }
+    }
+
+    private static void publishSpot(SpotInfo spot) throws Exception {
+        SpotStateMessage msg = SpotAllocator.getStateMessage(spot);
+        MqttPublisher.publish(Config.TOPIC_SPOT_STATE + msg.spotId, mapper.writeValueAsBytes(msg), 1, false,
+                MqttPublisher.Priority.STATE);
+        MqttPublisher.publish(Config.TOPIC_SPOT_COUNT, SpotAllocator.getFreeSpotCount().getBytes(), 1, false,
+                MqttPublisher.Priority.STATE);
+    }
+}
@@ -2,14 +2,31 @@ package de.campuspark.service;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import de.campuspark.logic.BlockerGraph;
+import de.campuspark.logic.DepartureIndex;
 import de.campuspark.logic.ParkingTopology;
+import de.campuspark.logic.PlateIndex;
 import de.campuspark.logic.SpotInfo;
+import de.campuspark.logic.SpotPools;
+import de.campuspark.logic.SpotStore;
+import de.campuspark.logic.SpotTransitionListener;
+import de.campuspark.logic.TimerWheel;
+import de.campuspark.logic.UserRegistry;
+import de.campuspark.model.GarageSnapshot;
+import de.campuspark.model.SpotStateMessage;
+import de.campuspark.model.SpotUpdateEvent;
 import de.campuspark.model.UserProfile;
+import de.campuspark.util.Config;
+import de.campuspark.util.JfrEvents;
+import de.campuspark.util.Metrics;
 
 /**
  * Zentrale Komponente für die Parkplatz-Zuweisung und Statusverwaltung.
@@ -17,21 +34,146 @@ import de.campuspark.model.UserProfile;
  * welcher Parkplatz einem User zugewiesen wird. Dabei werden physische Abhängigkeiten
  * (Zuparken/Stacking) sowie strategische Ziele (Kurzparker vorne) berücksichtigt.
  * Logging erfolgt nun strukturiert über MQTT.
+ * Der Zustand liegt spaltenorientiert im {@link SpotStore}; alle Scans laufen über
+ * primitive Arrays statt über Objekt-Graphen.
  */
 public class SpotAllocator {
     
     /**
-     * Map aller Parkplätze, indiziert über die Spot-ID (z.B. "L1-P0").
+     * Zustand aller Parkplätze, adressierbar über die Spot-ID (z.B. "L1-P0") oder (Lane, Pos).
      */
-    private static final Map<String, SpotInfo> spots = new ConcurrentHashMap<>();
+    private static final SpotStore store = new SpotStore(64, createPools());
+    private static final SpotPools pools = store.getPools();
+    private static final BlockerGraph blockerGraph = new BlockerGraph(store);
+
+    /**
+     * Sensor-Timeouts aller Spots in einem Timer Wheel statt einem Timer pro Spot. Jede Meldung
+     * aktualisiert nur den Last-Seen-Zeitstempel im Store; erst beim Ablauf wird geprüft, ob der
+     * Sensor wirklich verstummt ist (siehe {@link #expireSilentSensors}).
+     */
+    private static final long SENSOR_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(Config.SENSOR_TIMEOUT_SECONDS);
+    private static final TimerWheel sensorWheel = new TimerWheel(
+            TimeUnit.SECONDS.toMillis(Math.max(1, Config.SENSOR_CHECK_SECONDS)), Math.max(0, SENSOR_TIMEOUT_MS),
+            System.currentTimeMillis());
+
+    // Lesesicht für Abfragen ohne Allocator-Lock, wird nach Änderungen neu aufgebaut
+    private static volatile GarageSnapshot snapshot = GarageSnapshot.EMPTY;
+    private static volatile boolean snapshotDirty = true;
+    static {
+        store.addListener(t -> snapshotDirty = true);
+    }
+
+    /**
+     * Grundstrafe für jeden absehbaren Umparkvorgang (in Größenordnung der Blockade-Strafe,
+     * plus Minuten Zeitversatz), damit die Abfahrtsreihenfolge die Distanz dominiert.
+     */
+    private static final double DEPARTURE_CONFLICT_PENALTY = 500.0;
 
     /**
      * Liefert die Anzahl der aktuell freien Parkplätze zurück.
      * @return Anzahl der Spots im Status FREE.
      */
-    public static String getFreeSpotCount(){
-        return Long.toString(spots.values().stream()
-                .filter(s -> s.getState() == SpotInfo.State.free).count());
+    public static synchronized String getFreeSpotCount(){
+        return Integer.toString(store.getFreeCount());
+    }
+
+    /**
+     * Momentaufnahme eines Spots als Nachricht. {@link SpotInfo} ist nur eine Sicht auf den Store,
+     * daher werden Zustand, Kennzeichen und Zeiten gemeinsam unter dem Allocator-Lock gelesen.
+     */
+    public static synchronized SpotStateMessage getStateMessage(SpotInfo spot) {
+        return new SpotStateMessage(spot.getSpotId(), spot.getState().toString(), spot.getAssignedPlate(),
+                spot.getArrivalTime(), spot.getEstimatedDepartureTime());
+    }
+
+    /**
+     * Registriert einen Listener für alle Zustandswechsel der Parkplätze.
+     */
+    public static void addTransitionListener(SpotTransitionListener listener) {
+        store.addListener(listener);
+    }
+
+    /**
+     * Zuletzt veröffentlichter Schnappschuss (lock-frei, kann bis zum nächsten
+     * {@link #refreshSnapshot()} leicht veraltet sein).
+     */
+    public static GarageSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Baut den Schnappschuss neu auf, falls sich seit dem letzten Aufbau etwas geändert hat,
+     * und ersetzt ihn atomar. Der Aufbau ist ein linearer Durchlauf unter dem Allocator-Lock.
+     */
+    public static void refreshSnapshot() {
+        if (!snapshotDirty) return;
+        synchronized (SpotAllocator.class) {
+            snapshotDirty = false;
+
+            int lanes = 0;
+            for (int i = 0; i < store.size(); i++) lanes = Math.max(lanes, store.getLane(i) + 1);
+            int[][] counts = new int[lanes][SpotInfo.State.values().length];
+
+            List<SpotStateMessage> spots = new ArrayList<>(store.size());
+            Map<String, Integer> byId = new HashMap<>(store.size() * 2);
+            Map<String, Integer> byPlate = new HashMap<>();
+            for (int i = 0; i < store.size(); i++) {
+                SpotInfo spot = store.get(i);
+                SpotInfo.State state = spot.getState();
+                counts[spot.getLane()][state.ordinal()]++;
+
+                UserProfile user = spot.getUser();
+                String plate = state != SpotInfo.State.free && user != null ? user.getPlate() : null;
+                byId.put(spot.getSpotId(), spots.size());
+                if (plate != null && !plate.equals("UNKNOWN")) byPlate.put(PlateIndex.normalize(plate), spots.size());
+                spots.add(new SpotStateMessage(spot.getSpotId(), state.toString(), plate,
+                        spot.getArrivalTime(), spot.getEstimatedDepartureTime()));
+            }
+
+            List<GarageSnapshot.LaneCount> laneCounts = new ArrayList<>();
+            for (int lane = 0; lane < lanes; lane++) {
+                int[] c = counts[lane];
+                if (Arrays.stream(c).sum() == 0) continue;
+                laneCounts.add(new GarageSnapshot.LaneCount(lane,
+                        c[SpotInfo.State.free.ordinal()], c[SpotInfo.State.reserved.ordinal()], c[SpotInfo.State.occupied.ordinal()],
+                        c[SpotInfo.State.unavailable.ordinal()]));
+            }
+
+            List<GarageSnapshot.PoolCount> poolCounts = new ArrayList<>();
+            for (SpotPools.Pool pool : SpotPools.Pool.values()) {
+                if (pools.size(pool) == 0) continue;
+                poolCounts.add(new GarageSnapshot.PoolCount(pool.name().toLowerCase(), pools.size(pool),
+                        pools.freeCount(pool), pools.guaranteed(pool)));
+            }
+
+            snapshot = new GarageSnapshot(snapshot.version() + 1, System.currentTimeMillis(), store.getFreeCount(),
+                    List.copyOf(laneCounts), List.copyOf(poolCounts), List.copyOf(spots), Map.copyOf(byId), Map.copyOf(byPlate));
+        }
+    }
+
+    /**
+     * Prüft, ob der Spot noch für das Kennzeichen reserviert bzw. von ihm belegt ist.
+     */
+    public static synchronized boolean isHeldBy(String spotId, String plate) {
+        int index = store.indexOf(spotId);
+        if (index < 0 || store.isState(index, SpotInfo.State.free)) return false;
+        return store.get(index).getAssignedPlate().equals(plate);
+    }
+
+    /**
+     * Führt die Aktion für jeden bekannten Spot aus (unter dem Allocator-Lock).
+     */
+    public static synchronized void forEachSpot(Consumer<SpotInfo> action) {
+        for (int i = 0; i < store.size(); i++) {
+            action.accept(store.get(i));
+        }
+    }
+
+    /**
+     * Anzahl belegter Spots der Lane, deren geschätzte Abfahrt im Zeitraum [from, to) liegt.
+     */
+    public static synchronized int countDeparturesBetween(int lane, Instant from, Instant to) {
+        return store.getDepartureIndex().countBetween(lane, from.getEpochSecond(), to.getEpochSecond());
     }
     
     /**
@@ -39,49 +181,189 @@ public class SpotAllocator {
      * Ablauf:
      * 1. Ermittlung der Parkdauer via CalendarService.
      * 2. Filterung physikalisch nicht nutzbarer Plätze (Backfill-Regeln).
-     * 3. Berechnung eines Scores (Penalty-System) für alle Kandidaten.
+     * 3. Berechnung eines Scores (Penalty-System) für alle Kandidaten,
+     *    inkl. Abgleich mit den geschätzten Abfahrtszeiten der Nachbarn.
      * 4. Reservierung des Platzes mit dem geringsten Score.
+     * Kandidaten sind nur die freien Spots der für die Rolle zulässigen Pools (siehe
+     * {@link SpotPools}): zuerst der eigene reservierte Pool, ist dort nichts frei, der
+     * allgemeine Bereich plus fremde Pools, soweit sie über ihrer Quote frei sind.
+     * Die Kalenderabfrage kann bis CALENDAR_WAIT_MS warten und läuft daher vor dem Allocator-Lock.
      */
     public static SpotInfo reserveSpotForUser(UserProfile user) {
-        Instant endTime = CalendarService.getEstimatedEndTime(user);
+        JfrEvents.Allocation trace = new JfrEvents.Allocation();
+        trace.begin();
+        return reserveSpot(user, CalendarService.getEstimatedEndTime(user), trace);
+    }
+
+    private static synchronized SpotInfo reserveSpot(UserProfile user, Instant endTime, JfrEvents.Allocation trace) {
         long durationHours = (endTime != null) ? Duration.between(Instant.now(), endTime).toHours() : 1;
         
         // Strategische Entscheidung: Ab wann gilt jemand als Langparker?
         boolean isLongTerm = durationHours > 4;
+        long departure = (endTime != null) ? endTime.getEpochSecond() : SpotStore.NO_TIME;
 
-        SpotInfo selectedSpot = spots.values().stream()
-            .filter(s -> s.getState() == SpotInfo.State.free)
-            // Prüfen, ob der Platz belegt werden darf (Stacking-Regel)
-            .filter(SpotAllocator::obeysBackfillRules)
-            // Den Platz mit den geringsten "Schmerzen" (Kosten) finden
-            .min(Comparator.comparingDouble(spot -> calculateScore(spot, isLongTerm)))
-            .map(spot -> {
-                spot.reserveFor(user.getPlate());
-                return spot;
-            })
-            .orElse(null);
+        SpotPools.Pool own = SpotPools.Pool.forRole(user.getRole());
+        Candidate best = new Candidate();
+
+        // 1. Eigener reservierter Pool
+        if (own != SpotPools.Pool.GENERAL) {
+            scanPool(own, isLongTerm, departure, best);
+        }
+        // 2. Allgemeiner Bereich und Überlauf in fremde Pools oberhalb ihrer Quote (O(1)-Prüfung)
+        if (best.index < 0) {
+            for (SpotPools.Pool pool : SpotPools.Pool.values()) {
+                if (pool == own && own != SpotPools.Pool.GENERAL) continue;
+                if (pool != SpotPools.Pool.GENERAL && !pools.allowsOverflow(pool)) continue;
+                scanPool(pool, isLongTerm, departure, best);
+            }
+        }
+
+        SpotInfo selectedSpot = null;
+        if (best.index >= 0) {
+            selectedSpot = store.get(best.index);
+            selectedSpot.reserveFor(user.getPlate());
+        }
 
         if (selectedSpot != null) {
-            MqttLogger.info("SpotAllocator", "Assigned spot to user " + user.getPlate(), selectedSpot.getSpotId());
+            MqttLogger.info("SpotAllocator", "Assigned spot to user " + user.getPlate()
+                    + " (pool " + pools.poolOf(best.index).name().toLowerCase() + ")", selectedSpot.getSpotId());
         } else {
             MqttLogger.warn("SpotAllocator", "No spot available for user " + user.getPlate(), null);
         }
 
+        if (trace.shouldCommit()) {
+            trace.plate = user.getPlate();
+            trace.role = user.getRole();
+            trace.longTerm = isLongTerm;
+            trace.candidates = best.candidates;
+            if (selectedSpot != null) {
+                trace.pool = pools.poolOf(best.index).name().toLowerCase();
+                trace.spotId = selectedSpot.getSpotId();
+                trace.score = best.score;
+            }
+            trace.commit();
+        }
         return selectedSpot;
     }
 
+    /**
+     * Voraussichtlich ankommender Nutzer eines Spots samt vorab (ohne Lock) geschätzter Abfahrt.
+     */
+    private record Arrival(String plate, Instant departure) {}
+
+    /** Bester bisher gefundener Spot einer Vergabe. */
+    private static final class Candidate {
+        int index = -1;
+        double score = Double.MAX_VALUE;
+        int candidates;
+    }
+
+    /**
+     * Bewertet alle freien Spots des Pools und merkt sich den besten.
+     */
+    private static void scanPool(SpotPools.Pool pool, boolean isLongTerm, long departure, Candidate best) {
+        for (int i = pools.nextFree(pool, 0); i >= 0; i = pools.nextFree(pool, i + 1)) {
+            // Prüfen, ob der Platz belegt werden darf (Stacking-Regel)
+            if (!obeysBackfillRules(i)) continue;
+
+            // Den Platz mit den geringsten "Schmerzen" (Kosten) finden
+            double score = calculateScore(i, isLongTerm, departure);
+            best.candidates++;
+            if (score < best.score) {
+                best.score = score;
+                best.index = i;
+            }
+        }
+    }
+
+    /**
+     * Pools aus der Konfiguration (SPOT_POOL_STAFF / SPOT_POOL_DISABLED: Spot-IDs oder ganze
+     * Lanes, z.B. "L0-P0,L0-P1,L5"; *_QUOTA: garantierte freie Plätze, -1 = ganzer Pool).
+     */
+    private static SpotPools createPools() {
+        Map<String, SpotPools.Pool> assignments = new HashMap<>();
+        for (String entry : SpotPools.parseSpec(Config.SPOT_POOL_STAFF)) assignments.put(entry, SpotPools.Pool.STAFF);
+        for (String entry : SpotPools.parseSpec(Config.SPOT_POOL_DISABLED)) assignments.put(entry, SpotPools.Pool.DISABLED);
+        return new SpotPools(assignments, Map.of(
+                SpotPools.Pool.STAFF, Config.SPOT_POOL_STAFF_QUOTA,
+                SpotPools.Pool.DISABLED, Config.SPOT_POOL_DISABLED_QUOTA));
+    }
+
     /**
      * Verarbeitet Updates vom MQTT und korrigiert Zuweisungen.
      * Synchronisiert den logischen Status (Software) mit dem physischen Status (Sensor).
      * Erkennt Ankünfte und Abfahrten.
+     * Trägt die Meldung eine Sequenznummer oder einen Sensor-Zeitstempel, wird sie nur
+     * übernommen, wenn sie neuer ist als die zuletzt übernommene Meldung des Spots
+     * (Wasserstand im {@link SpotStore}). Verspätete oder erneut zugestellte Meldungen können
+     * so keinen neueren Zustand überschreiben, egal in welcher Reihenfolge sie verarbeitet werden.
+     * Meldet der Sensor ein Auto, wird die Abfahrtszeit des erwarteten Nutzers vor dem
+     * Allocator-Lock aus dem Kalender geschätzt.
+     * @return der Spot oder null, wenn die Meldung als veraltet verworfen wurde
+     */
+    public static SpotInfo handleSensorUpdate(SpotUpdateEvent update) {
+        Arrival arrival = null;
+        if (update.isOccupied()) {
+            String plate = expectedPlate(update.getSpotId());
+            if (plate != null) arrival = new Arrival(plate, estimateDeparture(plate, false));
+        }
+        return handleSensorUpdate(update, arrival);
+    }
+
+    private static synchronized SpotInfo handleSensorUpdate(SpotUpdateEvent update, Arrival arrival) {
+        JfrEvents.SensorUpdate trace = new JfrEvents.SensorUpdate();
+        trace.begin();
+        SpotInfo.State before = null;
+        if (trace.isEnabled()) {
+            int index = store.indexOf(update.getSpotId());
+            if (index >= 0) before = store.getState(index);
+        }
+
+        SpotInfo spot = applySensorUpdate(update, arrival);
+
+        if (trace.shouldCommit()) {
+            trace.spotId = update.getSpotId();
+            trace.reported = update.getStatus();
+            trace.order = update.getOrder();
+            trace.from = before != null ? before.toString() : null;
+            trace.rejected = spot == null;
+            trace.to = spot != null ? spot.getState().toString() : trace.from;
+            trace.commit();
+        }
+        return spot;
+    }
+
+    /**
+     * Eigentliche Verarbeitung, siehe {@link #handleSensorUpdate(SpotUpdateEvent)}.
      */
-    public static SpotInfo handleSensorUpdate(String spotId, boolean isSensorOccupied) {
-        SpotInfo currentSpot = spots.computeIfAbsent(spotId, id -> {
-            SpotInfo s = new SpotInfo(id);
+    private static SpotInfo applySensorUpdate(SpotUpdateEvent update, Arrival arrival) {
+        String spotId = update.getSpotId();
+        boolean isSensorOccupied = update.isOccupied();
+        int index = store.indexOf(spotId);
+        if (index < 0) {
+            index = store.add(spotId);
             // Bei Neuerstellung (Discovery) auch einmal loggen
-            MqttLogger.info("SpotAllocator", "New spot discovered via MQTT", id);
-            return s;
-        });
+            MqttLogger.info("SpotAllocator", "New spot discovered via MQTT", spotId);
+        }
+        SpotInfo currentSpot = store.get(index);
+
+        if (isOutOfOrder(index, update)) {
+            Metrics.increment("sensor.rejected");
+            MqttLogger.warn("SpotAllocator", "Ignoring outdated sensor update (order " + update.getOrder()
+                    + ", applied " + store.getAppliedOrder(index) + ")", spotId);
+            return null;
+        }
+        if (update.getOrder() != SpotUpdateEvent.NO_ORDER) store.setAppliedOrder(index, update.getOrder());
+
+        // Jede Meldung (auch ohne Änderung, z.B. Heartbeat) hält den Sensor am Leben
+        long now = System.currentTimeMillis();
+        store.setLastSeen(index, now);
+        if (SENSOR_TIMEOUT_MS > 0) sensorWheel.schedule(index, now + SENSOR_TIMEOUT_MS);
+        if (currentSpot.getState() == SpotInfo.State.unavailable) {
+            MqttLogger.info("SpotAllocator", "Sensor is reporting again", spotId);
+            currentSpot.restore(isSensorOccupied);
+            return currentSpot;
+        }
         
         boolean isSpotLogicallyOccupied = (currentSpot.getState() == SpotInfo.State.occupied);
         
@@ -90,7 +372,7 @@ public class SpotAllocator {
                 
             if (isSensorOccupied) {
                 MqttLogger.info("SpotAllocator", "Sensor detected car arrival", spotId);
-                handleCarArrival(currentSpot);
+                handleCarArrival(currentSpot, arrival);
 
             } else {
                 handleCarDeparture(currentSpot);
@@ -104,17 +386,104 @@ public class SpotAllocator {
         return currentSpot;
     }
 
+    /**
+     * Stellt Spots und deren Zustand nach einem Neustart aus der {@link OccupancyHistory} wieder
+     * her, bevor die ersten Sensor-Meldungen eintreffen. Bereits bekannte Spots bleiben unberührt.
+     * Alle wiederhergestellten Spots gelten als gerade gesehen; meldet sich ein Sensor danach
+     * nicht, greift der normale Sensor-Timeout. Belegungen ohne (wieder)gefundenen Nutzer laufen
+     * als "UNKNOWN", solche Reservierungen werden verworfen.
+     * @return Anzahl wiederhergestellter nicht freier Spots
+     */
+    public static synchronized int recover(List<OccupancyHistory.SpotRecord> records) {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (OccupancyHistory.SpotRecord record : records) {
+            String spotId = ParkingTopology.createSpotId(record.lane(), record.pos());
+            if (store.indexOf(spotId) >= 0) continue;
+
+            int index = store.add(spotId);
+            store.setLastSeen(index, now);
+            if (SENSOR_TIMEOUT_MS > 0) sensorWheel.schedule(index, now + SENSOR_TIMEOUT_MS);
+            if (record.state() == SpotInfo.State.free) continue;
+
+            UserProfile user = record.plate() != null && !record.plate().equals("UNKNOWN")
+                    ? UserRegistry.findByPlate(record.plate()) : null;
+            if (user == null) {
+                if (record.state() == SpotInfo.State.reserved) continue;
+                user = UserRegistry.DummyUser();
+            }
+            store.get(index).recover(record.state(), user, record.arrival(), record.departure());
+            restored++;
+        }
+        return restored;
+    }
+
+    /**
+     * Markiert alle Spots als nicht verfügbar, deren Sensor sich seit SENSOR_TIMEOUT_SECONDS
+     * nicht gemeldet hat. Kosten pro Aufruf: nur die im Wheel fälligen Spots, nicht alle.
+     * @return die neu als nicht verfügbar markierten Spots
+     */
+    public static synchronized List<SpotInfo> expireSilentSensors(long now) {
+        List<SpotInfo> lost = new ArrayList<>();
+        if (SENSOR_TIMEOUT_MS <= 0) return lost;
+        sensorWheel.advance(now, index -> {
+            long seen = store.getLastSeen(index);
+            if (now - seen < SENSOR_TIMEOUT_MS) {
+                // Zwischenzeitlich gemeldet: Frist ab der letzten Meldung neu einplanen
+                sensorWheel.schedule(index, seen + SENSOR_TIMEOUT_MS);
+                return;
+            }
+            SpotInfo spot = store.get(index);
+            if (spot.getState() == SpotInfo.State.unavailable) return;
+            spot.markUnavailable();
+            lost.add(spot);
+        });
+        return lost;
+    }
+
+    public static synchronized String getSpotId(int index) {
+        return store.getId(index);
+    }
+
+    /**
+     * Zeitpunkt der letzten Sensor-Meldung (Epoch-Millis) oder {@link SpotStore#NO_TIME}.
+     */
+    public static synchronized long getSensorLastSeen(int index) {
+        return store.getLastSeen(index);
+    }
+
+    /**
+     * Meldung ist nicht neuer als die zuletzt übernommene. Ein Rücksprung der Sequenznummer um
+     * mehr als SENSOR_SEQUENCE_RESTART_GAP gilt als Neustart des Sensors und wird übernommen.
+     * Bei gleichem Sensor-Zeitstempel (Firmware mit Sekunden-Auflösung) wird nur ein Statuswechsel
+     * übernommen, eine Wiederholung desselben Status nicht.
+     */
+    private static boolean isOutOfOrder(int index, SpotUpdateEvent update) {
+        long order = update.getOrder();
+        long applied = store.getAppliedOrder(index);
+        if (order == SpotUpdateEvent.NO_ORDER || applied == Long.MIN_VALUE || order > applied) return false;
+        if (order == applied && !update.hasSequence()
+                && update.isOccupied() != store.isState(index, SpotInfo.State.occupied)) {
+            return false;
+        }
+        if (update.hasSequence() && applied - order > Config.SENSOR_SEQUENCE_RESTART_GAP) {
+            MqttLogger.info("SpotAllocator", "Sensor sequence restarted at " + order, update.getSpotId());
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Verarbeitet das physische Parken eines Autos (Sensor wechselt auf belegt).
      * Unterscheidet zwei Fälle:
      * A) Reguläre Ankunft (Platz war reserviert).
      * B) Falschparker (Platz war frei -> Suche nach ausstehender Reservierung).
      */
-    private static void handleCarArrival(SpotInfo spot) {
+    private static void handleCarArrival(SpotInfo spot, Arrival arrival) {
         // Fall A: Der Parkplatz war bereits für jemanden RESERVIERT
         if (spot.getState() == SpotInfo.State.reserved) {
             String plate = spot.getAssignedPlate();
-            spot.occupyBy(plate); // Status ändern zu OCCUPIED
+            spot.occupyBy(plate, departureOf(plate, arrival)); // Status ändern zu OCCUPIED
             
             MqttLogger.info("SpotAllocator", "Success: User " + plate + " parked correctly", spot.getSpotId());
         } 
@@ -127,11 +496,11 @@ public class SpotAllocator {
                 MqttLogger.warn("SpotAllocator", "User " + potentialWrongParker + " parked on wrong spot (Target was elsewhere)", spot.getSpotId());
                 
                 freeReservationForUser(potentialWrongParker); // Alte Reservierung lösen
-                spot.occupyBy(potentialWrongParker);          // Neue Position setzen
+                spot.occupyBy(potentialWrongParker, departureOf(potentialWrongParker, arrival)); // Neue Position setzen
             } else {
                 MqttLogger.warn("SpotAllocator", "UNKNOWN User parked on spot (No pending reservation found)", spot.getSpotId());
                 
-                spot.occupyBy("UNKNOWN");
+                spot.occupyBy("UNKNOWN", null);
             }
         }
     }
@@ -149,16 +518,50 @@ public class SpotAllocator {
 
     // --- Hilfsmethoden ---
 
+    /**
+     * Kennzeichen, das handleCarArrival einem jetzt belegten Spot zuordnen würde: die Reservierung
+     * des Spots bzw. bei einem freien Spot die erste ausstehende Reservierung.
+     */
+    private static synchronized String expectedPlate(String spotId) {
+        int index = store.indexOf(spotId);
+        if (index < 0) return null;
+        return switch (store.getState(index)) {
+            case reserved -> store.get(index).getAssignedPlate();
+            case free -> findPendingUser();
+            default -> null;
+        };
+    }
+
+    /**
+     * Vorab geschätzte Abfahrt, falls die Ankunft wie erwartet ausfällt. Sonst (der Zustand hat
+     * sich zwischenzeitlich geändert) nur aus bereits geladenen Kalendern, um unter dem Lock
+     * nicht zu warten.
+     */
+    private static Instant departureOf(String plate, Arrival arrival) {
+        if (arrival != null && plate.equals(arrival.plate())) return arrival.departure();
+        return estimateDeparture(plate, true);
+    }
+
+    /**
+     * @param cachedOnly nur bereits geladene Kalender verwenden (unter dem Allocator-Lock)
+     */
+    private static Instant estimateDeparture(String plate, boolean cachedOnly) {
+        UserProfile user = UserRegistry.findByPlate(plate);
+        if (user == null || user.getCourse() == null || user.getCourse().isBlank()) return null;
+        return cachedOnly ? CalendarService.getCachedEndTime(user) : CalendarService.getEstimatedEndTime(user);
+    }
+
     /**
      * Sucht nach einem Kennzeichen, das aktuell irgendwo den Status RESERVED hat.
      * (Wenn mehrere reserviert sind, nehmen wir den ersten)
      */
     private static String findPendingUser() {
-        return spots.values().stream()
-                .filter(s -> s.getState() == SpotInfo.State.reserved)
-                .map(SpotInfo::getAssignedPlate)
-                .findFirst()
-                .orElse(null);
+        for (int i = 0; i < store.size(); i++) {
+            if (store.isState(i, SpotInfo.State.reserved)) {
+                return store.get(i).getAssignedPlate();
+            }
+        }
+        return null;
     }
 
     /**
@@ -166,12 +569,14 @@ public class SpotAllocator {
      * Wird genutzt, wenn ein User sich auf einen falschen Platz gestellt hat.
      */
     private static void freeReservationForUser(String plate) {
-        spots.values().stream()
-                .filter(s -> s.getState() == SpotInfo.State.reserved && plate.equals(s.getAssignedPlate()))
-                .forEach(s -> {
-                    MqttLogger.info("SpotAllocator", "Auto-releasing reservation (User took another spot)", s.getSpotId());
-                    s.setFree();
-                });
+        for (int i = 0; i < store.size(); i++) {
+            if (!store.isState(i, SpotInfo.State.reserved)) continue;
+            SpotInfo s = store.get(i);
+            if (plate.equals(s.getAssignedPlate())) {
+                MqttLogger.info("SpotAllocator", "Auto-releasing reservation (User took another spot)", s.getSpotId());
+                s.setFree();
+            }
+        }
     }
 
     /**
@@ -179,18 +584,18 @@ public class SpotAllocator {
      * Regel: In einer Stack-Lane (Fahrgasse) darf ein Platz nur belegt werden,
      * wenn der Platz dahinter bereits belegt ist (oder nicht existiert).
      */
-    private static boolean obeysBackfillRules(SpotInfo spot) {
+    private static boolean obeysBackfillRules(int index) {
         // Regel gilt nur für Stack Lanes
-        if (!ParkingTopology.isStackLane(spot.getLane())) {
+        int lane = store.getLane(index);
+        if (!ParkingTopology.isStackLane(lane)) {
             return true;
         }
 
         // Suche dynamisch nach dem Platz dahinter (Position + 1)
-        String spotBehindId = ParkingTopology.createSpotId(spot.getLane(), spot.getPos() + 1);
-        SpotInfo spotBehind = spots.get(spotBehindId);
+        int spotBehind = store.indexOf(lane, store.getPos(index) + 1);
 
         // Wenn der Platz dahinter EXISTIERT und FREI ist -> Verboten hier zu parken.
-        if (spotBehind != null && spotBehind.getState() == SpotInfo.State.free) {
+        if (spotBehind >= 0 && store.isState(spotBehind, SpotInfo.State.free)) {
             return false;
         }
         return true;
@@ -203,14 +608,16 @@ public class SpotAllocator {
      * - Distanz zum Gate (Basis-Score)
      * - Parkdauer (Langparker sollen nach hinten/Stacking)
      * - Blockade-Risiko (Vermeidung von unnötigem Zuparken freier Plätze)
+     * - Abfahrtsreihenfolge (wer früher fährt, soll nicht hinter Spätfahrern stehen)
      */
-    private static double calculateScore(SpotInfo spot, boolean isLongTerm) {
+    private static double calculateScore(int index, boolean isLongTerm, long departure) {
         double score = 0.0;
-        int lane = spot.getLane();
-        int pos = spot.getPos(); 
+        int lane = store.getLane(index);
+        int pos = store.getPos(index);
         
         // Prüfen, ob ich ein Blockierer bin 
-        boolean isBlocker = (ParkingTopology.getBlockedLane(lane) != -1);
+        int blockedLane = ParkingTopology.getBlockedLane(lane);
+        boolean isBlocker = (blockedLane != -1);
 
         // Berechnungs des Distanz zum Tor (Vorne = geringer Score)
         score += pos * 10; 
@@ -226,39 +633,106 @@ public class SpotAllocator {
         // Kollateralschaden-Logik:
         // Verhindert das Zuparken von Plätzen, die noch frei sind
         if (isBlocker) {
-            List<String> blockedIds = ParkingTopology.getBlockedSpotIds(lane, pos);
-            long freeBlockedSpots = blockedIds.stream()
-                .map(id -> spots.get(id)) // SpotInfo holen
-                .filter(s -> s != null && s.getState() == SpotInfo.State.free) // Ist er frei?
-                .count();
+            int freeBlockedSpots = 0;
+            for (int blockedPos : ParkingTopology.getBlockedPositions(pos)) {
+                int blocked = store.indexOf(blockedLane, blockedPos);
+                if (blocked >= 0 && store.isState(blocked, SpotInfo.State.free)) { // Ist er frei?
+                    freeBlockedSpots++;
+                }
+            }
 
             // Massive Strafe pro blockiertem freien Platz
             score += (freeBlockedSpots * 1000.0);
         }
 
+        if (departure != SpotStore.NO_TIME) {
+            score += departureConflictPenalty(index, lane, pos, blockedLane, departure);
+        }
+
         return score;
     }
 
-    public static SpotInfo[] findBlockersforPlate(String plate) {
+    /**
+     * Strafe für absehbare Umparkvorgänge: Jedes Auto, das durch den neuen Wagen blockiert
+     * wird und früher abfahren will, bzw. jedes Auto, das den neuen Wagen blockiert und
+     * später abfährt, erzeugt später einen MoveRequest.
+     * Nutzt den Abfahrts-Index (früheste Abfahrt hinter dem Kandidaten in O(log n)), die seitlichen
+     * Prüfungen betreffen nur die wenigen direkt benachbarten Spots.
+     */
+    private static double departureConflictPenalty(int index, int lane, int pos, int blockedLane, long departure) {
+        double penalty = 0.0;
+        DepartureIndex departures = store.getDepartureIndex();
+
+        // Stack-Lane: Der neue Wagen blockiert alle dahinter (größere Position) stehenden Autos
+        if (ParkingTopology.isStackLane(lane)) {
+            long earliestBehind = departures.earliestBehind(lane, pos);
+            if (earliestBehind != SpotStore.NO_TIME && earliestBehind < departure) {
+                penalty += DEPARTURE_CONFLICT_PENALTY + minutesBetween(earliestBehind, departure);
+            }
+        }
+
+        // Seitliche Blockade: belegte Plätze in der blockierten Lane, die früher abfahren
+        if (blockedLane != -1) {
+            for (int blockedPos : ParkingTopology.getBlockedPositions(pos)) {
+                int blocked = store.indexOf(blockedLane, blockedPos);
+                if (blocked < 0 || !store.isState(blocked, SpotInfo.State.occupied)) continue;
+                long other = store.getDeparture(blocked);
+                if (other != SpotStore.NO_TIME && other < departure) {
+                    penalty += DEPARTURE_CONFLICT_PENALTY + minutesBetween(other, departure);
+                }
+            }
+        }
+
+        // Umgekehrt: Wer den neuen Wagen seitlich blockiert und später fährt
+        int blockerLane = ParkingTopology.getBlockerLaneFor(lane);
+        if (blockerLane != -1) {
+            int blocker = store.indexOf(blockerLane, pos / 2);
+            if (blocker >= 0 && store.isState(blocker, SpotInfo.State.occupied)) {
+                long other = store.getDeparture(blocker);
+                if (other != SpotStore.NO_TIME && other > departure) {
+                    penalty += DEPARTURE_CONFLICT_PENALTY + minutesBetween(departure, other);
+                }
+            }
+        }
+
+        return penalty;
+    }
+
+    private static double minutesBetween(long fromEpochSecond, long toEpochSecond) {
+        return (toEpochSecond - fromEpochSecond) / 60.0;
+    }
+
+    /**
+     * Blockierer als Momentaufnahme unter dem Allocator-Lock; user ist null bei unbekanntem Fahrzeug.
+     */
+    public record Blocker(String spotId, UserProfile user) {}
+
+    /**
+     * Liefert alle belegten Spots, die umparken müssen, damit das Auto mit dem Kennzeichen
+     * ausfahren kann, geordnet vom vordersten Blockierer zum letzten. Spot und Nutzer werden
+     * gemeinsam unter dem Lock gelesen, damit eine Benachrichtigung nicht den nächsten Nutzer
+     * eines inzwischen frei gewordenen Spots erreicht.
+     */
+    public static synchronized Blocker[] findBlockersforPlate(String plate) {
         // 1. Suche den Spot des Users
-        SpotInfo currentSpot = spots.values().stream()
-             .filter(s -> s.getState() != SpotInfo.State.free) 
-             .filter(s -> plate.equals(s.getAssignedPlate()))  
-             .findFirst()
-             .orElse(null);
+        SpotInfo currentSpot = null;
+        for (int i = 0; i < store.size(); i++) {
+            if (store.isState(i, SpotInfo.State.free)) continue;
+            SpotInfo s = store.get(i);
+            if (plate.equals(s.getAssignedPlate())) {
+                currentSpot = s;
+                break;
+            }
+        }
 
         if (currentSpot == null) {
-            return new SpotInfo[0];
+            return new Blocker[0];
         }
 
-        // Hole theoretische Blockierer-IDs aus der Topologie
-        List<String> blockingIds = ParkingTopology.getBlockingSpots(currentSpot.getLane(), currentSpot.getPos());
-        
-        // Hole die echten Objekte und filtere nur die BELEGTEN heraus
-        return blockingIds.stream()
-            .map(id -> spots.get(id)) 
-            .filter(spot -> spot != null)          
-            .filter(spot -> spot.getState() != SpotInfo.State.free)
-            .toArray(SpotInfo[]::new);             
+        // Belegte Blockierer (transitiv) in der Reihenfolge, in der sie umparken müssen
+        return Arrays.stream(blockerGraph.movePlan(currentSpot.getIndex()))
+            .mapToObj(store::get)
+            .map(spot -> new Blocker(spot.getSpotId(), spot.getUser()))
+            .toArray(Blocker[]::new);
     }
 }
@@ -0,0 +1,77 @@
+package de.campuspark.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.campuspark.util.Config;
+import de.campuspark.util.TrafficLog;
+
+/**
+ * Zeichnet den eingehenden MQTT-Verkehr im {@link TrafficLog}-Format auf (aktiv, wenn
+ * TRAFFIC_RECORD_FILE gesetzt ist). Die Aufzeichnung kann anschließend mit
+ * {@link de.campuspark.bench.LoadHarness} deterministisch wieder eingespielt werden.
+ * Geschrieben wird gepuffert; einmal pro Sekunde und beim Beenden wird geleert.
+ */
+public class TrafficRecorder {
+
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private static volatile TrafficLog log;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "traffic-recorder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static synchronized void start() {
+        if (log != null || Config.TRAFFIC_RECORD_FILE.isBlank()) return;
+        try {
+            log = TrafficLog.create(Path.of(Config.TRAFFIC_RECORD_FILE));
+        } catch (IOException e) {
+            MqttLogger.error("TrafficRecorder", "Cannot open " + Config.TRAFFIC_RECORD_FILE + ": " + e.getMessage());
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(TrafficRecorder::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(TrafficRecorder::stop, "traffic-recorder-close"));
+        MqttLogger.info("TrafficRecorder", "Recording inbound traffic to " + Config.TRAFFIC_RECORD_FILE, null);
+    }
+
+    /**
+     * Hängt eine eingehende Nachricht an (no-op, solange die Aufzeichnung nicht läuft).
+     */
+    public static void record(String topic, byte[] payload) {
+        TrafficLog current = log;
+        if (current == null) return;
+        try {
+            current.append(System.currentTimeMillis(), topic, payload);
+        } catch (IOException e) {
+            MqttLogger.error("TrafficRecorder", "Recording stopped: " + e.getMessage());
+            stop();
+        }
+    }
+
+    public static synchronized void stop() {
+        TrafficLog current = log;
+        log = null;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException e) {
+            MqttLogger.error("TrafficRecorder", "Could not close recording: " + e.getMessage());
+        }
+    }
+
+    private static void flush() {
+        TrafficLog current = log;
+        if (current == null) return;
+        try {
+            current.flush();
+        } catch (IOException e) {
+            MqttLogger.error("TrafficRecorder", "Could not flush recording: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package de.campuspark.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import de.campuspark.logic.PlateIndex;
+import de.campuspark.logic.UserSnapshot;
+import de.campuspark.model.UserProfile;
+import de.campuspark.util.Config;
+import de.campuspark.util.DBConnection;
+
+/**
+ * Hält die komplette Nutzertabelle als unveränderlichen {@link UserSnapshot} im Speicher
+ * (aktiv mit USER_SNAPSHOT=true oder FUZZY_PLATE_MATCH=true). Beim Start wird die Tabelle
+ * einmal vollständig geladen; danach lauscht ein Hintergrund-Thread per LISTEN auf geänderte Kennzeichen, lädt nur diese
+ * nach und tauscht den Schnappschuss atomar aus. Zusätzlich wird periodisch komplett neu
+ * geladen, um Löschungen und Änderungen ohne NOTIFY zu erfassen.
+ * Lookups an der Schranke sind damit reine Speicherzugriffe ohne DB-Roundtrip.
+ * Parallel wird ein {@link PlateIndex} für die unscharfe Suche nach ALPR-Lesefehlern gepflegt.
+ */
+public class UserDirectory {
+
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_BACKOFF_MS = 5000;
+
+    private static final DBConnection db = new DBConnection();
+    private static volatile UserSnapshot snapshot;
+    private static volatile PlateIndex plateIndex = PlateIndex.EMPTY;
+    private static Thread worker;
+    private static volatile boolean offline;
+
+    /**
+     * Lädt den ersten Schnappschuss synchron und startet den Refresh-Thread (idempotent).
+     */
+    public static synchronized void start() {
+        if (worker != null || offline) return;
+        reload();
+        worker = new Thread(UserDirectory::run, "user-snapshot");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Setzt einen festen Nutzerbestand ohne Datenbank (Replay und Lasttests).
+     * Danach beantwortet {@link de.campuspark.logic.UserRegistry} alle Lookups aus diesem Bestand.
+     */
+    public static synchronized void install(List<UserProfile> users) {
+        List<String> plates = new ArrayList<>(users.size());
+        for (UserProfile user : users) plates.add(user.getPlate());
+        plateIndex = PlateIndex.of(plates);
+        snapshot = UserSnapshot.of(users);
+        offline = true;
+    }
+
+    public static boolean isOffline() {
+        return offline;
+    }
+
+    public static boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return Profil zum Kennzeichen oder null, falls nicht registriert.
+     */
+    public static UserProfile get(String plate) {
+        UserSnapshot current = snapshot;
+        return current != null ? current.get(plate) : null;
+    }
+
+    /**
+     * Nächstes registriertes Kennzeichen zu einer (vermutlich falsch gelesenen) Eingabe.
+     * @return Treffer oder null, wenn keiner eindeutig innerhalb der Distanz liegt
+     */
+    public static PlateIndex.Match findSimilarPlate(String plate, int maxDistance) {
+        return plateIndex.find(plate, maxDistance);
+    }
+
+    public static int size() {
+        UserSnapshot current = snapshot;
+        return current != null ? current.size() : 0;
+    }
+
+    private static boolean reload() {
+        try {
+            long start = System.nanoTime();
+            List<UserProfile> users = db.findAllUsers();
+            UserSnapshot loaded = UserSnapshot.of(users);
+            List<String> plates = new ArrayList<>(users.size());
+            for (UserProfile user : users) plates.add(user.getPlate());
+            plateIndex = PlateIndex.of(plates);
+            snapshot = loaded;
+            MqttLogger.info("UserDirectory", "Loaded " + loaded.size() + " users in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms", null);
+            return true;
+        } catch (SQLException e) {
+            MqttLogger.error("UserDirectory", "Could not load users: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void run() {
+        long reloadNanos = TimeUnit.MINUTES.toNanos(Config.USER_SNAPSHOT_RELOAD_MINUTES);
+        boolean reconnect = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection conn = db.openListener(Config.USER_SNAPSHOT_CHANNEL)) {
+                PGConnection listener = conn.unwrap(PGConnection.class);
+
+                // Während der Verbindungslücke verpasste Änderungen nachholen
+                if (reconnect || snapshot == null) reload();
+                reconnect = true;
+                long nextReload = System.nanoTime() + reloadNanos;
+
+                while (!Thread.currentThread().isInterrupted()) {
+                    PGNotification[] notifications = listener.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        applyChanges(notifications);
+                    }
+                    if (System.nanoTime() - nextReload >= 0) {
+                        reload();
+                        nextReload = System.nanoTime() + reloadNanos;
+                    }
+                }
+            } catch (SQLException e) {
+                MqttLogger.warn("UserDirectory", "Listener connection failed: " + e.getMessage(), null);
+                try {
+                    Thread.sleep(RECONNECT_BACKOFF_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void applyChanges(PGNotification[] notifications) throws SQLException {
+        Set<String> plates = new LinkedHashSet<>();
+        for (PGNotification notification : notifications) {
+            for (String plate : notification.getParameter().split("\n")) {
+                if (!plate.isEmpty()) plates.add(plate);
+            }
+        }
+        if (plates.isEmpty()) return;
+
+        List<UserProfile> changed = db.findUsersByPlates(plates);
+        UserSnapshot current = snapshot;
+        snapshot = (current != null ? current : UserSnapshot.EMPTY).withUpserted(changed);
+        plateIndex = plateIndex.withAdded(plates);
+    }
+}
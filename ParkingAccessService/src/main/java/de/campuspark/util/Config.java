@@ -9,22 +9,87 @@ public class Config {
     public static final String MQTT_USERNAME = dotenv.get("MQTT_USERNAME");
     public static final String MQTT_PASSWORD = dotenv.get("MQTT_PASSWORD");
     public static final String MQTT_CLIENT_ID = "Desktop-Test-" + java.util.UUID.randomUUID().toString();//dotenv.get("MQTT_CLIENT_ID");
+    public static final int MQTT_MAX_INFLIGHT = Integer.parseInt(dotenv.get("MQTT_MAX_INFLIGHT", "100"));
+    public static final int MQTT_STATE_QUEUE_CAPACITY = Integer.parseInt(dotenv.get("MQTT_STATE_QUEUE_CAPACITY", "10000"));
+    public static final int MQTT_TELEMETRY_QUEUE_CAPACITY = Integer.parseInt(dotenv.get("MQTT_TELEMETRY_QUEUE_CAPACITY", "10000"));
+    public static final String MQTT_JOURNAL_FILE = dotenv.get("MQTT_JOURNAL_FILE", "mqtt-journal.bin");
+    public static final long BARRIER_REPLAY_MAX_AGE_SECONDS = Long.parseLong(dotenv.get("BARRIER_REPLAY_MAX_AGE_SECONDS", "30"));
 
-    public static final String TOPIC_REGISTRATION  = dotenv.get("TOPIC_REGISTRATION");
-    public static final String TOPIC_LICENSE_PLATE = dotenv.get("TOPIC_LICENSE_PLATE");
-    public static final String TOPIC_MOVE_REQUEST  = dotenv.get("TOPIC_MOVE_REQUEST");
-    public static final String TOPIC_SPOT_STATE = dotenv.get("TOPIC_SPOT_STATE");
-    public static final String TOPIC_SPOT_COUNT = dotenv.get("TOPIC_SPOT_COUNT");
+    public static final String TOPIC_REGISTRATION  = dotenv.get("TOPIC_REGISTRATION", "parking/registration/plate");
+    public static final String TOPIC_LICENSE_PLATE = dotenv.get("TOPIC_LICENSE_PLATE", "parking/access/licensePlate");
+    public static final String TOPIC_MOVE_REQUEST  = dotenv.get("TOPIC_MOVE_REQUEST", "parking/move/request");
+    public static final String TOPIC_SPOT_STATE = dotenv.get("TOPIC_SPOT_STATE", "parking/state/spot/");
+    public static final String TOPIC_SPOT_COUNT = dotenv.get("TOPIC_SPOT_COUNT", "parking/state/summary");
 
-    public static final String TOPIC_ALLOCATION = dotenv.get("TOPIC_ALLOCATION");
-    public static final String TOPIC_BARRIER    = dotenv.get("TOPIC_BARRIER");
-    public static final String TOPIC_NOTIFICATION = dotenv.get("TOPIC_NOTIFICATION");
-    public static final String TOPIC_SPOT = dotenv.get("TOPIC_SPOT_RAW");
+    public static final String TOPIC_ALLOCATION = dotenv.get("TOPIC_ALLOCATION", "parking/access/allocation");
+    public static final String TOPIC_BARRIER    = dotenv.get("TOPIC_BARRIER", "parking/access/barrier");
+    public static final String TOPIC_NOTIFICATION = dotenv.get("TOPIC_NOTIFICATION", "parking/notification/");
+    public static final String TOPIC_SPOT = dotenv.get("TOPIC_SPOT_RAW", "parking/raw/spot/#");
+    public static final String TOPIC_FORECAST = dotenv.get("TOPIC_FORECAST", "parking/state/forecast");
+    public static final String TOPIC_LANE_STATS = dotenv.get("TOPIC_LANE_STATS", "parking/state/lane/");
+    public static final String TOPIC_SENSOR_HEALTH = dotenv.get("TOPIC_SENSOR_HEALTH", "parking/state/health/");
+    public static final String TOPIC_SPOT_STATE_BIN = dotenv.get("TOPIC_SPOT_STATE_BIN", "parking/bin/spot/");
+    public static final String TOPIC_SPOT_COUNT_BIN = dotenv.get("TOPIC_SPOT_COUNT_BIN", "parking/bin/summary");
+    public static final String TOPIC_GARAGE_BITMAP = dotenv.get("TOPIC_GARAGE_BITMAP", "parking/bin/garage");
+    public static final String TOPIC_ALLOCATION_BIN = dotenv.get("TOPIC_ALLOCATION_BIN", "parking/bin/allocation");
 
     
     public static final String DB_URL = dotenv.get("DB_URL");
     public static final String DB_USER = dotenv.get("DB_USER");
     public static final String DB_PASSWORD = dotenv.get("DB_PASSWORD");
+    // Nur für bench.RegistrationBenchmark: eigene Wegwerf-Datenbank, nie die des Dienstes
+    public static final String BENCH_DB_URL = dotenv.get("BENCH_DB_URL");
+    public static final String BENCH_DB_USER = dotenv.get("BENCH_DB_USER");
+    public static final String BENCH_DB_PASSWORD = dotenv.get("BENCH_DB_PASSWORD");
+    public static final boolean USER_SNAPSHOT = Boolean.parseBoolean(dotenv.get("USER_SNAPSHOT", "false"));
+    public static final String USER_SNAPSHOT_CHANNEL = dotenv.get("USER_SNAPSHOT_CHANNEL", "users_changed");
+    public static final long USER_SNAPSHOT_RELOAD_MINUTES = Long.parseLong(dotenv.get("USER_SNAPSHOT_RELOAD_MINUTES", "15"));
+    // Unscharfe Kennzeichenkorrektur nur auf Wunsch; Distanz 1 = genau eine Verwechslung (0/O, 8/B, ...),
+    // 2 würde auch eine beliebige andere Ziffer oder einen Buchstaben zulassen (...1234 -> ...1235)
+    public static final boolean FUZZY_PLATE_MATCH = Boolean.parseBoolean(dotenv.get("FUZZY_PLATE_MATCH", "false"));
+    public static final double FUZZY_PLATE_CONFIDENCE = Double.parseDouble(dotenv.get("FUZZY_PLATE_CONFIDENCE", "0.9"));
+    public static final int FUZZY_PLATE_MAX_DISTANCE = Integer.parseInt(dotenv.get("FUZZY_PLATE_MAX_DISTANCE", "1"));
+    public static final long NOTIFICATION_COOLDOWN_SECONDS = Long.parseLong(dotenv.get("NOTIFICATION_COOLDOWN_SECONDS", "300"));
+    public static final long NOTIFICATION_BATCH_WINDOW_MS = Long.parseLong(dotenv.get("NOTIFICATION_BATCH_WINDOW_MS", "200"));
+    public static final long ALPR_DEDUP_WINDOW_SECONDS = Long.parseLong(dotenv.get("ALPR_DEDUP_WINDOW_SECONDS", "60"));
+    public static final boolean ADMISSION_CONTROL = Boolean.parseBoolean(dotenv.get("ADMISSION_CONTROL", "true"));
+    public static final long PLATE_MAX_AGE_SECONDS = Long.parseLong(dotenv.get("PLATE_MAX_AGE_SECONDS", "30"));
+    public static final long SENSOR_TIMEOUT_SECONDS = Long.parseLong(dotenv.get("SENSOR_TIMEOUT_SECONDS", "180"));
+    public static final long SENSOR_CHECK_SECONDS = Long.parseLong(dotenv.get("SENSOR_CHECK_SECONDS", "5"));
+    public static final long SENSOR_SEQUENCE_RESTART_GAP = Long.parseLong(dotenv.get("SENSOR_SEQUENCE_RESTART_GAP", "1000"));
+    public static final boolean OVERSTAY_MONITOR = Boolean.parseBoolean(dotenv.get("OVERSTAY_MONITOR", "true"));
+    public static final long OVERSTAY_GRACE_MINUTES = Long.parseLong(dotenv.get("OVERSTAY_GRACE_MINUTES", "15"));
+    public static final long DEPARTURE_NOTICE_MINUTES = Long.parseLong(dotenv.get("DEPARTURE_NOTICE_MINUTES", "10"));
+    public static final long STARTUP_TIMEOUT_SECONDS = Long.parseLong(dotenv.get("STARTUP_TIMEOUT_SECONDS", "60"));
+    public static final boolean STARTUP_RECOVER_STATE = Boolean.parseBoolean(dotenv.get("STARTUP_RECOVER_STATE", "true"));
+    public static final boolean BINARY_FEED = Boolean.parseBoolean(dotenv.get("BINARY_FEED", "false"));
+    public static final long BINARY_FEED_INTERVAL_MS = Long.parseLong(dotenv.get("BINARY_FEED_INTERVAL_MS", "250"));
+    public static final String SPOT_POOL_STAFF = dotenv.get("SPOT_POOL_STAFF", "");
+    public static final int SPOT_POOL_STAFF_QUOTA = Integer.parseInt(dotenv.get("SPOT_POOL_STAFF_QUOTA", "-1"));
+    public static final String SPOT_POOL_DISABLED = dotenv.get("SPOT_POOL_DISABLED", "");
+    public static final int SPOT_POOL_DISABLED_QUOTA = Integer.parseInt(dotenv.get("SPOT_POOL_DISABLED_QUOTA", "-1"));
+    public static final long REGISTRATION_BATCH_WINDOW_MS = Long.parseLong(dotenv.get("REGISTRATION_BATCH_WINDOW_MS", "50"));
+    public static final int REGISTRATION_BATCH_SIZE = Integer.parseInt(dotenv.get("REGISTRATION_BATCH_SIZE", "1000"));
+    public static final int REGISTRATION_QUEUE_CAPACITY = Integer.parseInt(dotenv.get("REGISTRATION_QUEUE_CAPACITY", "10000"));
 
     public static final String STUV_BASE_URL = dotenv.get("STUV_BASE_URL");
+    public static final long CALENDAR_REFRESH_MINUTES = Long.parseLong(dotenv.get("CALENDAR_REFRESH_MINUTES", "30"));
+    public static final long CALENDAR_HTTP_TIMEOUT_MS = Long.parseLong(dotenv.get("CALENDAR_HTTP_TIMEOUT_MS", "3000"));
+    public static final long CALENDAR_WAIT_MS = Long.parseLong(dotenv.get("CALENDAR_WAIT_MS", "250"));
+    public static final int CALENDAR_MAX_CONCURRENT_FETCHES = Integer.parseInt(dotenv.get("CALENDAR_MAX_CONCURRENT_FETCHES", "4"));
+    public static final int CALENDAR_HORIZON_DAYS = Integer.parseInt(dotenv.get("CALENDAR_HORIZON_DAYS", "7"));
+
+    public static final long FORECAST_HORIZON_MINUTES = Long.parseLong(dotenv.get("FORECAST_HORIZON_MINUTES", "30"));
+    public static final long FORECAST_INTERVAL_SECONDS = Long.parseLong(dotenv.get("FORECAST_INTERVAL_SECONDS", "60"));
+    public static final String HISTORY_DIR = dotenv.get("HISTORY_DIR", "history");
+    public static final String TRAFFIC_RECORD_FILE = dotenv.get("TRAFFIC_RECORD_FILE", "");
+
+    public static final int HTTP_PORT = Integer.parseInt(dotenv.get("HTTP_PORT", "-1"));
+    public static final String HTTP_HOST = dotenv.get("HTTP_HOST", "127.0.0.1");
+    public static final String HTTP_CORS_ORIGIN = dotenv.get("HTTP_CORS_ORIGIN", "");
+    public static final long SNAPSHOT_REFRESH_MS = Long.parseLong(dotenv.get("SNAPSHOT_REFRESH_MS", "250"));
+
+    public static final long AGGREGATE_INTERVAL_SECONDS = Long.parseLong(dotenv.get("AGGREGATE_INTERVAL_SECONDS", "30"));
+    public static final long AGGREGATE_SLIDING_MINUTES = Long.parseLong(dotenv.get("AGGREGATE_SLIDING_MINUTES", "60"));
+    public static final long AGGREGATE_TUMBLING_MINUTES = Long.parseLong(dotenv.get("AGGREGATE_TUMBLING_MINUTES", "15"));
 }
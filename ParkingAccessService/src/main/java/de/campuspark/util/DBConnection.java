@@ -5,41 +5,160 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import de.campuspark.model.RegistrationEvent;
 import de.campuspark.model.UserProfile;
 
 public class DBConnection {
 
-    private static final String DB_URL = Config.DB_URL; 
-    private static final String DB_USER = Config.DB_USER;
-    private static final String DB_PASSWORD = Config.DB_PASSWORD;
+    private final String url;
+    private final String user;
+    private final String password;
+
+    /** Zeilen pro Multi-Row-Statement (4 Parameter je Zeile, Postgres erlaubt max. 32767). */
+    private static final int UPSERT_CHUNK = 500;
+    private static final int NOTIFY_PAYLOAD_LIMIT = 7900;
+
+    /**
+     * Verbindung zur Datenbank des Dienstes (DB_URL).
+     */
+    public DBConnection() {
+        this(Config.DB_URL, Config.DB_USER, Config.DB_PASSWORD);
+    }
+
+    public DBConnection(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return DriverManager.getConnection(url, user, password);
     }
 
-    public void insertUser(String plate, String phoneNumber, String role, String course) {
-        String sql = "INSERT INTO users (plate, phone_number, role, course) VALUES (?, ?, ?, ?) " +
-                    "ON CONFLICT (plate) DO UPDATE SET phone_number = EXCLUDED.phone_number, " +
-                    "role = EXCLUDED.role, course = EXCLUDED.course";
-        
-        try (Connection conn = getConnection();
-            PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, plate);
-            pstmt.setString(2, phoneNumber);
-            pstmt.setString(3, role);
-            pstmt.setString(4, course);
-            
-            pstmt.executeUpdate();
+    /**
+     * Lädt den JDBC-Treiber und baut einmal eine Verbindung auf (Startphase), damit die erste
+     * Anfrage an der Schranke nicht Treiber-Initialisierung und Verbindungsaufbau bezahlt.
+     */
+    public void warmUp() throws SQLException {
+        JfrEvents.DbCall trace = trace("warmUp");
+        boolean success = false;
+        try (Connection conn = getConnection()) {
+            success = conn.isValid(5);
+        } finally {
+            done(trace, 0, success);
+        }
+        if (!success) throw new SQLException("Connection to " + url + " not valid");
+    }
+
+    /**
+     * Öffnet eine eigene Verbindung, die auf dem Kanal lauscht (LISTEN).
+     * Der Aufrufer ist für das Schließen verantwortlich.
+     */
+    public Connection openListener(String channel) throws SQLException {
+        JfrEvents.DbCall trace = trace("openListener");
+        Connection conn = getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("LISTEN " + channel);
         } catch (SQLException e) {
-            System.err.println("[DB ERROR] " + e.getMessage());
+            conn.close();
+            done(trace, 0, false);
+            throw e;
+        }
+        done(trace, 0, true);
+        return conn;
+    }
+
+    /**
+     * Schreibt mehrere Registrierungen in einer Transaktion als mehrzeilige Upserts.
+     * Doppelte Kennzeichen im Batch werden vorab zusammengefasst (letzte gewinnt),
+     * da ON CONFLICT dieselbe Zeile nicht zweimal in einem Statement ändern darf.
+     * Schlägt ein Statement fehl, wird der gesamte Batch zurückgerollt.
+     */
+    public void upsertUsers(List<RegistrationEvent> regs) throws SQLException {
+        Map<String, RegistrationEvent> byPlate = new LinkedHashMap<>();
+        for (RegistrationEvent reg : regs) {
+            byPlate.put(reg.getPlate(), reg);
+        }
+        List<RegistrationEvent> rows = new ArrayList<>(byPlate.values());
+
+        JfrEvents.DbCall trace = trace("upsertUsers");
+        boolean success = false;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < rows.size(); from += UPSERT_CHUNK) {
+                    List<RegistrationEvent> chunk = rows.subList(from, Math.min(rows.size(), from + UPSERT_CHUNK));
+                    try (PreparedStatement pstmt = conn.prepareStatement(upsertSql(chunk.size()))) {
+                        int i = 1;
+                        for (RegistrationEvent reg : chunk) {
+                            pstmt.setString(i++, reg.getPlate());
+                            pstmt.setString(i++, reg.getPhoneNumber());
+                            pstmt.setString(i++, reg.getRole());
+                            pstmt.setString(i++, reg.getCourse());
+                        }
+                        pstmt.executeUpdate();
+                    }
+                    notifyUsersChanged(conn, chunk);
+                }
+                conn.commit();
+                success = true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            done(trace, rows.size(), success);
+        }
+    }
+
+    /**
+     * Meldet geänderte Kennzeichen über NOTIFY (wird erst mit dem Commit zugestellt).
+     * Die Nutzlast ist auf 8000 Byte begrenzt, daher werden die Kennzeichen ggf. aufgeteilt.
+     */
+    private static void notifyUsersChanged(Connection conn, List<RegistrationEvent> regs) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+            StringBuilder payload = new StringBuilder();
+            for (RegistrationEvent reg : regs) {
+                if (reg.getPlate() == null) continue;
+                if (payload.length() + reg.getPlate().length() + 1 > NOTIFY_PAYLOAD_LIMIT) {
+                    pstmt.setString(1, Config.USER_SNAPSHOT_CHANNEL);
+                    pstmt.setString(2, payload.toString());
+                    pstmt.execute();
+                    payload.setLength(0);
+                }
+                if (payload.length() > 0) payload.append('\n');
+                payload.append(reg.getPlate());
+            }
+            if (payload.length() > 0) {
+                pstmt.setString(1, Config.USER_SNAPSHOT_CHANNEL);
+                pstmt.setString(2, payload.toString());
+                pstmt.execute();
+            }
+        }
+    }
+
+    private static String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO users (plate, phone_number, role, course) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
         }
+        sql.append(" ON CONFLICT (plate) DO UPDATE SET phone_number = EXCLUDED.phone_number, ")
+           .append("role = EXCLUDED.role, course = EXCLUDED.course");
+        return sql.toString();
     }
 
     public UserProfile findUserByPlate(String plate) {
         String sql = "SELECT user_id, phone_number, role, course FROM users WHERE plate = ?";
         UserProfile user = null;
+        JfrEvents.DbCall trace = trace("findUserByPlate");
+        boolean success = false;
         
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -55,13 +174,77 @@ public class DBConnection {
                     user = new UserProfile(plate, userId, role, phoneNumber, course);
                 }
             }
+            success = true;
             
         } catch (SQLException e) {
             System.err.println("[DB ERROR] Could not find user by plate: " + e.getMessage());
             e.printStackTrace();
         }
+        done(trace, user != null ? 1 : 0, success);
         
         return user;
     }
 
-}
\ No newline at end of file
+    /**
+     * Lädt alle registrierten Nutzer (für den In-Memory-Schnappschuss).
+     */
+    public List<UserProfile> findAllUsers() throws SQLException {
+        String sql = "SELECT plate, user_id, phone_number, role, course FROM users";
+        JfrEvents.DbCall trace = trace("findAllUsers");
+        List<UserProfile> users = null;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(1000);
+            users = readUsers(pstmt);
+            return users;
+        } finally {
+            done(trace, users != null ? users.size() : 0, users != null);
+        }
+    }
+
+    /**
+     * Lädt die Nutzer zu den angegebenen Kennzeichen (unbekannte werden übersprungen).
+     */
+    public List<UserProfile> findUsersByPlates(Collection<String> plates) throws SQLException {
+        String sql = "SELECT plate, user_id, phone_number, role, course FROM users WHERE plate = ANY (?)";
+        JfrEvents.DbCall trace = trace("findUsersByPlates");
+        List<UserProfile> users = null;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", plates.toArray()));
+            users = readUsers(pstmt);
+            return users;
+        } finally {
+            done(trace, users != null ? users.size() : 0, users != null);
+        }
+    }
+
+    private static JfrEvents.DbCall trace(String operation) {
+        JfrEvents.DbCall trace = new JfrEvents.DbCall();
+        if (trace.isEnabled()) trace.operation = operation;
+        trace.begin();
+        return trace;
+    }
+
+    private static void done(JfrEvents.DbCall trace, int rows, boolean success) {
+        if (!trace.shouldCommit()) return;
+        trace.rows = rows;
+        trace.success = success;
+        trace.commit();
+    }
+
+    private static List<UserProfile> readUsers(PreparedStatement pstmt) throws SQLException {
+        List<UserProfile> users = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                users.add(new UserProfile(
+                        rs.getString("plate"),
+                        rs.getString("user_id"),
+                        rs.getString("role"),
+                        rs.getString("phone_number"),
+                        rs.getString("course")));
+            }
+        }
+        return users;
+    }
+}
@@ -0,0 +1,147 @@
+package de.campuspark.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Eigene JDK-Flight-Recorder-Events für Zugangsentscheidungen, Spot-Vergabe, Sensor-Meldungen,
+ * DB-Zugriffe und Kalender-Ladevorgänge. Aufzeichnen z.B. dauerhaft mit
+ * {@code -XX:StartFlightRecording:settings=profile,maxage=6h} und auswerten mit
+ * {@code jfr print --categories CampusPark}.
+ *
+ * Ist die Aufzeichnung aus, kostet ein Event nur die (per Escape-Analyse meist entfallende)
+ * Allokation: Felder werden nur nach {@link Event#shouldCommit()} bzw. {@link Event#isEnabled()}
+ * befüllt (bei {@link Access} über identify/finish), Zwischenzeiten nur bei aktiver Aufzeichnung
+ * genommen; sonst liefert {@link Access#lap()} ohne Zeitmessung 0.
+ */
+public final class JfrEvents {
+
+    private JfrEvents() {}
+
+    /**
+     * Kennzeichen-Erkennung an einer Schranke mit der Dauer jeder Stufe von handleAccess.
+     * Die Stufen werden über {@link #lap()} abgegrenzt.
+     */
+    @Name("de.campuspark.Access")
+    @Label("Access Decision")
+    @Category({ "CampusPark", "Access" })
+    @StackTrace(false)
+    public static class Access extends Event {
+        @Label("Plate") public String plate;
+        @Label("Gate") public String gateId;
+        @Label("Outcome") @Description("allow, duplicate, deny_unknown, deny_full") public String outcome;
+        @Label("Spot") public String spotId;
+        @Label("Parse") @Timespan public long parseNanos;
+        @Label("User Lookup") @Timespan public long lookupNanos;
+        @Label("Duplicate Check") @Timespan public long dedupNanos;
+        @Label("Reservation") @Timespan public long reserveNanos;
+        @Label("Publish") @Timespan public long publishNanos;
+
+        private transient long mark;
+
+        /**
+         * Beginnt das Event und die erste Stufe.
+         */
+        public void start() {
+            begin();
+            if (isEnabled()) mark = System.nanoTime();
+        }
+
+        /**
+         * Setzt Kennzeichen und Schranke (nur bei aktiver Aufzeichnung).
+         */
+        public void identify(String plate, String gateId) {
+            if (!isEnabled()) return;
+            this.plate = plate;
+            this.gateId = gateId;
+        }
+
+        /**
+         * Schließt die letzte Stufe (Publish) ab und setzt das Ergebnis (nur bei aktiver Aufzeichnung).
+         */
+        public void finish(String outcome, String spotId) {
+            if (!isEnabled()) return;
+            this.outcome = outcome;
+            this.spotId = spotId;
+            this.publishNanos = lap();
+        }
+
+        /**
+         * Dauer seit Beginn der laufenden Stufe, startet die nächste (0 ohne Aufzeichnung).
+         */
+        public long lap() {
+            if (!isEnabled()) return 0;
+            long now = System.nanoTime();
+            long elapsed = now - mark;
+            mark = now;
+            return elapsed;
+        }
+    }
+
+    /**
+     * Eine Vergabe in reserveSpotForUser.
+     */
+    @Name("de.campuspark.Allocation")
+    @Label("Spot Allocation")
+    @Category({ "CampusPark", "Access" })
+    @StackTrace(false)
+    public static class Allocation extends Event {
+        @Label("Plate") public String plate;
+        @Label("Role") public String role;
+        @Label("Pool") public String pool;
+        @Label("Long-Term Parker") public boolean longTerm;
+        @Label("Candidates") @Description("Bewertete freie Spots") public int candidates;
+        @Label("Spot") public String spotId;
+        @Label("Winning Score") public double score;
+    }
+
+    /**
+     * Eine Sensor-Meldung in handleSensorUpdate.
+     */
+    @Name("de.campuspark.SensorUpdate")
+    @Label("Sensor Update")
+    @Category({ "CampusPark", "Sensors" })
+    @StackTrace(false)
+    public static class SensorUpdate extends Event {
+        @Label("Spot") public String spotId;
+        @Label("Reported") public String reported;
+        @Label("Order") @Description("Sequenznummer oder Sensor-Zeitstempel, sonst Long.MIN_VALUE") public long order;
+        @Label("From") public String from;
+        @Label("To") public String to;
+        @Label("Rejected") @Description("Als veraltet verworfen") public boolean rejected;
+    }
+
+    /**
+     * Ein Datenbankzugriff über {@link DBConnection}.
+     */
+    @Name("de.campuspark.DbCall")
+    @Label("Database Call")
+    @Category({ "CampusPark", "Database" })
+    @StackTrace(false)
+    public static class DbCall extends Event {
+        @Label("Operation") public String operation;
+        @Label("Rows") public int rows;
+        @Label("Success") public boolean success;
+    }
+
+    /**
+     * Laden bzw. erneutes Validieren eines Kurskalenders.
+     */
+    @Name("de.campuspark.CalendarLoad")
+    @Label("Calendar Load")
+    @Category({ "CampusPark", "Calendar" })
+    @StackTrace(false)
+    public static class CalendarLoad extends Event {
+        @Label("Course") public String course;
+        @Label("Source") @Description("file oder http") public String source;
+        @Label("Result") @Description("indexed, unchanged, failed") public String result;
+        @Label("Lecture Blocks") public int blocks;
+        @Label("Size") @DataAmount public long bytes;
+    }
+}
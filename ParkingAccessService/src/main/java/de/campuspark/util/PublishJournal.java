@@ -0,0 +1,138 @@
+package de.campuspark.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dateibasiertes Journal für Nachrichten, die eine Zustellung überleben müssen (Schrankenbefehle).
+ * Jede Nachricht wird vor dem Versand als PUT-Satz angehängt, nach der Broker-Bestätigung
+ * folgt ein DONE-Satz. Geschrieben wird ohne fsync: das Journal soll einen Absturz oder Neustart
+ * des Dienstes überbrücken (Daten liegen dann im Page-Cache); nach einem Absturz des
+ * Betriebssystems wären die Befehle ohnehin älter als das Nachsende-Limit.
+ * Beim Öffnen werden alle Nachrichten ohne DONE zurückgegeben und die Datei auf diese verdichtet.
+ * <pre>
+ * PUT:  byte 1, long Id, long Zeitpunkt, int QoS, UTF Topic, int Länge, Payload
+ * DONE: byte 2, long Id
+ * </pre>
+ */
+public class PublishJournal implements AutoCloseable {
+
+    private static final byte PUT = 1;
+    private static final byte DONE = 2;
+
+    /** Noch nicht bestätigte Nachricht. */
+    public record Entry(long id, long timeMillis, String topic, int qos, byte[] payload) {}
+
+    private final FileChannel channel;
+    private final List<Entry> pending;
+    private long nextId;
+
+    private PublishJournal(FileChannel channel, List<Entry> pending, long nextId) {
+        this.channel = channel;
+        this.pending = pending;
+        this.nextId = nextId;
+    }
+
+    /**
+     * Öffnet (oder erzeugt) das Journal und verdichtet es auf die offenen Nachrichten.
+     */
+    public static PublishJournal open(Path file) throws IOException {
+        Map<Long, Entry> open = new LinkedHashMap<>();
+        long maxId = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    byte type = in.readByte();
+                    long id = in.readLong();
+                    maxId = Math.max(maxId, id);
+                    if (type == PUT) {
+                        long time = in.readLong();
+                        int qos = in.readInt();
+                        String topic = in.readUTF();
+                        byte[] payload = new byte[in.readInt()];
+                        in.readFully(payload);
+                        open.put(id, new Entry(id, time, topic, qos, payload));
+                    } else if (type == DONE) {
+                        open.remove(id);
+                    } else {
+                        break; // beschädigtes Ende
+                    }
+                }
+            } catch (EOFException e) {
+                // abgeschnittener letzter Satz nach Absturz
+            }
+        }
+
+        // Verdichten: nur offene Nachrichten in eine neue Datei, dann atomar ersetzen
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : open.values()) {
+                out.write(ByteBuffer.wrap(encodePut(entry)));
+            }
+            out.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new PublishJournal(channel, new ArrayList<>(open.values()), maxId + 1);
+    }
+
+    /**
+     * Beim Öffnen vorgefundene, nicht bestätigte Nachrichten.
+     */
+    public List<Entry> pending() {
+        return pending;
+    }
+
+    /**
+     * Hängt die Nachricht an das Journal an.
+     * @return Id für {@link #done}
+     */
+    public synchronized long put(String topic, int qos, byte[] payload) throws IOException {
+        Entry entry = new Entry(nextId++, System.currentTimeMillis(), topic, qos, payload);
+        channel.write(ByteBuffer.wrap(encodePut(entry)));
+        return entry.id();
+    }
+
+    /**
+     * Markiert die Nachricht als zugestellt.
+     */
+    public synchronized void done(long id) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(9);
+        buf.put(DONE).putLong(id).flip();
+        channel.write(buf);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] encodePut(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entry.payload().length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PUT);
+        out.writeLong(entry.id());
+        out.writeLong(entry.timeMillis());
+        out.writeInt(entry.qos());
+        out.writeUTF(entry.topic());
+        out.writeInt(entry.payload().length);
+        out.write(entry.payload());
+        return bytes.toByteArray();
+    }
+}
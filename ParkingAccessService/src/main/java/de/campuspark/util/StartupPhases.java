@@ -0,0 +1,147 @@
+package de.campuspark.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Misst die Phasen des Dienststarts. Unabhängige Phasen (DB, Kalender, Zustand, Broker)
+ * laufen über {@link #parallel}/{@link #supply} gleichzeitig, bis {@link #awaitParallel} auf alle
+ * wartet; abhängige Schritte laufen danach über {@link #run} nacheinander.
+ * Dauer und Ergebnis jeder Phase landen im {@link #report()} und als Zähler
+ * "startup.&lt;phase&gt;_ms" in den {@link Metrics}.
+ */
+public class StartupPhases {
+
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /** Abgeschlossene Phase; error ist null bei Erfolg. */
+    private record Phase(String name, boolean parallel, long millis, String error) {}
+
+    private final long startNanos = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+    private final List<String> running = new ArrayList<>();
+    private final List<CompletableFuture<?>> pending = new ArrayList<>();
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "startup-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Startet eine Phase im Hintergrund. Fehler werden festgehalten, brechen den Start aber nicht ab.
+     */
+    public void parallel(String name, Task task) {
+        supply(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Startet eine Phase mit Ergebnis im Hintergrund.
+     * @return Ergebnis, bei Fehlern ausnahmsweise abgeschlossen
+     */
+    public <T> CompletableFuture<T> supply(String name, Callable<T> task) {
+        synchronized (this) {
+            running.add(name);
+        }
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = task.call();
+                finished(name, true, start, null);
+                return result;
+            } catch (Exception e) {
+                finished(name, true, start, e.toString());
+                throw new IllegalStateException(name + " failed", e);
+            }
+        }, executor);
+        synchronized (this) {
+            pending.add(future);
+        }
+        return future;
+    }
+
+    /**
+     * Wartet auf alle parallelen Phasen, höchstens bis zum Timeout.
+     * @return true, wenn alle erfolgreich abgeschlossen sind
+     */
+    public boolean awaitParallel(long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<?>[] futures;
+        synchronized (this) {
+            futures = pending.toArray(new CompletableFuture<?>[0]);
+            pending.clear();
+        }
+        try {
+            CompletableFuture.allOf(futures).get(timeout, unit);
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (TimeoutException e) {
+            synchronized (this) {
+                for (String name : running) {
+                    phases.add(new Phase(name, true, unit.toMillis(timeout), "timed out, continuing in background"));
+                }
+                running.clear();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Führt einen abhängigen Schritt im aufrufenden Thread aus; Fehler werden weitergereicht.
+     */
+    public void run(String name, Task task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            task.run();
+            finished(name, false, start, null);
+        } catch (Exception e) {
+            finished(name, false, start, e.toString());
+            throw e;
+        }
+    }
+
+    public long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Eine Zeile pro Phase in Abschlussreihenfolge, parallele Phasen mit "||" markiert.
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder("Startup finished in ").append(elapsedMillis()).append(" ms");
+        for (Phase phase : phases) {
+            sb.append(String.format("%n  %s %-14s %6d ms", phase.parallel() ? "||" : "  ", phase.name(), phase.millis()));
+            if (phase.error() != null) sb.append("  FAILED: ").append(phase.error());
+        }
+        return sb.toString();
+    }
+
+    public synchronized boolean hasFailures() {
+        for (Phase phase : phases) {
+            if (phase.error() != null) return true;
+        }
+        return false;
+    }
+
+    private synchronized void finished(String name, boolean parallel, long startNanos, String error) {
+        // Nach einem Timeout bereits als abgebrochen gemeldet
+        if (parallel && !running.remove(name)) return;
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        phases.add(new Phase(name, parallel, millis, error));
+        Metrics.add("startup." + name + "_ms", millis);
+    }
+}
@@ -0,0 +1,148 @@
+package de.campuspark.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kompaktes Binärformat für aufgezeichneten MQTT-Verkehr (Zeitpunkt, Topic, Payload).
+ * Nach dem Header (Magic, Version, Startzeit) folgt pro Nachricht:
+ * <pre>
+ * varint  Abstand zur vorherigen Nachricht in Millisekunden
+ * varint  Topic-Nummer &lt;&lt; 1 | neu   (neu = 1: danach varint Länge + UTF-8-Topic)
+ * varint  Länge Payload, danach die Payload-Bytes
+ * </pre>
+ * Wiederkehrende Topics (z.B. pro Spot) werden so nur beim ersten Auftreten ausgeschrieben,
+ * typische Sensor-Nachrichten belegen dadurch unter 16 Byte.
+ */
+public class TrafficLog implements Closeable {
+
+    private static final int MAGIC = 0x4350544C; // "CPTL"
+    private static final short VERSION = 1;
+
+    /** Eine aufgezeichnete Nachricht. */
+    public record Entry(long timeMillis, String topic, byte[] payload) {}
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> topicIds = new HashMap<>();
+    private long lastTime;
+
+    private TrafficLog(OutputStream out, long startMillis) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeLong(startMillis);
+        this.lastTime = startMillis;
+    }
+
+    /**
+     * Legt eine neue Aufzeichnung an (eine vorhandene Datei wird überschrieben).
+     */
+    public static TrafficLog create(Path file) throws IOException {
+        return new TrafficLog(Files.newOutputStream(file), System.currentTimeMillis());
+    }
+
+    public synchronized void append(long timeMillis, String topic, byte[] payload) throws IOException {
+        // Zeitsprünge rückwärts (Uhrkorrektur) werden als 0 ms abgelegt
+        long delta = Math.max(0, timeMillis - lastTime);
+        lastTime += delta;
+        writeVarint(delta);
+
+        Integer id = topicIds.get(topic);
+        if (id != null) {
+            writeVarint((long) id << 1);
+        } else {
+            id = topicIds.size();
+            topicIds.put(topic, id);
+            writeVarint(((long) id << 1) | 1);
+            writeBytes(topic.getBytes(StandardCharsets.UTF_8));
+        }
+        writeBytes(payload);
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Liest eine komplette Aufzeichnung. Ein abgeschnittener letzter Datensatz
+     * (z.B. nach Absturz des Recorders) wird ignoriert.
+     */
+    public static List<Entry> readAll(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a traffic log: " + file);
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException("Unsupported traffic log version " + version);
+
+            long time = in.readLong();
+            List<String> topics = new ArrayList<>();
+            while (true) {
+                try {
+                    long delta = readVarint(in);
+                    long topicRef = readVarint(in);
+                    String topic;
+                    if ((topicRef & 1) != 0) {
+                        topic = new String(readBytes(in), StandardCharsets.UTF_8);
+                        topics.add(topic);
+                    } else {
+                        topic = topics.get((int) (topicRef >>> 1));
+                    }
+                    byte[] payload = readBytes(in);
+                    time += delta;
+                    entries.add(new Entry(time, topic, payload));
+                } catch (EOFException e) {
+                    return entries;
+                }
+            }
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
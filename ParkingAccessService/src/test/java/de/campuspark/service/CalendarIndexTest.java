@@ -0,0 +1,190 @@
+package de.campuspark.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.campuspark.logic.LectureSchedule;
+import de.campuspark.model.UserProfile;
+import de.campuspark.util.Config;
+
+/**
+ * Laden entfernter Kalender gegen einen lokalen StuV-Stub. Jeder Test nutzt einen eigenen Kurs,
+ * da der Index statisch ist; der Stub liefert "/&lt;kurs&gt;" nach der für den Kurs
+ * eingestellten Verzögerung aus.
+ */
+public class CalendarIndexTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private static HttpServer server;
+    private static final Map<String, Long> delays = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> notModified = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", CalendarIndexTest::serve);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        CalendarIndex.baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/%s";
+    }
+
+    @AfterClass
+    public static void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    public void concurrentCallersShareOneDownload() throws Exception {
+        String course = "COALESCE";
+        delays.put(course, 400L);
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<LectureSchedule>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return CalendarIndex.get(course);
+            }));
+        }
+        start.countDown();
+        for (Future<LectureSchedule> result : results) {
+            // Download dauert länger als das Wartebudget
+            assertNull(result.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertNotNull(awaitLoaded(course));
+        assertEquals(1, requests(course).get());
+    }
+
+    @Test
+    public void callerWaitsAtMostTheWaitBudget() throws Exception {
+        String course = "SLOW";
+        delays.put(course, 1_500L);
+
+        long start = System.nanoTime();
+        LectureSchedule schedule = CalendarIndex.get(course);
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNull(schedule);
+        assertTrue("waited " + waited + " ms", waited >= Config.CALENDAR_WAIT_MS - 20);
+        assertTrue("waited " + waited + " ms", waited < Config.CALENDAR_WAIT_MS + 500);
+
+        // Der Download läuft im Hintergrund weiter und liefert den Kalender nach
+        assertNotNull(awaitLoaded(course));
+    }
+
+    @Test
+    public void unchangedCalendarIsRevalidatedWith304() throws Exception {
+        String course = "ETAG";
+        CalendarIndex.refresh(course).get(5, TimeUnit.SECONDS);
+        LectureSchedule first = CalendarIndex.get(course);
+        assertNotNull(first);
+        assertEquals(1, first.size());
+
+        CalendarIndex.refresh(course).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, requests(course).get());
+        assertEquals(1, notModified.computeIfAbsent(course, c -> new AtomicInteger()).get());
+        // Unverändert: kein erneutes Parsen, derselbe Plan
+        assertSame(first, CalendarIndex.get(course));
+    }
+
+    @Test
+    public void userWithoutCourseHasNoCalendar() {
+        // Mitarbeiter und Dozenten haben keinen Kurs
+        assertNull(CalendarIndex.get(null));
+        assertNull(CalendarIndex.peek(null));
+        assertNull(CalendarIndex.get(" "));
+        assertNull(CalendarIndex.peek(""));
+        assertNull(CalendarService.getEstimatedEndTime(new UserProfile("S-AB-1234", "01", "staff", "01234", null)));
+        assertNull(CalendarService.getCachedEndTime(new UserProfile("S-AB-1234", "01", "staff", "01234", null)));
+
+        // Kein Download für einen leeren Kurs angestoßen
+        assertEquals(0, requests("").get());
+        assertEquals(0, requests(" ").get());
+    }
+
+    private static LectureSchedule awaitLoaded(String course) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        LectureSchedule schedule = CalendarIndex.get(course);
+        while (schedule == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            schedule = CalendarIndex.get(course);
+        }
+        return schedule;
+    }
+
+    private static AtomicInteger requests(String course) {
+        return requests.computeIfAbsent(course, c -> new AtomicInteger());
+    }
+
+    private static void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String course = exchange.getRequestURI().getPath().substring(1);
+            requests(course).incrementAndGet();
+            Thread.sleep(delays.getOrDefault(course, 0L));
+
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.computeIfAbsent(course, c -> new AtomicInteger()).incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = calendar().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Eine Vorlesung morgen, also sicher im indizierten Fenster.
+     */
+    private static String calendar() {
+        String day = LocalDate.now().plusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE);
+        return String.join("\r\n",
+                "BEGIN:VCALENDAR",
+                "VERSION:2.0",
+                "BEGIN:VEVENT",
+                "UID:1",
+                "DTSTART:" + day + "T080000Z",
+                "DTEND:" + day + "T113000Z",
+                "SUMMARY:Datenbanken",
+                "LOCATION:A 2.210 Vorlesungsraum",
+                "END:VEVENT",
+                "END:VCALENDAR",
+                "");
+    }
+}